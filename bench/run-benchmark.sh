@@ -0,0 +1,48 @@
+#!/bin/bash
+# Compares the web tier on Tomcat's platform thread pool vs. virtual threads.
+# For each mode, starts the app on a fresh copy of data/, runs LoadBenchmark at each
+# concurrency level and prints throughput and p50/p99/max latency.
+#
+# Requires JDK 21 (the app is built with -Pjava21).
+# Usage: bench/run-benchmark.sh [connections] [seconds per level] [write fraction]
+#   defaults: 1000,2500,5000,10000  30  0.1
+set -euo pipefail
+
+CONNECTIONS="${1:-1000,2500,5000,10000}"
+SECONDS_PER_LEVEL="${2:-30}"
+WRITE_FRACTION="${3:-0.1}"
+PORT="${BENCH_PORT:-8090}"
+ROOT="$(cd "$(dirname "$0")/.." && pwd)"
+WORK="$(mktemp -d)"
+RESULTS="$ROOT/target/benchmark-results.txt"
+
+# 10k connections on the client and server side need plenty of file descriptors
+ulimit -n 65536 || echo "WARN: could not raise the open files limit; high connection counts may fail"
+
+cd "$ROOT"
+mvn -B -q -Pjava21 package -DskipTests
+CLASSPATH="target/test-classes:$(mvn -B -q -Pjava21 dependency:build-classpath -Dmdep.outputFile=/dev/stdout)"
+JAR="$(ls "$ROOT"/target/*.jar | grep -v original | head -1)"
+
+run_mode() {
+  local label="$1" virtual="$2"
+  rm -rf "$WORK/data" && cp -r "$ROOT/data" "$WORK/data"
+  (cd "$WORK" && exec java -jar "$JAR" --server.port="$PORT" \
+      --spring.threads.virtual.enabled="$virtual" \
+      --server.tomcat.max-connections=20000 --server.tomcat.accept-count=10000 \
+      > "$WORK/app-$label.log" 2>&1) &
+  local pid=$!
+  for _ in $(seq 1 60); do
+    curl -s "localhost:$PORT/products" > /dev/null && break
+    sleep 1
+  done
+  java -cp "$CLASSPATH" com.meli.bench.LoadBenchmark "http://localhost:$PORT" "$label" \
+      "$CONNECTIONS" "$SECONDS_PER_LEVEL" "$WRITE_FRACTION" | tee -a "$RESULTS"
+  kill "$pid"
+  wait "$pid" 2> /dev/null || true
+}
+
+: > "$RESULTS"
+run_mode platform false
+run_mode virtual true
+echo "Results written to $RESULTS (server logs in $WORK)"
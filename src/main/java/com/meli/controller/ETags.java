@@ -0,0 +1,53 @@
+package com.meli.controller;
+
+/*
+ * ETags derivados do número de versão das entidades (Product, User): "v<versão>".
+ * Listas do catálogo usam a versão global do catálogo: "c<início do processo>-<versão>".
+ * Comparar versões não exige serializar a resposta, então 304 e 412 saem baratos.
+ */
+final class ETags {
+
+    private ETags() {
+    }
+
+    static String of(long version) {
+        return "\"v" + version + "\"";
+    }
+
+    /**
+     * A versão global recomeça a cada início do processo; o epoch evita que uma tag antiga
+     * (guardada por um cliente ou CDN) case com outro conteúdo depois de um reinício.
+     */
+    static String catalog(long epoch, long version) {
+        return "\"c" + Long.toString(epoch, 36) + "-" + version + "\"";
+    }
+
+    /**
+     * If-Match (RFC 9110): comparação forte; "*" casa com qualquer versão existente.
+     * Header ausente também casa (atualização incondicional, como antes).
+     */
+    static boolean ifMatch(String header, long version) {
+        if (header == null || header.isBlank()) {
+            return true;
+        }
+        String current = of(version);
+        for (String tag : header.split(",")) {
+            String trimmed = tag.trim();
+            if (trimmed.equals("*") || trimmed.equals(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Versão a verificar no compare-and-set do repositório: a versão lida, se o cliente mandou
+     * If-Match com uma tag específica; null (sem verificação) se não mandou ou mandou "*".
+     */
+    static Long expectedVersion(String header, long version) {
+        if (header == null || header.isBlank() || header.trim().equals("*")) {
+            return null;
+        }
+        return version;
+    }
+}
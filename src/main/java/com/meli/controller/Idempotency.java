@@ -0,0 +1,94 @@
+package com.meli.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.meli.dto.BuyRequestDTO;
+import com.meli.service.IdempotencyCache;
+import com.meli.service.PreSerializedJson;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/*
+ * Header Idempotency-Key nos POSTs de compra: a mesma chave (por operação e usuário) com o mesmo corpo
+ * devolve a resposta da primeira execução, marcada com Idempotent-Replayed: true.
+ * Só respostas 2xx ficam guardadas: um erro (ex.: estoque insuficiente) não impede uma nova tentativa.
+ * O corpo é guardado já codificado em JSON, como estava no momento da resposta; alterações
+ * posteriores no objeto (ex.: status do pedido) não aparecem nas repetições.
+ * Sem o header, a ação executa normalmente.
+ */
+final class Idempotency {
+
+    static final String HEADER = "Idempotency-Key";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private Idempotency() {
+    }
+
+    static ResponseEntity<?> execute(IdempotencyCache cache, ObjectMapper objectMapper, String operation, int userId,
+                                     String key, List<BuyRequestDTO> items, Supplier<ResponseEntity<?>> action) {
+        if (key == null) {
+            return action.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest()
+                                 .body(Collections.singletonMap("message", HEADER + " deve ter de 1 a " + MAX_KEY_LENGTH + " caracteres."));
+        }
+        IdempotencyCache.Outcome<ResponseEntity<?>> outcome;
+        try {
+            // Respostas de erro não ficam guardadas: a repetição tenta de novo
+            outcome = cache.execute(operation + ":" + userId + ":" + key, fingerprint(items),
+                                    () -> snapshot(objectMapper, action.get()),
+                                    response -> response.getStatusCode().is2xxSuccessful());
+        } catch (IdempotencyCache.KeyReusedException e) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                                 .body(Collections.singletonMap("message", e.getMessage()));
+        }
+        ResponseEntity<?> response = outcome.getValue();
+        if (!outcome.isReplayed()) {
+            return response;
+        }
+        System.out.println("DEBUG: Idempotency - Repetindo a resposta de " + operation + " para a chave '" + key + "' do usuário " + userId + ".");
+        return ResponseEntity.status(response.getStatusCode())
+                             .headers(response.getHeaders())
+                             .header("Idempotent-Replayed", "true")
+                             .body(response.getBody());
+    }
+
+    /*
+     * Troca o corpo de uma resposta 2xx pelo seu JSON já codificado (mesmo ObjectMapper das respostas).
+     * Textos são imutáveis e seguem como estão (text/plain).
+     */
+    private static ResponseEntity<?> snapshot(ObjectMapper objectMapper, ResponseEntity<?> response) {
+        Object body = response.getBody();
+        if (!response.getStatusCode().is2xxSuccessful() || body == null || body instanceof String
+                || body instanceof PreSerializedJson) {
+            return response;
+        }
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        return ResponseEntity.status(response.getStatusCode())
+                             .headers(response.getHeaders())
+                             .body(PreSerializedJson.object(json));
+    }
+
+    private static String fingerprint(List<BuyRequestDTO> items) {
+        if (items == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(items.size() * 8);
+        for (BuyRequestDTO item : items) {
+            sb.append(item.getId()).append('x').append(item.getQuantity()).append(';');
+        }
+        return sb.toString();
+    }
+}
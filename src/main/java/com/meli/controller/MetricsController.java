@@ -0,0 +1,57 @@
+package com.meli.controller;
+
+import com.meli.repository.PersistenceWriter;
+import com.meli.service.ConsumerLocks;
+import com.meli.service.IdempotencyCache;
+import com.meli.service.OrderService;
+import com.meli.service.ProductJsonCache;
+import com.meli.service.ProductService;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Controlador REST com métricas internas da aplicação (contenção de locks, lotes do sequenciador de pedidos etc.)
+ */
+@RestController
+@RequestMapping("/metrics")
+public class MetricsController {
+
+    private final ConsumerLocks consumerLocks;
+    private final OrderService orderService;
+    private final IdempotencyCache idempotencyCache;
+    private final ProductJsonCache productJsonCache;
+    private final ProductService productService;
+    private final PersistenceWriter persistenceWriter;
+
+    public MetricsController(ConsumerLocks consumerLocks, OrderService orderService, IdempotencyCache idempotencyCache,
+                             ProductJsonCache productJsonCache, ProductService productService,
+                             PersistenceWriter persistenceWriter) {
+        this.consumerLocks = consumerLocks;
+        this.orderService = orderService;
+        this.idempotencyCache = idempotencyCache;
+        this.productJsonCache = productJsonCache;
+        this.productService = productService;
+        this.persistenceWriter = persistenceWriter;
+    }
+
+    /**
+     * Retorna as métricas atuais.
+     * GET /metrics
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("cartLocks", consumerLocks.stats());
+        metrics.put("orderSequencer", orderService.getSequencerStats());
+        metrics.put("consumerOrderView", orderService.getConsumerOrderViewStats());
+        metrics.put("idempotency", idempotencyCache.stats());
+        metrics.put("productJson", productJsonCache.stats());
+        metrics.put("searchCache", productService.getSearchCacheStats());
+        metrics.put("persistence", persistenceWriter.stats());
+        return ResponseEntity.ok(metrics);
+    }
+}
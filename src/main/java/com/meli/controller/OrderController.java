@@ -1,7 +1,12 @@
 package com.meli.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.meli.model.Order; // MUDANÇA AQUI: Usar Order (singular)
+import com.meli.model.Seller;
+import com.meli.model.User;
+import com.meli.service.IdempotencyCache;
 import com.meli.service.OrderService;
+import com.meli.service.UserService;
 import com.meli.dto.SellerOrderDTO;
 import com.meli.dto.BuyRequestDTO;
 import com.meli.dto.OrderSummaryDTO;
@@ -24,9 +29,34 @@ import java.util.Optional;
 public class OrderController {
 
     private final OrderService orderService;
+    private final UserService userService;
+    private final IdempotencyCache idempotencyCache;
+    private final ObjectMapper objectMapper;
 
-    public OrderController(OrderService orderService) {
+    public OrderController(OrderService orderService, UserService userService, IdempotencyCache idempotencyCache,
+                           ObjectMapper objectMapper) {
         this.orderService = orderService;
+        this.userService = userService;
+        this.idempotencyCache = idempotencyCache;
+        this.objectMapper = objectMapper;
+    }
+
+    /*
+     * Validação das rotas do vendedor: o X-User-Id deve ser de um usuário existente (senão 404)
+     * e esse usuário deve ser um vendedor (senão 403). Retorna null quando a requisição pode seguir.
+     */
+    private ResponseEntity<?> rejectUnlessSeller(int sellerId, String operation) {
+        User user = userService.getUserById(sellerId);
+        if (user == null) {
+            System.err.println("ERROR: OrderController." + operation + " - Usuário com ID " + sellerId + " não encontrado.");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Usuário não encontrado.");
+        }
+        if (!(user instanceof Seller)) {
+            System.err.println("ERROR: OrderController." + operation + " - Usuário com ID " + sellerId + " não é um vendedor.");
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                                 .body("Acesso negado: Você precisa estar logado como um vendedor para ver as vendas.");
+        }
+        return null;
     }
 
     /**
@@ -61,11 +91,15 @@ public class OrderController {
     /**
      * Get orders that contain products from a specific seller.
      * GET /orders/seller
-     * Requires X-User-Id header for sellerId.
+     * Requires X-User-Id header for sellerId: 404 if the user does not exist, 403 if it is not a seller.
      */
     @GetMapping("/seller")
-    public ResponseEntity<List<SellerOrderDTO>> getOrdersForSeller(@RequestHeader("X-User-Id") int sellerId) {
+    public ResponseEntity<?> getOrdersForSeller(@RequestHeader("X-User-Id") int sellerId) {
         System.out.println("DEBUG: OrderController - Recebendo requisição para pedidos do vendedor ID: " + sellerId);
+        ResponseEntity<?> rejected = rejectUnlessSeller(sellerId, "getOrdersForSeller");
+        if (rejected != null) {
+            return rejected;
+        }
         List<SellerOrderDTO> sellerOrders = orderService.getOrdersBySellerId(sellerId);
         if (sellerOrders.isEmpty()) {
             System.out.println("DEBUG: OrderController - Nenhum pedido encontrado para o vendedor ID: " + sellerId);
@@ -74,6 +108,22 @@ public class OrderController {
         return ResponseEntity.ok(sellerOrders);
     }
 
+    /**
+     * Sales summary for the seller dashboard: order count, units sold per product and revenue
+     * (total and by order status), maintained on every order write.
+     * GET /orders/seller/summary
+     * Requires X-User-Id header for sellerId: 404 if the user does not exist, 403 if it is not a seller.
+     */
+    @GetMapping("/seller/summary")
+    public ResponseEntity<?> getSellerSalesSummary(@RequestHeader("X-User-Id") int sellerId) {
+        System.out.println("DEBUG: OrderController - Recebendo requisição para o resumo de vendas do vendedor ID: " + sellerId);
+        ResponseEntity<?> rejected = rejectUnlessSeller(sellerId, "getSellerSalesSummary");
+        if (rejected != null) {
+            return rejected;
+        }
+        return ResponseEntity.ok(orderService.getSellerSalesSummary(sellerId));
+    }
+
     /**
      * NOVO ENDPOINT: Cria um novo pedido
      *
@@ -84,22 +134,32 @@ public class OrderController {
     @PostMapping
     public ResponseEntity<?> createOrder(
             @RequestHeader("X-User-Id") int userId, // consumerId
+            @RequestHeader(value = Idempotency.HEADER, required = false) String idempotencyKey,
             @RequestBody List<BuyRequestDTO> items) { 
         
         System.out.println("DEBUG: OrderController: Recebida requisição POST /orders/simple-purchase para userId: " + userId + " com " + items.size() + " itens.");
+        // Repetições com a mesma Idempotency-Key recebem a resposta do primeiro pedido
+        return Idempotency.execute(idempotencyCache, objectMapper, "order", userId, idempotencyKey, items, () -> createOrder(userId, items));
+    }
+
+    private ResponseEntity<?> createOrder(int userId, List<BuyRequestDTO> items) {
         try {
             // Chama a versão simplificada do OrderService (sem desconto)
-            // Assumindo que OrderService.createProductOrder(List<BuyRequestDTO>, int) existe
-            Optional<Order> newOrderOptional = orderService.createProductOrder(items, userId); 
-            
-            if (newOrderOptional.isPresent()) {
-                Order newOrder = newOrderOptional.get();
-                System.out.println("DEBUG: OrderController: Pedido simplificado criado com sucesso: " + newOrder.getId());
-                return ResponseEntity.status(HttpStatus.CREATED).body(newOrder);
-            } else {
-                Map<String, String> errorResponse = new HashMap<>();
-                errorResponse.put("message", "Falha ao criar o pedido simplificado. Verifique os dados fornecidos.");
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+            OrderService.CheckoutResult result = orderService.createProductOrder(items, userId);
+            Map<String, String> errorResponse = new HashMap<>();
+            switch (result.getStatus()) {
+                case COMPLETED:
+                    List<Order> orders = result.getOrders();
+                    Order newOrder = orders.get(orders.size() - 1);
+                    System.out.println("DEBUG: OrderController: Pedido simplificado criado com sucesso: " + newOrder.getId());
+                    return ResponseEntity.status(HttpStatus.CREATED).body(newOrder);
+                case REJECTED:
+                    errorResponse.put("message", "Falha ao criar o pedido simplificado. Verifique os dados fornecidos.");
+                    return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+                default:
+                    // Falha do servidor (gravação ou tempo esgotado): o cliente pode tentar de novo
+                    errorResponse.put("message", "Erro interno do servidor ao criar pedido simplificado.");
+                    return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
             }
         } catch (IllegalArgumentException e) {
             System.err.println("ERROR: OrderController: Erro ao criar pedido simplificado: " + e.getMessage());
@@ -0,0 +1,25 @@
+package com.meli.controller;
+
+import com.meli.repository.PersistenceFailureException;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.Collections;
+import java.util.Map;
+
+/*
+ * Responde 500 em qualquer endpoint cuja escrita não foi confirmada pelo writer de persistência.
+ */
+@RestControllerAdvice
+public class PersistenceFailureHandler {
+
+    @ExceptionHandler(PersistenceFailureException.class)
+    public ResponseEntity<Map<String, String>> handle(PersistenceFailureException e) {
+        System.err.println("ERROR: PersistenceFailureHandler - " + e.getMessage());
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                             .body(Collections.singletonMap("message", "Erro interno: a alteração não pôde ser gravada. Tente novamente."));
+    }
+}
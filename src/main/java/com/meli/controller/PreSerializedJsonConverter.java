@@ -0,0 +1,49 @@
+package com.meli.controller;
+
+import com.meli.service.PreSerializedJson;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/*
+ * Escreve respostas PreSerializedJson copiando os fragmentos já codificados para a saída do servlet.
+ * O Spring Boot registra os HttpMessageConverter declarados como beans antes dos padrão.
+ */
+@Component
+public class PreSerializedJsonConverter extends AbstractHttpMessageConverter<PreSerializedJson> {
+
+    public PreSerializedJsonConverter() {
+        super(MediaType.APPLICATION_JSON);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return PreSerializedJson.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected PreSerializedJson readInternal(Class<? extends PreSerializedJson> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("PreSerializedJson é somente para respostas.", inputMessage);
+    }
+
+    @Override
+    protected Long getContentLength(PreSerializedJson json, MediaType contentType) {
+        return json.length();
+    }
+
+    @Override
+    protected void writeInternal(PreSerializedJson json, HttpOutputMessage outputMessage) throws IOException {
+        json.writeTo(outputMessage.getBody());
+    }
+}
@@ -1,23 +1,34 @@
 package com.meli.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.meli.model.Order;
 import com.meli.model.Product;
 import com.meli.model.Seller; // Importar Seller
 import com.meli.model.Consumer; // Importar Consumer
 import com.meli.model.User; // Importar User
+import com.meli.service.IdempotencyCache;
 import com.meli.service.OrderService;
+import com.meli.service.ProductJsonCache;
 import com.meli.service.ProductService;
 import com.meli.service.UserService; // IMPORTANTE: Importar UserService
 import com.meli.dto.BuyRequestDTO;
+import com.meli.dto.ProductFilterDTO;
+import com.meli.repository.VersionConflictException;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/products") // Base path for all methods in this controller
@@ -26,25 +37,52 @@ public class ProductController {
     private final ProductService productService;
     private final OrderService orderService;
     private final UserService userService; // NOVO: Injetar UserService
+    private final IdempotencyCache idempotencyCache;
+    private final ObjectMapper objectMapper;
+    // JSON de cada produto codificado uma vez por versão; as listas são escritas com esses fragmentos
+    private final ProductJsonCache productJson;
+    // Cache-Control das leituras do catálogo: navegadores revalidam (304 barato), a CDN guarda por s-maxage
+    private final CacheControl catalogCacheControl;
 
     // CONSTRUTOR: Adicionar UserService
-    public ProductController(ProductService productService, OrderService orderService, UserService userService) {
+    public ProductController(ProductService productService, OrderService orderService, UserService userService,
+                             IdempotencyCache idempotencyCache, ObjectMapper objectMapper, ProductJsonCache productJson,
+                             @Value("${meli.catalog.cache.max-age-seconds:0}") long maxAgeSeconds,
+                             @Value("${meli.catalog.cache.s-maxage-seconds:10}") long sharedMaxAgeSeconds) {
         this.productService = productService;
         this.orderService = orderService;
         this.userService = userService;
+        this.idempotencyCache = idempotencyCache;
+        this.objectMapper = objectMapper;
+        this.productJson = productJson;
+        this.catalogCacheControl = CacheControl.maxAge(maxAgeSeconds, TimeUnit.SECONDS)
+                                               .sMaxAge(sharedMaxAgeSeconds, TimeUnit.SECONDS)
+                                               .cachePublic();
     }
 
     /**
-     * Get ALL products.
-     * GET /products
+     * Get ALL products, optionally filtered by facets and price.
+     * GET /products?category=...&brand=...&sellerId=...&inStock=true&minPrice=...&maxPrice=...&sort=price_asc|price_desc
      * This endpoint is for general viewing (e.g., home page).
      */
     @GetMapping // Maps to /products
-    public ResponseEntity<List<Product>> getAllProducts() {
+    public ResponseEntity<?> getAllProducts(ProductFilterDTO filter, WebRequest request) {
         System.out.println("DEBUG: ProductController - Fetching all products.");
-        List<Product> products = productService.getAllProducts();
-        products.removeIf(p -> p.getStock() != null && p.getStock().equals(0)); // Adicionado null check para stock
-        return ResponseEntity.ok(products);
+        if (!filter.isSortValid()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                                 .body("Ordenação inválida: use " + ProductFilterDTO.SORT_PRICE_ASC + " ou " + ProductFilterDTO.SORT_PRICE_DESC + ".");
+        }
+        // Sem produtos de estoque zerado
+        return catalogResponse(request, () -> productService.getListedProducts(filter));
+    }
+
+    /**
+     * Facet counts (category, brand, seller, in stock) for the current filter.
+     * GET /products/facets?category=...&brand=...&sellerId=...&inStock=true&minPrice=...&maxPrice=...
+     */
+    @GetMapping("/facets")
+    public ResponseEntity<Map<String, Object>> getFacetCounts(ProductFilterDTO filter) {
+        return ResponseEntity.ok(productService.getFacetCounts(filter));
     }
 
     /**
@@ -52,7 +90,7 @@ public class ProductController {
      * GET /products/seller/{sellerId}
      */
     @GetMapping("/seller/{sellerId}") // Correctly mapped to /products/seller/{sellerId}
-    public ResponseEntity<?> getProductsBySeller(@PathVariable int sellerId) { // Tipo de retorno ResponseEntity<?>
+    public ResponseEntity<?> getProductsBySeller(@PathVariable int sellerId, WebRequest request) { // Tipo de retorno ResponseEntity<?>
         System.out.println("DEBUG: ProductController - Fetching products for sellerId: " + sellerId);
         // NOVO: Validação para garantir que o ID é de um vendedor
         User user = userService.getUserById(sellerId);
@@ -62,8 +100,7 @@ public class ProductController {
                                  .body("Acesso negado: ID do vendedor inválido ou não autorizado.");
         }
 
-        List<Product> products = productService.getProductsBySellerId(sellerId);
-        return ResponseEntity.ok(products);
+        return catalogResponse(request, () -> productService.getProductsBySellerId(sellerId));
     }
 
     /**
@@ -72,15 +109,40 @@ public class ProductController {
      * GET /products/{id}
      */
     @GetMapping("/{id}")
-    public ResponseEntity<?> getProductById(@PathVariable int id) { // Tipo de retorno ResponseEntity<?>
+    public ResponseEntity<?> getProductById(@PathVariable int id, WebRequest request) { // Tipo de retorno ResponseEntity<?>
         Product product = productService.getProductById(id);
         if (product != null) {
-            return ResponseEntity.ok(product);
+            return conditionalResponse(request, ETags.of(product.getVersion()), product.getLastModified(),
+                                       () -> productJson.object(product));
         } else {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Produto com ID " + id + " não encontrado.");
         }
     }
 
+    /*
+     * Lista do catálogo com ETag e Last-Modified da versão global. A versão é lida antes de montar a
+     * lista: se o catálogo mudar no meio, a tag fica mais antiga que o corpo, nunca o contrário.
+     */
+    private ResponseEntity<?> catalogResponse(WebRequest request, Supplier<List<Product>> products) {
+        String eTag = ETags.catalog(productService.getCatalogEpoch(), productService.getCatalogVersion());
+        return conditionalResponse(request, eTag, productService.getCatalogLastModified(),
+                                   () -> productJson.array(products.get()));
+    }
+
+    /*
+     * 304 sem montar nem serializar o corpo quando If-None-Match (ou If-Modified-Since) ainda vale.
+     */
+    private ResponseEntity<?> conditionalResponse(WebRequest request, String eTag, long lastModified, Supplier<?> body) {
+        if (request.checkNotModified(eTag, lastModified)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(catalogCacheControl).build();
+        }
+        return ResponseEntity.ok()
+                             .eTag(eTag)
+                             .lastModified(lastModified)
+                             .cacheControl(catalogCacheControl)
+                             .body(body.get());
+    }
+
     /**
      * Add a new product.
      * POST /products
@@ -126,11 +188,14 @@ public class ProductController {
      * Update an existing product.
      * PUT /products/{id}
      * Requires X-User-Id header for validation.
+     * Optional If-Match header (ETag from GET): the update only happens if the product did not change
+     * in the meantime; otherwise 412 Precondition Failed.
      */
     @PutMapping("/{id}")
     public ResponseEntity<?> updateProduct(@PathVariable int id,
                                            @RequestBody Product product,
-                                           @RequestHeader("X-User-Id") int loggedInUserId) {
+                                           @RequestHeader("X-User-Id") int loggedInUserId,
+                                           @RequestHeader(value = "If-Match", required = false) String ifMatch) {
         System.out.println("DEBUG: ProductController.updateProduct - Recebendo requisição para atualizar produto ID: " + id + ". LoggedInUser ID do header: " + loggedInUserId);
 
         // NOVO: Validação: O usuário logado (loggedInUserId) deve ser um vendedor
@@ -164,12 +229,22 @@ public class ProductController {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Todos os campos (título, descrição, preço, estoque) são obrigatórios e válidos.");
         }
 
+        if (!ETags.ifMatch(ifMatch, existingProduct.getVersion())) {
+            return preconditionFailed(existingProduct.getVersion());
+        }
+
         product.setId(id); 
         product.setSellerId(existingProduct.getSellerId()); 
 
-        Product updatedProduct = productService.updateProduct(id, product);
+        Product updatedProduct;
+        try {
+            updatedProduct = productService.updateProduct(id, product, ETags.expectedVersion(ifMatch, existingProduct.getVersion()));
+        } catch (VersionConflictException e) {
+            System.err.println("ERROR: ProductController.updateProduct - " + e.getMessage());
+            return preconditionFailed(e.getCurrentVersion());
+        }
         if (updatedProduct != null) {
-            return ResponseEntity.ok(updatedProduct);
+            return ResponseEntity.ok().eTag(ETags.of(updatedProduct.getVersion())).body(updatedProduct);
         } else {
             System.err.println("ERROR: ProductController.updateProduct - Falha interna ao atualizar produto ID " + id + ".");
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to update product.");
@@ -222,7 +297,8 @@ public class ProductController {
      */
     @PostMapping("/purchase")
     public ResponseEntity<?> purchaseProducts(@RequestBody List<BuyRequestDTO> purchaseItems,
-                                              @RequestHeader("X-User-Id") int loggedInConsumerId) { 
+                                              @RequestHeader("X-User-Id") int loggedInConsumerId,
+                                              @RequestHeader(value = Idempotency.HEADER, required = false) String idempotencyKey) { 
         System.out.println("DEBUG: ProductController - Received purchase request for " + purchaseItems.size() + " items, by consumer ID: " + loggedInConsumerId);
         
         User user = userService.getUserById(loggedInConsumerId);
@@ -232,61 +308,24 @@ public class ProductController {
                                  .body("Acesso negado: Você precisa estar logado como um consumidor para realizar compras.");
         }
 
-        List<String> errors = new ArrayList<>();
-
         if (purchaseItems == null || purchaseItems.isEmpty()) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Arrays.asList("Nenhum item selecionado para compra."));
         }
 
-        for (BuyRequestDTO item : purchaseItems) { 
-            try {
-                Integer productId = item.getId(); 
-                Integer quantity = item.getQuantity(); 
-
-                if (productId == null || quantity == null || quantity <= 0) {
-                    errors.add("Dados de item inválidos: ID ou quantidade ausente/inválida para um item.");
-                    continue; 
-                }
-
-                Product product = productService.getProductById(productId);
-                if (product == null) {
-                    errors.add("Produto com ID " + productId + " não encontrado.");
-                    continue; 
-                }
-
-                if (product.getStock() == null || product.getStock() < quantity) {
-                    errors.add("Estoque insuficiente para o produto " + product.getTitle() + " (ID: " + productId + "). Disponível: " + product.getStock() + ", Solicitado: " + quantity + ".");
-                    continue; 
-                }
-
-                product.setStock(product.getStock() - quantity);
-                productService.updateProduct(productId, product); 
-                System.out.println("DEBUG: ProductController - Estoque decrementado para o produto " + product.getTitle() + " (ID: " + productId + ") por " + quantity + ". Novo estoque: " + product.getStock());
-
-            } catch (Exception e) {
-                errors.add("Erro ao processar item: " + e.getMessage());
-                System.err.println("ERROR: ProductController - Erro geral na compra de item: " + e.getMessage());
-                e.printStackTrace();
-            }
-        }
-
-        if (!errors.isEmpty()) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errors); 
-        }
-
-        try {
-            Optional<Order> createdOrder = orderService.createProductOrder(purchaseItems, loggedInConsumerId);
-
-            if (createdOrder.isPresent()) {
-                return ResponseEntity.ok(createdOrder.get());
-            } else {
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Arrays.asList("Falha ao criar o pedido. Verifique os dados do usuário ou a consistência dos produtos."));
+        // Repetições com a mesma Idempotency-Key recebem a resposta da primeira compra, sem reservar de novo
+        return Idempotency.execute(idempotencyCache, objectMapper, "purchase", loggedInConsumerId, idempotencyKey, purchaseItems, () -> {
+            // Validação, reserva de estoque, pedidos por vendedor e gravação em uma única unidade de trabalho
+            OrderService.CheckoutResult result = orderService.checkout(purchaseItems, loggedInConsumerId);
+            switch (result.getStatus()) {
+                case COMPLETED:
+                    List<Order> orders = result.getOrders();
+                    return ResponseEntity.ok(orders.get(orders.size() - 1));
+                case REJECTED:
+                    return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(result.getErrors());
+                default:
+                    return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(result.getErrors());
             }
-        } catch (Exception e) {
-            System.err.println("ERROR: ProductController - Erro ao chamar OrderService para criar o pedido: " + e.getMessage());
-            e.printStackTrace();
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Arrays.asList("Erro interno ao finalizar a compra: " + e.getMessage()));
-        }
+        });
     }
 
     /**
@@ -294,9 +333,24 @@ public class ProductController {
      * GET /products/search?term={searchTerm}
      */
     @GetMapping("/search")
-    public ResponseEntity<List<Product>> searchProducts(@RequestParam String term) {
+    public ResponseEntity<?> searchProducts(@RequestParam String term) {
         System.out.println("DEBUG: ProductController.searchProducts - Recebendo termo de busca: '" + term + "'");
         List<Product> products = productService.searchProducts(term); // Chama o método de busca geral do serviço
-        return ResponseEntity.ok(products);
+        return ResponseEntity.ok(productJson.array(products));
+    }
+
+    /**
+     * Tamanho dos índices de busca (trigramas por campo, com estimativa de memória).
+     * GET /products/search/index-stats
+     */
+    @GetMapping("/search/index-stats")
+    public ResponseEntity<Map<String, Object>> getSearchIndexStats() {
+        return ResponseEntity.ok(productService.getSearchIndexStats());
+    }
+
+    private static ResponseEntity<?> preconditionFailed(long currentVersion) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                             .eTag(ETags.of(currentVersion))
+                             .body("O produto foi alterado por outra requisição. Recarregue e tente novamente.");
     }
 }
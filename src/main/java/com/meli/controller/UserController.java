@@ -3,10 +3,12 @@ package com.meli.controller;
 import com.meli.model.User;
 import com.meli.service.UserService;
 import com.meli.dto.LoginRequestDTO; // Certifique-se de que este DTO está correto
+import com.meli.repository.VersionConflictException;
 
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.Optional; // Importar Optional
@@ -37,10 +39,15 @@ public class UserController {
      * Get user by ID
      */
     @GetMapping("/{id}")
-    public ResponseEntity<?> getUserById(@PathVariable int id) {
+    public ResponseEntity<?> getUserById(@PathVariable int id, WebRequest request) {
         User user = userService.getUserById(id);
         if (user != null) {
-            return ResponseEntity.ok(user);
+            String eTag = ETags.of(user.getVersion());
+            if (request.checkNotModified(eTag)) {
+                // 304 Not Modified (If-None-Match com a versão atual), sem corpo
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+            }
+            return ResponseEntity.ok().eTag(eTag).body(user);
         } else {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                                  .body("Usuário com ID " + id + " não foi encontrado.");
@@ -86,9 +93,12 @@ public class UserController {
 
     /**
      * Update user by ID
+     * Optional If-Match header (ETag from GET): the update only happens if the user did not change
+     * in the meantime; otherwise 412 Precondition Failed.
      */
     @PutMapping("/{id}")
-    public ResponseEntity<?> updateUser(@PathVariable int id, @RequestBody User userDetails) {
+    public ResponseEntity<?> updateUser(@PathVariable int id, @RequestBody User userDetails,
+                                        @RequestHeader(value = "If-Match", required = false) String ifMatch) {
         if (userDetails.getName() == null || userDetails.getName().isEmpty() ||
             userDetails.getEmail() == null || userDetails.getEmail().isEmpty() ||
             userDetails.getCpf() == null || userDetails.getCpf().isEmpty() ||
@@ -96,9 +106,28 @@ public class UserController {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Nome, email, cpf e endereço são obrigatórios para atualização.");
         }
 
-        Optional<User> updatedUser = userService.updateUser(userDetails); // Agora retorna Optional
+        userDetails.setId(id); // O usuário alterado é sempre o do caminho
+        Long expectedVersion = null;
+        if (ifMatch != null) {
+            User current = userService.getUserById(id);
+            if (current == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Usuário com ID " + id + " não encontrado para atualização.");
+            }
+            if (!ETags.ifMatch(ifMatch, current.getVersion())) {
+                return preconditionFailed(current.getVersion());
+            }
+            expectedVersion = ETags.expectedVersion(ifMatch, current.getVersion());
+        }
+
+        Optional<User> updatedUser;
+        try {
+            updatedUser = userService.updateUser(userDetails, expectedVersion); // Agora retorna Optional
+        } catch (VersionConflictException e) {
+            System.err.println("ERROR: UserController.updateUser - " + e.getMessage());
+            return preconditionFailed(e.getCurrentVersion());
+        }
         if (updatedUser.isPresent()) {
-            return ResponseEntity.ok(updatedUser.get());
+            return ResponseEntity.ok().eTag(ETags.of(updatedUser.get().getVersion())).body(updatedUser.get());
         } else {
             if (userService.getUserById(id) == null) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Usuário com ID " + id + " não encontrado para atualização.");
@@ -138,4 +167,10 @@ public class UserController {
                                  .body("Usuário com email " + email + " não encontrado.");
         }
     }
+
+    private static ResponseEntity<?> preconditionFailed(long currentVersion) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                             .eTag(ETags.of(currentVersion))
+                             .body("O usuário foi alterado por outra requisição. Recarregue e tente novamente.");
+    }
 }
@@ -0,0 +1,114 @@
+package com.meli.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Filtros da listagem de produtos, vindos dos parâmetros da URL
+ * (ex.: /products?category=Livros&brand=Apple&brand=Samsung&inStock=true&minPrice=10&sort=price_asc).
+ * Valores repetidos de um mesmo filtro são combinados com OU; filtros diferentes, com E.
+ */
+public class ProductFilterDTO {
+    private List<String> category = new ArrayList<>();
+    private List<String> brand = new ArrayList<>();
+    private List<Integer> sellerId = new ArrayList<>();
+    // true: só com estoque; false: só sem estoque; null: ambos
+    private Boolean inStock;
+    // Faixa de preço inclusiva; null = sem limite
+    private Double minPrice;
+    private Double maxPrice;
+    // price_asc, price_desc ou null (ordem do catálogo)
+    private String sort;
+
+    public static final String SORT_PRICE_ASC = "price_asc";
+    public static final String SORT_PRICE_DESC = "price_desc";
+
+    public ProductFilterDTO() {
+    }
+
+    /*
+     * Indica se algum filtro (ou ordenação) foi informado.
+     */
+    public boolean isEmpty() {
+        return !hasFacets() && !hasPriceQuery();
+    }
+
+    /*
+     * Indica se há filtro por categoria, marca, vendedor ou estoque.
+     */
+    public boolean hasFacets() {
+        return !category.isEmpty() || !brand.isEmpty() || !sellerId.isEmpty() || inStock != null;
+    }
+
+    /*
+     * Indica se há faixa de preço ou ordenação por preço.
+     */
+    public boolean hasPriceQuery() {
+        return hasPriceRange() || sort != null;
+    }
+
+    public boolean hasPriceRange() {
+        return minPrice != null || maxPrice != null;
+    }
+
+    public boolean isSortValid() {
+        return sort == null || SORT_PRICE_ASC.equals(sort) || SORT_PRICE_DESC.equals(sort);
+    }
+
+    // Getters e Setters
+    public List<String> getCategory() {
+        return category;
+    }
+
+    public void setCategory(List<String> category) {
+        this.category = category == null ? new ArrayList<>() : category;
+    }
+
+    public List<String> getBrand() {
+        return brand;
+    }
+
+    public void setBrand(List<String> brand) {
+        this.brand = brand == null ? new ArrayList<>() : brand;
+    }
+
+    public List<Integer> getSellerId() {
+        return sellerId;
+    }
+
+    public void setSellerId(List<Integer> sellerId) {
+        this.sellerId = sellerId == null ? new ArrayList<>() : sellerId;
+    }
+
+    public Boolean getInStock() {
+        return inStock;
+    }
+
+    public void setInStock(Boolean inStock) {
+        this.inStock = inStock;
+    }
+
+    public Double getMinPrice() {
+        return minPrice;
+    }
+
+    public void setMinPrice(Double minPrice) {
+        this.minPrice = minPrice;
+    }
+
+    public Double getMaxPrice() {
+        return maxPrice;
+    }
+
+    public void setMaxPrice(Double maxPrice) {
+        this.maxPrice = maxPrice;
+    }
+
+    public String getSort() {
+        return sort;
+    }
+
+    public void setSort(String sort) {
+        this.sort = sort;
+    }
+}
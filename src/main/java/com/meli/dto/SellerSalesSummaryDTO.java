@@ -0,0 +1,102 @@
+package com.meli.dto;
+
+import java.util.Map;
+
+/**
+ * Resumo de vendas de um vendedor para o painel: quantidade de pedidos, unidades vendidas por produto
+ * e faturamento (total e por status do pedido). O faturamento usa o total gravado em cada pedido,
+ * ou seja, o preço no momento da compra.
+ */
+public class SellerSalesSummaryDTO {
+    private int sellerId;
+    private long orderCount;
+    private long unitsSold;
+    private Map<Integer, Long> unitsByProduct; // <productId, unidades>
+    private double revenue;
+    private Map<String, Double> revenueByStatus;
+    private Map<String, Long> ordersByStatus;
+
+    public SellerSalesSummaryDTO() {
+    }
+
+    public SellerSalesSummaryDTO(int sellerId, long orderCount, long unitsSold, Map<Integer, Long> unitsByProduct,
+                                 double revenue, Map<String, Double> revenueByStatus, Map<String, Long> ordersByStatus) {
+        this.sellerId = sellerId;
+        this.orderCount = orderCount;
+        this.unitsSold = unitsSold;
+        this.unitsByProduct = unitsByProduct;
+        this.revenue = revenue;
+        this.revenueByStatus = revenueByStatus;
+        this.ordersByStatus = ordersByStatus;
+    }
+
+    // Getters e Setters
+    public int getSellerId() {
+        return sellerId;
+    }
+
+    public void setSellerId(int sellerId) {
+        this.sellerId = sellerId;
+    }
+
+    public long getOrderCount() {
+        return orderCount;
+    }
+
+    public void setOrderCount(long orderCount) {
+        this.orderCount = orderCount;
+    }
+
+    public long getUnitsSold() {
+        return unitsSold;
+    }
+
+    public void setUnitsSold(long unitsSold) {
+        this.unitsSold = unitsSold;
+    }
+
+    public Map<Integer, Long> getUnitsByProduct() {
+        return unitsByProduct;
+    }
+
+    public void setUnitsByProduct(Map<Integer, Long> unitsByProduct) {
+        this.unitsByProduct = unitsByProduct;
+    }
+
+    public double getRevenue() {
+        return revenue;
+    }
+
+    public void setRevenue(double revenue) {
+        this.revenue = revenue;
+    }
+
+    public Map<String, Double> getRevenueByStatus() {
+        return revenueByStatus;
+    }
+
+    public void setRevenueByStatus(Map<String, Double> revenueByStatus) {
+        this.revenueByStatus = revenueByStatus;
+    }
+
+    public Map<String, Long> getOrdersByStatus() {
+        return ordersByStatus;
+    }
+
+    public void setOrdersByStatus(Map<String, Long> ordersByStatus) {
+        this.ordersByStatus = ordersByStatus;
+    }
+
+    @Override
+    public String toString() {
+        return "SellerSalesSummaryDTO{" +
+               "sellerId=" + sellerId +
+               ", orderCount=" + orderCount +
+               ", unitsSold=" + unitsSold +
+               ", unitsByProduct=" + unitsByProduct +
+               ", revenue=" + revenue +
+               ", revenueByStatus=" + revenueByStatus +
+               ", ordersByStatus=" + ordersByStatus +
+               '}';
+    }
+}
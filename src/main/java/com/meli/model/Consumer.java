@@ -8,7 +8,8 @@ import java.util.Map;
 @JsonTypeName("consumer")
 public class Consumer extends User {
 
-    private Map<Integer, Integer> cart = new HashMap<>();
+    // Substituído por inteiro a cada alteração (CartService), por isso volatile
+    private volatile Map<Integer, Integer> cart = new HashMap<>();
     private PaymentMethod preferredPaymentMethod = PaymentMethod.PIX;
 
     // No-argument constructor is essential for Jackson deserialization
@@ -46,6 +47,14 @@ public class Consumer extends User {
         return "consumer";
     }
 
+    @Override
+    public Consumer copy() {
+        Consumer copy = copyInto(new Consumer());
+        copy.setCart(new HashMap<>(cart));
+        copy.setPreferredPaymentMethod(preferredPaymentMethod);
+        return copy;
+    }
+
     public PaymentMethod getPreferredPaymentMethod() {
         return preferredPaymentMethod;
     }
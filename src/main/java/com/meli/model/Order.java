@@ -125,4 +125,12 @@ public class Order { // Nome da classe é Order (singular)
     public void setTimestamp(ZonedDateTime timestamp) {
         this.timestamp = timestamp;
     }
+
+    /**
+     * Cópia com um mapa de produtos próprio: alterar a cópia não afeta o pedido original.
+     */
+    public Order copy() {
+        return new Order(id, consumerId, sellerId, products == null ? null : new HashMap<>(products),
+                shippingAddress, sendersAddress, total, shippingCost, paymentMethod, status, timestamp);
+    }
 }
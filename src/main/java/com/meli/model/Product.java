@@ -1,5 +1,7 @@
 package com.meli.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.util.Objects;
 
 public class Product {
@@ -12,6 +14,11 @@ public class Product {
     private Integer stock;
     private String category;
     private int sellerId;
+    // Versão da representação: incrementada pelo repositório a cada publicação (ETag / If-Match)
+    private long version;
+    // Instante (epoch ms) da publicação desta versão (Last-Modified); não é gravado nem serializado
+    @JsonIgnore
+    private long lastModified;
 
     // IMPORTANT: No-argument constructor is ESSENTIAL for Jackson deserialization
     public Product() {
@@ -104,6 +111,24 @@ public class Product {
         this.sellerId = sellerId;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    @JsonIgnore
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    @JsonIgnore
+    public void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -129,6 +154,7 @@ public class Product {
                ", brand='" + brand + '\'' +
                ", category='" + category + '\'' + // AGORA É CATEGORY
                ", sellerId=" + sellerId +
+               ", version=" + version +
                '}';
     }
 }
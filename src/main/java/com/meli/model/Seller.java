@@ -50,4 +50,11 @@ public class Seller extends User {
     public String getType() {
         return "seller";
     }
+
+    @Override
+    public Seller copy() {
+        Seller copy = copyInto(new Seller());
+        copy.setInventory(new HashMap<>(inventory));
+        return copy;
+    }
 }
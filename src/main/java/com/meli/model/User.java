@@ -23,6 +23,8 @@ public abstract class User {
     private String cpf;
     private String password; // In a real app, this would be hashed
     private String address;
+    // Versão da representação: incrementada pelo repositório a cada gravação (ETag / If-Match)
+    private long version;
 
     // No-argument constructor is essential for Jackson deserialization
     public User() {
@@ -86,6 +88,31 @@ public abstract class User {
         this.address = address;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     // Abstract method to be implemented by subclasses to return their type
     public abstract String getType(); // THIS IS THE METHOD CAUSING THE ERROR
+
+    /**
+     * Cópia independente deste usuário. O repositório altera a cópia e a publica como nova versão,
+     * sem tocar no objeto que os leitores já enxergam.
+     */
+    public abstract User copy();
+
+    protected <U extends User> U copyInto(U target) {
+        target.setId(id);
+        target.setName(name);
+        target.setEmail(email);
+        target.setCpf(cpf);
+        target.setPassword(password);
+        target.setAddress(address);
+        target.setVersion(version);
+        return target;
+    }
 }
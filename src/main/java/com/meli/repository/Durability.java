@@ -0,0 +1,13 @@
+package com.meli.repository;
+
+/*
+ * Nível de durabilidade escolhido por quem chama uma operação de escrita nos repositórios.
+ */
+public enum Durability {
+    // Enfileira a mutação e retorna imediatamente; o writer grava em segundo plano.
+    FIRE_AND_FORGET,
+    // Retorna depois que o lote contendo a mutação foi escrito no arquivo.
+    FLUSH,
+    // Retorna depois que o lote foi escrito e sincronizado com o disco (fsync).
+    FSYNC;
+}
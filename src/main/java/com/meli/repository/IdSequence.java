@@ -0,0 +1,114 @@
+package com.meli.repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Sequência de ids de uma entidade, com alocação O(1) e sem lock no caminho comum.
+ * Os ids são reservados em blocos: antes de entregar um id do bloco seguinte, o limite
+ * (high-water mark) é gravado em disco com fsync. Depois de um restart a sequência continua
+ * a partir do limite gravado, então um id já entregue nunca é reemitido; os ids não usados
+ * do último bloco são pulados (a sequência pode ter lacunas).
+ */
+public class IdSequence {
+
+    private final File file;
+    private final int blockSize;
+    private final AtomicInteger next;
+    private final ReentrantLock reserveLock = new ReentrantLock();
+    // Primeiro id ainda não reservado em disco
+    private volatile int limit;
+
+    public IdSequence(File file, int blockSize) {
+        this.file = file;
+        this.blockSize = Math.max(1, blockSize);
+        int persisted = readLimit(file);
+        this.limit = persisted;
+        this.next = new AtomicInteger(Math.max(1, persisted));
+    }
+
+    /**
+     * Próximo id. Só toma o lock (e grava em disco) quando o bloco reservado acaba.
+     */
+    public int next() {
+        int id = next.getAndIncrement();
+        if (id >= limit) {
+            reserveThrough(id);
+        }
+        return id;
+    }
+
+    /**
+     * Garante que a sequência nunca entregue um id menor ou igual ao informado
+     * (ids já existentes nos dados carregados).
+     */
+    public void observe(int id) {
+        next.accumulateAndGet(id + 1, Math::max);
+    }
+
+    /**
+     * Próximo id que seria entregue (sem consumi-lo).
+     */
+    public int peek() {
+        return next.get();
+    }
+
+    private void reserveThrough(int id) {
+        reserveLock.lock();
+        try {
+            if (id < limit) {
+                return;
+            }
+            int newLimit = id + blockSize;
+            writeLimit(newLimit);
+            limit = newLimit;
+        } finally {
+            reserveLock.unlock();
+        }
+    }
+
+    private static int readLimit(File file) {
+        if (!file.exists()) {
+            return 0;
+        }
+        try {
+            String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim();
+            return content.isEmpty() ? 0 : Integer.parseInt(content);
+        } catch (IOException | NumberFormatException e) {
+            throw new IllegalStateException("Não foi possível ler a sequência de ids em " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /*
+     * Grava o limite em um arquivo temporário e move atomicamente, como o checkpoint do log.
+     */
+    private void writeLimit(int newLimit) {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.exists()) {
+            parent.mkdirs();
+        }
+        File tmp = new File(parent, file.getName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap((newLimit + "\n").getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Falha ao reservar bloco de ids em " + file.getAbsolutePath(), e);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.meli.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Uma IdSequence por tipo de entidade (products, users, orders), compartilhada pelos repositórios.
+ * Cada sequência guarda seu limite em <meli.data.dir>/<entidade>.seq.
+ */
+@Component
+public class IdSequences {
+
+    private final File DATA_DIR;
+
+    private final int blockSize;
+    private final ConcurrentHashMap<String, IdSequence> sequences = new ConcurrentHashMap<>();
+
+    public IdSequences(@Value("${meli.ids.block-size:100}") int blockSize,
+                       @Value("${meli.data.dir:data}") String dataDir) {
+        this.blockSize = blockSize;
+        this.DATA_DIR = new File(dataDir);
+    }
+
+    public IdSequence forEntity(String entity) {
+        return sequences.computeIfAbsent(entity, name -> new IdSequence(new File(DATA_DIR, name + ".seq"), blockSize));
+    }
+}
@@ -0,0 +1,185 @@
+package com.meli.repository;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/*
+ * Índice hash de chave int primitiva para objeto, com endereçamento aberto (sondagem linear).
+ * Não faz boxing das chaves e get() não aloca. Remoções usam deslocamento para trás,
+ * então não existem lápides e a sondagem continua curta.
+ * Não é thread-safe: quem usa decide entre lock ou cópia (copy()) + publicação.
+ */
+public class IntObjectIndex<V> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] keys;
+    private Object[] values; // null indica slot livre
+    private int size;
+    private int mask;
+    private int resizeThreshold;
+
+    public IntObjectIndex() {
+        this(MIN_CAPACITY);
+    }
+
+    public IntObjectIndex(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    private IntObjectIndex(IntObjectIndex<V> other) {
+        this.keys = Arrays.copyOf(other.keys, other.keys.length);
+        this.values = Arrays.copyOf(other.values, other.values.length);
+        this.size = other.size;
+        this.mask = other.mask;
+        this.resizeThreshold = other.resizeThreshold;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int slot = slot(key);
+        Object value;
+        while ((value = values[slot]) != null) {
+            if (keys[slot] == key) {
+                return (V) value;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Associa o valor (não nulo) à chave e retorna o valor anterior, se houver.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("IntObjectIndex não aceita valores nulos");
+        }
+        int slot = slot(key);
+        Object current;
+        while ((current = values[slot]) != null) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return (V) current;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int slot = slot(key);
+        Object current;
+        while ((current = values[slot]) != null) {
+            if (keys[slot] == key) {
+                shiftBack(slot);
+                size--;
+                return (V) current;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<? super V> action) {
+        for (Object value : values) {
+            if (value != null) {
+                action.accept((V) value);
+            }
+        }
+    }
+
+    /**
+     * Cópia independente, usada por armazenamentos copy-on-write.
+     */
+    public IntObjectIndex<V> copy() {
+        return new IntObjectIndex<>(this);
+    }
+
+    /*
+     * Remoção sem lápide: puxa para trás os elementos seguintes do mesmo cluster
+     * que não estão na sua posição ideal.
+     */
+    private void shiftBack(int freed) {
+        int slot = freed;
+        while (true) {
+            slot = (slot + 1) & mask;
+            Object value = values[slot];
+            if (value == null) {
+                break;
+            }
+            int ideal = slot(keys[slot]);
+            // o elemento pode ocupar 'freed' se sua posição ideal não estiver entre (freed, slot]
+            if (((slot - ideal) & mask) >= ((slot - freed) & mask)) {
+                keys[freed] = keys[slot];
+                values[freed] = value;
+                freed = slot;
+            }
+        }
+        values[freed] = null;
+    }
+
+    private void rehash(int newCapacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(newCapacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            Object value = oldValues[i];
+            if (value != null) {
+                int slot = slot(oldKeys[i]);
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = value;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * 0.6f);
+    }
+
+    private int slot(int key) {
+        // Espalha ids sequenciais (fibonacci hashing) para evitar clusters longos
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int needed = (int) Math.ceil(Math.max(expectedSize, 1) / 0.6);
+        int capacity = MIN_CAPACITY;
+        while (capacity < needed) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
@@ -0,0 +1,406 @@
+package com.meli.repository;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.cfg.JsonNodeFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Log de escrita antecipada (write-ahead log) em formato JSON, uma linha por registro.
+ * Cada mutação vira um registro compacto anexado ao segmento ativo ("PUT" com a entidade
+ * completa ou "DEL" com apenas o id). Periodicamente um checkpoint compacta snapshot + log
+ * em um novo snapshot (o mesmo arquivo JSON em array usado antes) e inicia um segmento vazio.
+ * Na inicialização o snapshot é carregado e a cauda do log é reaplicada por cima.
+ * O log mantém em memória o JSON de cada entidade como está em snapshot + log (só registros
+ * anexados com sucesso), e o checkpoint grava esse estado: uma mutação cuja gravação falhou
+ * nunca chega ao snapshot, mesmo que o repositório já a tenha aplicado em memória.
+ */
+public class JsonWriteAheadLog {
+
+    private static final String OP_PUT = "PUT";
+    private static final String OP_DELETE = "DEL";
+    // Formato fixo das linhas (encodePut/encodeDelete), lido de volta em applyToState sem reparsear a entidade
+    private static final byte[] PUT_PREFIX = "{\"op\":\"PUT\",\"id\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DELETE_PREFIX = "{\"op\":\"DEL\",\"id\":".getBytes(StandardCharsets.UTF_8);
+
+    private final File snapshotFile;
+    private final File logFile;
+    private final ObjectMapper mapper;
+    private final int checkpointInterval;
+    // Protege o arquivo de log; I/O com o lock de um monitor prenderia a thread da plataforma (threads virtuais)
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private FileChannel channel;
+    private int recordsSinceCheckpoint;
+    // Estado coberto por snapshot + log: id -> JSON da entidade, na ordem de inserção
+    private final Map<Integer, byte[]> durableState = new LinkedHashMap<>();
+
+    /**
+     * @param snapshotFile Arquivo JSON (array) com o último checkpoint.
+     * @param logFile Segmento onde os registros são anexados.
+     * @param mapper ObjectMapper usado para ler/escrever as entidades.
+     * @param checkpointInterval Quantidade de registros no log que dispara um checkpoint.
+     */
+    public JsonWriteAheadLog(File snapshotFile, File logFile, ObjectMapper mapper, int checkpointInterval) {
+        this.snapshotFile = snapshotFile;
+        this.logFile = logFile;
+        // BigDecimal preserva a precisão dos timestamps (segundos.nanos) ao passar pela árvore JSON
+        this.mapper = mapper.copy()
+                .disable(SerializationFeature.INDENT_OUTPUT)
+                .enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+                .configure(JsonNodeFeature.STRIP_TRAILING_BIGDECIMAL_ZEROES, false);
+        this.checkpointInterval = Math.max(1, checkpointInterval);
+    }
+
+    /**
+     * Carrega o snapshot e reaplica o log, retornando o estado atual das entidades
+     * na ordem em que foram inseridas. Uma última linha incompleta (escrita interrompida)
+     * é ignorada e removida do arquivo, para que o próximo registro não seja anexado a ela.
+     */
+    public List<JsonNode> load() throws IOException {
+        lock.lock();
+        try {
+            truncateTornTail();
+            Map<Integer, JsonNode> state = readState();
+            recordsSinceCheckpoint = countLogRecords();
+            durableState.clear();
+            for (Map.Entry<Integer, JsonNode> entry : state.entrySet()) {
+                durableState.put(entry.getKey(), mapper.writeValueAsBytes(entry.getValue()));
+            }
+            return new ArrayList<>(state.values());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Codifica um registro de inclusão/atualização da entidade com o id informado.
+     */
+    public byte[] encodePut(int id, Object entity) {
+        byte[] data;
+        try {
+            data = mapper.writeValueAsBytes(entity);
+        } catch (IOException e) {
+            throw new IllegalStateException("Falha ao serializar registro do log: " + e.getMessage(), e);
+        }
+        byte[] header = (id + ",\"data\":").getBytes(StandardCharsets.UTF_8);
+        byte[] line = new byte[PUT_PREFIX.length + header.length + data.length + 2];
+        System.arraycopy(PUT_PREFIX, 0, line, 0, PUT_PREFIX.length);
+        System.arraycopy(header, 0, line, PUT_PREFIX.length, header.length);
+        System.arraycopy(data, 0, line, PUT_PREFIX.length + header.length, data.length);
+        line[line.length - 2] = '}';
+        line[line.length - 1] = '\n';
+        return line;
+    }
+
+    /**
+     * Codifica um registro de remoção da entidade com o id informado.
+     */
+    public byte[] encodeDelete(int id) {
+        ObjectNode record = mapper.createObjectNode();
+        record.put("op", OP_DELETE);
+        record.put("id", id);
+        return toLine(record);
+    }
+
+    /**
+     * Anexa os registros (de encodePut/encodeDelete) ao segmento ativo com uma única escrita.
+     * Se a escrita falhar no meio, o segmento volta ao tamanho anterior, para que uma nova tentativa
+     * não fique colada em uma linha parcial, e nenhum dos registros entra no estado do checkpoint.
+     */
+    public void append(List<byte[]> records) throws IOException {
+        lock.lock();
+        try {
+            if (records.isEmpty()) {
+                return;
+            }
+            int size = 0;
+            for (byte[] record : records) {
+                if (!startsWith(record, PUT_PREFIX) && !startsWith(record, DELETE_PREFIX)) {
+                    throw new IllegalArgumentException("Registro fora do formato do log: " + new String(record, StandardCharsets.UTF_8));
+                }
+                size += record.length;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            for (byte[] record : records) {
+                buffer.put(record);
+            }
+            buffer.flip();
+            FileChannel out = channel();
+            long start = out.size();
+            try {
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+            } catch (IOException e) {
+                try {
+                    out.truncate(start);
+                } catch (IOException truncateFailure) {
+                    e.addSuppressed(truncateFailure);
+                }
+                throw e;
+            }
+            recordsSinceCheckpoint += records.size();
+            for (byte[] record : records) {
+                applyToState(record);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Força os dados anexados até agora para o disco (fsync).
+     */
+    public void force() throws IOException {
+        lock.lock();
+        try {
+            if (channel != null) {
+                channel.force(false);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isCheckpointDue() {
+        lock.lock();
+        try {
+            return recordsSinceCheckpoint >= checkpointInterval;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Grava como novo snapshot o estado coberto por snapshot + log (mantido em memória pelo append,
+     * sem reler os arquivos) e trunca o log. Mutações que o repositório aplicou mas cuja gravação
+     * falhou ou ainda está na fila do writer ficam de fora.
+     * O snapshot é escrito em um arquivo temporário e movido atomicamente; se o processo cair
+     * antes do truncamento, reaplicar o log sobre o novo snapshot é idempotente.
+     */
+    public void checkpoint() throws IOException {
+        lock.lock();
+        try {
+            File parent = snapshotFile.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+            File tmp = new File(parent, snapshotFile.getName() + ".tmp");
+            try (FileChannel tmpChannel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 OutputStream os = Channels.newOutputStream(tmpChannel)) {
+                writeState(os);
+                tmpChannel.force(true);
+            }
+            Files.move(tmp.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            channel().truncate(0);
+            channel.force(true);
+            recordsSinceCheckpoint = 0;
+            System.out.println("BACKEND: JsonWriteAheadLog: Checkpoint written to " + snapshotFile.getName() + " with " + durableState.size() + " entries. Log segment reset.");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Aplica um registro já anexado ao estado do checkpoint: PUT guarda o JSON da entidade
+     * (o trecho da linha depois de "data":), DEL remove o id.
+     */
+    private void applyToState(byte[] record) {
+        boolean put = startsWith(record, PUT_PREFIX);
+        int i = PUT_PREFIX.length;
+        int id = 0;
+        while (record[i] >= '0' && record[i] <= '9') {
+            id = id * 10 + (record[i++] - '0');
+        }
+        if (!put) {
+            durableState.remove(id);
+            return;
+        }
+        int start = i + ",\"data\":".length();
+        // A linha termina em "}\n": o fecho do registro não faz parte da entidade
+        durableState.put(id, Arrays.copyOfRange(record, start, record.length - 2));
+    }
+
+    private static boolean startsWith(byte[] record, byte[] prefix) {
+        if (record.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (record[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Snapshot no formato de sempre (array JSON), com uma entidade por linha.
+     */
+    private void writeState(OutputStream os) throws IOException {
+        OutputStream out = new BufferedOutputStream(os, 64 * 1024);
+        out.write('[');
+        boolean first = true;
+        for (byte[] entity : durableState.values()) {
+            if (!first) {
+                out.write(',');
+            }
+            out.write('\n');
+            out.write(entity);
+            first = false;
+        }
+        if (!first) {
+            out.write('\n');
+        }
+        out.write(']');
+        out.flush();
+    }
+
+    private Map<Integer, JsonNode> readState() throws IOException {
+        Map<Integer, JsonNode> state = new LinkedHashMap<>();
+        if (snapshotFile.exists() && snapshotFile.length() > 0) {
+            JsonNode snapshot = mapper.readTree(snapshotFile);
+            if (snapshot != null && snapshot.isArray()) {
+                for (JsonNode entity : snapshot) {
+                    // Em ids duplicados vale a primeira ocorrência, como nas buscas por id
+                    if (state.putIfAbsent(entity.path("id").asInt(), entity) != null) {
+                        System.err.println("BACKEND: JsonWriteAheadLog: Ignoring duplicated id " + entity.path("id").asInt() + " in " + snapshotFile.getName());
+                    }
+                }
+            }
+        }
+        if (logFile.exists()) {
+            try (BufferedReader reader = Files.newBufferedReader(logFile.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    JsonNode record;
+                    try {
+                        record = mapper.readTree(line);
+                    } catch (IOException e) {
+                        System.err.println("BACKEND: JsonWriteAheadLog: Ignoring corrupted record in " + logFile.getName() + ": " + e.getMessage());
+                        continue;
+                    }
+                    int id = record.path("id").asInt();
+                    if (OP_DELETE.equals(record.path("op").asText())) {
+                        state.remove(id);
+                    } else {
+                        state.put(id, record.get("data"));
+                    }
+                }
+            }
+        }
+        return state;
+    }
+
+    /*
+     * Corta o segmento no último '\n': bytes depois dele são de uma escrita que não terminou.
+     */
+    private void truncateTornTail() throws IOException {
+        if (!logFile.exists()) {
+            return;
+        }
+        // Canal próprio (leitura + escrita): o canal de anexação é aberto em APPEND, que não permite leitura
+        try (FileChannel out = FileChannel.open(logFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = out.size();
+            long end = size;
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            while (end > 0) {
+                int length = (int) Math.min(buffer.capacity(), end);
+                buffer.clear().limit(length);
+                long position = end - length;
+                while (buffer.hasRemaining()) {
+                    if (out.read(buffer, position + buffer.position()) < 0) {
+                        break;
+                    }
+                }
+                int newline = -1;
+                for (int i = buffer.position() - 1; i >= 0; i--) {
+                    if (buffer.get(i) == '\n') {
+                        newline = i;
+                        break;
+                    }
+                }
+                if (newline >= 0) {
+                    end = position + newline + 1;
+                    break;
+                }
+                end = position;
+            }
+            if (end < size) {
+                out.truncate(end);
+                out.force(false);
+                System.err.println("BACKEND: JsonWriteAheadLog: Discarded " + (size - end) + " bytes of an incomplete record at the end of " + logFile.getName());
+            }
+        }
+    }
+
+    private int countLogRecords() throws IOException {
+        if (!logFile.exists()) {
+            return 0;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(logFile.toPath(), StandardCharsets.UTF_8)) {
+            return (int) reader.lines().filter(line -> !line.isBlank()).count();
+        }
+    }
+
+    private FileChannel channel() throws IOException {
+        if (channel == null) {
+            File parent = logFile.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+            channel = FileChannel.open(logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+
+    private byte[] toLine(JsonNode record) {
+        try {
+            byte[] json = mapper.writeValueAsBytes(record);
+            byte[] line = new byte[json.length + 1];
+            System.arraycopy(json, 0, line, 0, json.length);
+            line[json.length] = '\n';
+            return line;
+        } catch (IOException e) {
+            throw new IllegalStateException("Falha ao serializar registro do log: " + e.getMessage(), e);
+        }
+    }
+}
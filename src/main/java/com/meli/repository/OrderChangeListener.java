@@ -0,0 +1,20 @@
+package com.meli.repository;
+
+import com.meli.model.Order;
+
+/*
+ * Observador das gravações do OrderRepository (visões materializadas derivadas dos pedidos).
+ * Os métodos são chamados com o lock do repositório, logo depois da mudança em memória, na mesma
+ * ordem das gravações; devem ser rápidos e não chamar escritas do repositório.
+ * Um pedido alterado chega como um novo objeto (a versão anterior não é tocada), mas o observador
+ * só recebe a nova versão: quem precisar do estado anterior (consumidor, status, valores) deve guardá-lo por id.
+ */
+public interface OrderChangeListener {
+
+    /**
+     * Pedido criado ou alterado (status, itens, consumidor...).
+     */
+    void onOrderSaved(Order order);
+
+    void onOrderDeleted(Order order);
+}
@@ -1,131 +1,422 @@
 package com.meli.repository;
 
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule; // IMPORTANTE: Adicionar esta importação
 import com.meli.model.Order;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 @Repository
 public class OrderRepository {
 
-    private final File ORDER_FILE = new File("data/orders.json");
+    private final File ORDER_FILE;
+    // Segmento do log de escrita antecipada: cada save/delete anexa um registro compacto aqui
+    private final File ORDER_LOG_FILE;
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private List<Order> orders;
-    private final AtomicInteger idCounter;
+    private final JsonWriteAheadLog orderLog;
+    private final PersistenceWriter persistenceWriter;
+    // Destino no writer em segundo plano: anexa os registros pendentes ao log com uma única escrita
+    private final PersistenceTarget orderLogTarget = this::writeLogBatch;
+    // Registro pendente por pedido (como em UserRepository): o writer grava o último registro de cada
+    // pedido, então o pedido de flush pode ser enfileirado depois de soltar o lock do repositório
+    private final Map<Integer, byte[]> dirtyRecords = new LinkedHashMap<>();
+    private final ReentrantLock dirtyLock = new ReentrantLock();
+    // Versões imutáveis (MVCC): leituras sem lock e sem cópia; escritas com o lock publicam nova versão
+    private final VersionedList<Order> orders = new VersionedList<>();
+    // Índice por id mantido junto com a lista (mesmo lock das escritas)
+    private final IntObjectIndex<Order> ordersById = new IntObjectIndex<>();
+    // Listas de postagem por consumidor e por vendedor, em ordem de criação. Os índices são
+    // copy-on-write (só mudam quando aparece ou some um consumidor/vendedor), então a leitura não usa lock
+    private volatile IntObjectIndex<VersionedList<Order>> ordersByConsumer = new IntObjectIndex<>();
+    private volatile IntObjectIndex<VersionedList<Order>> ordersBySeller = new IntObjectIndex<>();
+    private final IdSequence ids;
+    private final List<OrderChangeListener> listeners = new CopyOnWriteArrayList<>();
+    // Lock do repositório (ver ProductRepository: sem synchronized por causa das threads virtuais).
+    // getById usa o lock de leitura; o de escrita só cobre a alteração em memória, nunca a fila do writer
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 
-    public OrderRepository() {
+    public OrderRepository(PersistenceWriter persistenceWriter, IdSequences idSequences,
+                           @Value("${meli.orders.checkpoint-interval:500}") int checkpointInterval,
+                           @Value("${meli.data.dir:data}") String dataDir) {
+        this.ORDER_FILE = new File(dataDir, "orders.json");
+        this.ORDER_LOG_FILE = new File(dataDir, "orders.log");
+        this.persistenceWriter = persistenceWriter;
         objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
         // ADIÇÃO CRÍTICA: Registra o módulo para lidar com tipos de data/hora do Java 8+
         objectMapper.registerModule(new JavaTimeModule()); 
         // Se você já usa objectMapper.findAndRegisterModules() em algum lugar,
         // esta linha pode ser redundante, mas é a forma explícita de garantir.
 
-        idCounter = new AtomicInteger(0);
+        ids = idSequences.forEntity("orders");
+        orderLog = new JsonWriteAheadLog(ORDER_FILE, ORDER_LOG_FILE, objectMapper, checkpointInterval);
 
         System.out.println("BACKEND: OrderRepository: --- Initializing Repository ---");
         if (!ORDER_FILE.getParentFile().exists()) {
             ORDER_FILE.getParentFile().mkdirs();
             System.out.println("BACKEND: OrderRepository: Created data directory: " + ORDER_FILE.getParentFile().getAbsolutePath());
         }
-        orders = loadOrders();
-        if (orders.isEmpty() && !ORDER_FILE.exists()) {
-            System.out.println("BACKEND: OrderRepository: orders list is empty and file does not exist. Saving empty list to create file.");
-            saveOrders();
+        List<Order> loadedOrders = loadOrders();
+        for (Order order : loadedOrders) {
+            orders.add(order);
+            if (!ordersById.containsKey(order.getId())) {
+                ordersById.put(order.getId(), order);
+            }
+            addToPostings(order);
+        }
+        if (loadedOrders.isEmpty() && !ORDER_FILE.exists()) {
+            System.out.println("BACKEND: OrderRepository: orders list is empty and file does not exist. Writing checkpoint to create file.");
+            checkpoint();
             System.out.println("BACKEND: OrderRepository: Initialized empty orders.json file.");
-        } else if (!orders.isEmpty()) {
-            orders.stream().mapToInt(Order::getId).max().ifPresent(idCounter::set);
-            idCounter.incrementAndGet(); 
-            System.out.println("BACKEND: OrderRepository: Loaded " + orders.size() + " orders. Next ID will be: " + idCounter.get());
+        } else if (!loadedOrders.isEmpty()) {
+            loadedOrders.forEach(order -> ids.observe(order.getId()));
+            System.out.println("BACKEND: OrderRepository: Loaded " + loadedOrders.size() + " orders. Next ID will be: " + ids.peek());
         }
         System.out.println("BACKEND: OrderRepository: --- Initialization complete. In-memory orders count: " + orders.size() + " ---");
     }
 
+    /**
+     * Carrega o último snapshot (orders.json) e reaplica a cauda do log (orders.log).
+     */
     private List<Order> loadOrders() {
-        System.out.println("BACKEND: OrderRepository: Attempting to load orders from: " + ORDER_FILE.getAbsolutePath());
+        System.out.println("BACKEND: OrderRepository: Attempting to load orders from: " + ORDER_FILE.getAbsolutePath() + " + " + ORDER_LOG_FILE.getName());
         try {
-            if (ORDER_FILE.exists()) {
-                String fileContent = new String(Files.readAllBytes(Paths.get(ORDER_FILE.getAbsolutePath())));
-                if (fileContent.trim().isEmpty() || fileContent.trim().equals("[]")) {
-                    System.out.println("BACKEND: OrderRepository: orders.json is empty or contains only an empty array. Returning empty list.");
-                    return new ArrayList<>();
-                }
-                List<Order> loadedOrders = objectMapper.readValue(fileContent, new TypeReference<List<Order>>() {});
-                System.out.println("BACKEND: OrderRepository: Successfully deserialized " + loadedOrders.size() + " orders from file.");
-                return loadedOrders;
-            } else {
-                System.out.println("BACKEND: OrderRepository: orders.json does not exist. Returning an empty list.");
+            List<Order> loadedOrders = new ArrayList<>();
+            for (JsonNode node : orderLog.load()) {
+                loadedOrders.add(objectMapper.treeToValue(node, Order.class));
             }
+            System.out.println("BACKEND: OrderRepository: Successfully restored " + loadedOrders.size() + " orders from snapshot and log.");
+            return loadedOrders;
         } catch (IOException e) {
-            System.err.println("BACKEND: OrderRepository: ERROR loading orders from JSON file: " + e.getMessage());
+            System.err.println("BACKEND: OrderRepository: ERROR loading orders from snapshot/log: " + e.getMessage());
             e.printStackTrace();
         }
         return new ArrayList<>();
     }
 
-    private synchronized void saveOrders() {
-        System.out.println("BACKEND: OrderRepository: Attempting to save " + orders.size() + " orders to: " + ORDER_FILE.getAbsolutePath());
+    /**
+     * Executado pela thread do PersistenceWriter: anexa ao log os registros de todos os pedidos
+     * pendentes até o momento e, quando o intervalo configurado é atingido, escreve um novo
+     * snapshot e reinicia o segmento. Flushes enfileirados depois deste encontram o conjunto vazio.
+     */
+    private void writeLogBatch(List<Object> flushRequests, boolean fsync) throws IOException {
+        Map<Integer, byte[]> drained;
+        dirtyLock.lock();
         try {
-            objectMapper.writeValue(ORDER_FILE, orders);
-            System.out.println("BACKEND: OrderRepository: Order saved successfully. Total orders: " + orders.size());
-        } catch (IOException e) {
-            System.err.println("BACKEND: OrderRepository: ERROR saving orders to JSON file: " + e.getMessage());
+            drained = new LinkedHashMap<>(dirtyRecords);
+            dirtyRecords.clear();
+        } finally {
+            dirtyLock.unlock();
+        }
+        try {
+            orderLog.append(new ArrayList<>(drained.values()));
+            if (fsync) {
+                orderLog.force();
+            }
+        } catch (IOException | RuntimeException e) {
+            restoreDirty(drained);
+            throw e;
+        }
+        // Os registros já estão no log: se o checkpoint falhar, o lote continua gravado
+        // e o próximo lote tenta o checkpoint de novo
+        if (orderLog.isCheckpointDue()) {
+            checkpoint();
+        }
+    }
+
+    /*
+     * Devolve ao conjunto pendente os registros de um flush que falhou (ver UserRepository.restoreDirty).
+     */
+    private void restoreDirty(Map<Integer, byte[]> drained) {
+        dirtyLock.lock();
+        try {
+            Map<Integer, byte[]> merged = new LinkedHashMap<>(drained);
+            for (Map.Entry<Integer, byte[]> newer : dirtyRecords.entrySet()) {
+                merged.remove(newer.getKey());
+                merged.put(newer.getKey(), newer.getValue());
+            }
+            dirtyRecords.clear();
+            dirtyRecords.putAll(merged);
+        } finally {
+            dirtyLock.unlock();
+        }
+    }
+
+    /**
+     * Substitui o registro pendente do pedido. Chamado com o lock, na mesma ordem das alterações em memória.
+     */
+    private void markDirty(int id, byte[] record) {
+        dirtyLock.lock();
+        try {
+            dirtyRecords.remove(id);
+            dirtyRecords.put(id, record);
+        } finally {
+            dirtyLock.unlock();
+        }
+    }
+
+    /**
+     * Pede ao writer um flush dos pedidos pendentes. Chamado depois de soltar o lock: o registro já
+     * está no conjunto pendente, então este flush (ou um anterior que o tenha drenado) o grava.
+     */
+    private PersistenceWriter.PendingWrite requestFlush(Durability durability) {
+        return persistenceWriter.enqueue(orderLogTarget, null, durability);
+    }
+
+    private void checkpoint() {
+        try {
+            orderLog.checkpoint();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("BACKEND: OrderRepository: ERROR writing orders checkpoint: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
+    /**
+     * Fecha o log ao encerrar a aplicação, depois de um último flush dos pedidos pendentes.
+     * O writer não é encerrado aqui: ele é compartilhado e cuida do próprio ciclo de vida
+     * (o Spring destrói os repositórios antes do writer, do qual dependem).
+     */
+    @PreDestroy
+    public void close() {
+        if (!requestFlush(Durability.FSYNC).await()) {
+            System.err.println("BACKEND: OrderRepository: ERROR writing pending orders before closing " + ORDER_LOG_FILE.getName());
+        }
+        try {
+            orderLog.close();
+        } catch (IOException e) {
+            System.err.println("BACKEND: OrderRepository: ERROR closing " + ORDER_LOG_FILE.getName() + ": " + e.getMessage());
+        }
+    }
+
     public Order save(Order order) {
+        return save(order, persistenceWriter.getDefaultDurability());
+    }
+
+    /**
+     * Salva o pedido e enfileira o registro no log com a durabilidade escolhida pelo chamador.
+     */
+    public Order save(Order order, Durability durability) {
+        lock.writeLock().lock();
+        try {
+            if (!applySave(order)) {
+                return null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (!requestFlush(durability).await()) {
+            System.err.println("BACKEND: OrderRepository.save(): ERROR persisting order ID " + order.getId() + " with durability " + durability);
+            throw new PersistenceFailureException("Falha ao gravar o pedido ID " + order.getId() + ".");
+        }
+        return order;
+    }
+
+    public PersistenceWriter.PendingWrite enqueueNewOrders(List<Order> newOrders) {
+        return enqueueNewOrders(newOrders, persistenceWriter.getDefaultDurability());
+    }
+
+    /**
+     * Cria vários pedidos novos com um único lock e um único pedido de flush: todos os registros
+     * vão para o log na mesma escrita. Não espera a gravação; o chamador decide quando esperar.
+     */
+    public PersistenceWriter.PendingWrite enqueueNewOrders(List<Order> newOrders, Durability durability) {
+        lock.writeLock().lock();
+        try {
+            for (Order order : newOrders) {
+                order.setId(ids.next());
+                publishNew(order.copy());
+            }
+            System.out.println("BACKEND: OrderRepository.enqueueNewOrders(): Assigned IDs to " + newOrders.size() + " new orders.");
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return requestFlush(durability);
+    }
+
+    /*
+     * Aplica o pedido em memória e marca seu registro como pendente. Chamado com o lock.
+     * @return false se o pedido a atualizar não existe.
+     */
+    private boolean applySave(Order order) {
         if (order.getId() == 0) { 
-            order.setId(idCounter.getAndIncrement());
-            orders.add(order);
+            order.setId(ids.next());
+            publishNew(order.copy());
             System.out.println("BACKEND: OrderRepository.save(): Assigned new ID " + order.getId() + " to new order.");
+            return true;
         } else { 
-            Optional<Order> existingOrderOpt = getById(order.getId());
-            if (existingOrderOpt.isPresent()) {
-                Order existingOrder = existingOrderOpt.get();
-                existingOrder.setConsumerId(order.getConsumerId());
-                existingOrder.setSellerId(order.getSellerId());
-                existingOrder.setProducts(order.getProducts());
-                existingOrder.setShippingAddress(order.getShippingAddress());
-                existingOrder.setSendersAddress(order.getSendersAddress());
-                existingOrder.setTotal(order.getTotal());
-                existingOrder.setShippingCost(order.getShippingCost());
-                existingOrder.setPaymentMethod(order.getPaymentMethod());
-                existingOrder.setStatus(order.getStatus());
-                existingOrder.setTimestamp(order.getTimestamp());
-                System.out.println("BACKEND: OrderRepository.save(): Updated order ID " + order.getId() + ".");
-            } else {
+            Order existingOrder = ordersById.get(order.getId());
+            if (existingOrder == null) {
                 System.err.println("BACKEND: OrderRepository.save(): Attempted to update non-existent order with ID: " + order.getId());
-                return null;
+                return false;
             }
+            // Nova versão do pedido: a publicada continua intacta para quem já a leu (listas,
+            // postagens e serialização), que nunca a veem pela metade
+            Order updated = order.copy();
+            orders.replace(existingOrder, updated);
+            ordersById.put(updated.getId(), updated);
+            if (existingOrder.getConsumerId() == updated.getConsumerId()
+                    && existingOrder.getSellerId() == updated.getSellerId()) {
+                replaceInPostings(existingOrder, updated);
+            } else {
+                removeFromPostings(existingOrder);
+                addToPostings(updated);
+            }
+            notifySaved(updated);
+            System.out.println("BACKEND: OrderRepository.save(): Updated order ID " + order.getId() + ".");
+            markDirty(updated.getId(), orderLog.encodePut(updated.getId(), updated));
+            return true;
+        }
+    }
+
+    /*
+     * Publica um pedido novo. Chamado com o lock, sempre com uma cópia: o objeto do chamador recebe
+     * o id, mas alterações que ele fizer depois não aparecem para quem já leu o pedido publicado.
+     */
+    private void publishNew(Order created) {
+        orders.add(created);
+        ordersById.put(created.getId(), created);
+        addToPostings(created);
+        markDirty(created.getId(), orderLog.encodePut(created.getId(), created));
+        notifySaved(created);
+    }
+
+    /**
+     * Registra um observador das gravações. Retorna os pedidos atuais, obtidos sob o mesmo lock,
+     * para que o observador possa se inicializar sem perder nenhuma gravação.
+     */
+    public List<Order> addListener(OrderChangeListener listener) {
+        lock.writeLock().lock();
+        try {
+            listeners.add(listener);
+            return orders.snapshot();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void notifySaved(Order order) {
+        for (OrderChangeListener listener : listeners) {
+            listener.onOrderSaved(order);
         }
-        saveOrders();
-        return order;
     }
 
     public Optional<Order> getById(int id) {
-        return orders.stream().filter(o -> o.getId() == id).findFirst();
+        lock.readLock().lock();
+        try {
+            return Optional.ofNullable(ordersById.get(id));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Pedidos feitos pelo consumidor; custo proporcional aos pedidos dele, não ao histórico total.
+     * Retorna a versão atual (imutável), sem lock e sem cópia.
+     */
+    public List<Order> getByConsumerId(int consumerId) {
+        VersionedList<Order> postings = ordersByConsumer.get(consumerId);
+        return postings == null ? Collections.emptyList() : postings.snapshot();
     }
 
+    /**
+     * Pedidos recebidos pelo vendedor; custo proporcional aos pedidos dele, não ao histórico total.
+     * Retorna a versão atual (imutável), sem lock e sem cópia.
+     */
+    public List<Order> getBySellerId(int sellerId) {
+        VersionedList<Order> postings = ordersBySeller.get(sellerId);
+        return postings == null ? Collections.emptyList() : postings.snapshot();
+    }
+
+    private void addToPostings(Order order) {
+        ordersByConsumer = addPosting(ordersByConsumer, order.getConsumerId(), order);
+        ordersBySeller = addPosting(ordersBySeller, order.getSellerId(), order);
+    }
+
+    private void removeFromPostings(Order order) {
+        ordersByConsumer = removePosting(ordersByConsumer, order.getConsumerId(), order);
+        ordersBySeller = removePosting(ordersBySeller, order.getSellerId(), order);
+    }
+
+    /*
+     * Mesmos consumidor e vendedor: a nova versão fica na mesma posição das listas de postagem.
+     */
+    private void replaceInPostings(Order previous, Order replacement) {
+        ordersByConsumer.get(previous.getConsumerId()).replace(previous, replacement);
+        ordersBySeller.get(previous.getSellerId()).replace(previous, replacement);
+    }
+
+    /*
+     * Chamados com o lock. Retornam o índice a publicar: o mesmo, ou uma cópia se uma chave entrou ou saiu.
+     */
+    private static IntObjectIndex<VersionedList<Order>> addPosting(IntObjectIndex<VersionedList<Order>> postings, int key, Order order) {
+        VersionedList<Order> list = postings.get(key);
+        if (list != null) {
+            list.add(order);
+            return postings;
+        }
+        list = new VersionedList<>();
+        list.add(order);
+        IntObjectIndex<VersionedList<Order>> next = postings.copy();
+        next.put(key, list);
+        return next;
+    }
+
+    private static IntObjectIndex<VersionedList<Order>> removePosting(IntObjectIndex<VersionedList<Order>> postings, int key, Order order) {
+        VersionedList<Order> list = postings.get(key);
+        if (list == null || !list.remove(order) || list.size() > 0) {
+            return postings;
+        }
+        IntObjectIndex<VersionedList<Order>> next = postings.copy();
+        next.remove(key);
+        return next;
+    }
+
+    /**
+     * Todos os pedidos, na ordem de criação: a versão atual (imutável), sem lock e sem cópia.
+     */
     public List<Order> getAll() {
-        return new ArrayList<>(orders);
+        return orders.snapshot();
     }
-    // Adicione o método deleteById se ele existia antes e foi removido
+
     public boolean deleteById(int id) {
-        boolean removed = orders.removeIf(o -> o.getId() == id);
-        if (removed) {
-            saveOrders();
+        return deleteById(id, persistenceWriter.getDefaultDurability());
+    }
+
+    public boolean deleteById(int id, Durability durability) {
+        lock.writeLock().lock();
+        try {
+            Order removed = ordersById.remove(id);
+            if (removed == null) {
+                return false;
+            }
+            orders.remove(removed);
+            removeFromPostings(removed);
+            for (OrderChangeListener listener : listeners) {
+                listener.onOrderDeleted(removed);
+            }
+            markDirty(id, orderLog.encodeDelete(id));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (!requestFlush(durability).await()) {
+            System.err.println("BACKEND: OrderRepository.deleteById(): ERROR persisting deletion of order ID " + id);
+            throw new PersistenceFailureException("Falha ao gravar a remoção do pedido ID " + id + ".");
         }
-        return removed;
+        return true;
     }
 }
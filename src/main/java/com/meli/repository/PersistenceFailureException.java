@@ -0,0 +1,15 @@
+package com.meli.repository;
+
+/*
+ * Lançada quando a gravação de uma mutação não atingiu a durabilidade pedida (FLUSH/FSYNC).
+ * A mutação já está em memória, mas não há garantia de que sobreviva a um reinício;
+ * os controllers respondem 500 para que o cliente não trate a operação como confirmada.
+ */
+public class PersistenceFailureException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public PersistenceFailureException(String message) {
+        super(message);
+    }
+}
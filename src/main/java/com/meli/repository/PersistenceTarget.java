@@ -0,0 +1,17 @@
+package com.meli.repository;
+
+import java.io.IOException;
+import java.util.List;
+
+/*
+ * Destino de persistência atendido pelo PersistenceWriter (um arquivo por repositório).
+ */
+public interface PersistenceTarget {
+
+    /**
+     * Grava, em uma única operação, o efeito de todas as mutações enfileiradas no lote.
+     * @param payloads Payloads das mutações, na ordem em que foram enfileiradas.
+     * @param fsync true se alguma mutação do lote pediu Durability.FSYNC.
+     */
+    void write(List<Object> payloads, boolean fsync) throws IOException;
+}
@@ -0,0 +1,262 @@
+package com.meli.repository;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Writer de persistência em segundo plano com group commit.
+ * As threads de requisição apenas enfileiram mutações; uma única thread drena a fila,
+ * agrupa as mutações por destino e grava cada destino uma vez por lote (um único fsync
+ * por lote quando pedido). A fila é limitada: quando cheia, quem enfileira fica bloqueado
+ * até o writer abrir espaço (backpressure).
+ * Depois do shutdown, mutações novas (ou que sobraram na fila) falham na hora em vez de
+ * esperar por uma thread que já terminou.
+ */
+@Component
+public class PersistenceWriter {
+
+    private final BlockingQueue<PendingWrite> queue;
+    private final int maxBatchSize;
+    private final Durability defaultDurability;
+    private final long awaitTimeoutMillis;
+    private final Thread writerThread;
+    private volatile boolean running = true;
+    // A thread do writer saiu do laço: o que ainda estiver na fila não será gravado
+    private volatile boolean stopped;
+
+    private final LongAdder backpressureWaits = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+
+    public PersistenceWriter(@Value("${meli.persistence.queue-capacity:10000}") int queueCapacity,
+                             @Value("${meli.persistence.max-batch-size:512}") int maxBatchSize,
+                             @Value("${meli.persistence.durability:FLUSH}") Durability defaultDurability,
+                             @Value("${meli.persistence.await-timeout-ms:30000}") long awaitTimeoutMillis) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.defaultDurability = defaultDurability;
+        this.awaitTimeoutMillis = Math.max(1, awaitTimeoutMillis);
+        this.writerThread = new Thread(this::runLoop, "persistence-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+        System.out.println("BACKEND: PersistenceWriter: Started (queue capacity " + queueCapacity + ", max batch " + maxBatchSize + ", default durability " + defaultDurability + ").");
+    }
+
+    public Durability getDefaultDurability() {
+        return defaultDurability;
+    }
+
+    /**
+     * Enfileira uma mutação para o destino informado. Bloqueia apenas se a fila estiver cheia.
+     * Se o payload é o próprio registro, deve ser chamado dentro da seção crítica do repositório
+     * para que a ordem da fila seja a mesma ordem das mutações em memória. Destinos que guardam
+     * o último registro de cada entidade (ver UserRepository e OrderRepository) enfileiram só um pedido de flush,
+     * depois de soltar o lock. A espera pela durabilidade (PendingWrite.await()) é sempre fora dele.
+     */
+    public PendingWrite enqueue(PersistenceTarget target, Object payload, Durability durability) {
+        PendingWrite write = new PendingWrite(target, payload, durability == null ? defaultDurability : durability, awaitTimeoutMillis);
+        if (!running) {
+            write.done.completeExceptionally(new IllegalStateException("PersistenceWriter encerrado: mutação não gravada."));
+            return write;
+        }
+        if (!queue.offer(write)) {
+            // Sem log aqui: com a fila cheia (sobrecarga) seria uma linha por mutação
+            backpressureWaits.increment();
+            try {
+                // Espera em fatias: se o writer parar, a fila cheia nunca mais abriria espaço
+                while (!queue.offer(write, 200, TimeUnit.MILLISECONDS)) {
+                    if (stopped) {
+                        write.done.completeExceptionally(new IllegalStateException("PersistenceWriter encerrado: mutação não gravada."));
+                        return write;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                write.done.completeExceptionally(e);
+                return write;
+            }
+        }
+        if (stopped) {
+            // O writer terminou entre a verificação e a inserção: ninguém mais drenaria a fila
+            failRemaining();
+        }
+        return write;
+    }
+
+    private void runLoop() {
+        List<PendingWrite> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } finally {
+                batch.clear();
+            }
+        }
+        stopped = true;
+        failRemaining();
+    }
+
+    /*
+     * Conclui com erro as mutações que ficaram na fila depois que a thread do writer terminou.
+     */
+    private void failRemaining() {
+        List<PendingWrite> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (PendingWrite write : remaining) {
+            write.done.completeExceptionally(new IllegalStateException("PersistenceWriter encerrado: mutação não gravada."));
+        }
+        if (!remaining.isEmpty()) {
+            System.err.println("BACKEND: PersistenceWriter: ERROR " + remaining.size() + " mutations enqueued after shutdown were not written.");
+        }
+    }
+
+    private void writeBatch(List<PendingWrite> batch) {
+        Map<PersistenceTarget, List<PendingWrite>> byTarget = new LinkedHashMap<>();
+        for (PendingWrite write : batch) {
+            byTarget.computeIfAbsent(write.target, t -> new ArrayList<>()).add(write);
+        }
+        for (Map.Entry<PersistenceTarget, List<PendingWrite>> entry : byTarget.entrySet()) {
+            List<PendingWrite> writes = entry.getValue();
+            List<Object> payloads = new ArrayList<>(writes.size());
+            boolean fsync = false;
+            for (PendingWrite write : writes) {
+                payloads.add(write.payload);
+                fsync |= write.durability == Durability.FSYNC;
+            }
+            try {
+                entry.getKey().write(payloads, fsync);
+                writes.forEach(w -> w.done.complete(null));
+            } catch (Exception e) {
+                System.err.println("BACKEND: PersistenceWriter: ERROR writing batch of " + writes.size() + " mutations: " + e.getMessage());
+                e.printStackTrace();
+                failedBatches.increment();
+                writes.forEach(w -> w.done.completeExceptionally(e));
+            }
+        }
+    }
+
+    /**
+     * Tamanho da fila, quantas vezes quem enfileirava esperou por espaço e lotes com falha de gravação.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queued", queue.size());
+        stats.put("remainingCapacity", queue.remainingCapacity());
+        stats.put("backpressureWaits", backpressureWaits.sum());
+        stats.put("failedBatches", failedBatches.sum());
+        return stats;
+    }
+
+    /**
+     * Sinaliza o fim do writer e espera as mutações pendentes serem gravadas.
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("BACKEND: PersistenceWriter: Stopped. Pending mutations: " + queue.size());
+    }
+
+    /**
+     * Escreve um valor como arquivo JSON completo sem nunca truncar o arquivo atual: o conteúdo vai
+     * para um arquivo temporário, que recebe fsync e substitui o original com um move atômico.
+     * Uma queda no meio da escrita deixa o arquivo anterior intacto. Com fsync, o diretório também
+     * recebe fsync, para que a troca de arquivos sobreviva a uma queda do sistema.
+     */
+    public static void writeJsonFile(ObjectWriter writer, File file, Object value, boolean fsync) throws IOException {
+        File parentDir = file.getAbsoluteFile().getParentFile();
+        if (parentDir != null && !parentDir.exists()) {
+            parentDir.mkdirs();
+        }
+        File tmp = new File(parentDir, file.getName() + ".tmp");
+        ByteBuffer json = ByteBuffer.wrap(writer.writeValueAsBytes(value));
+        try (FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (json.hasRemaining()) {
+                out.write(json);
+            }
+            out.force(true);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (fsync && parentDir != null) {
+            try (FileChannel dir = FileChannel.open(parentDir.toPath(), StandardOpenOption.READ)) {
+                dir.force(true);
+            }
+        }
+    }
+
+    /*
+     * Mutação enfileirada; await() espera até o nível de durabilidade pedido ser atingido.
+     */
+    public static class PendingWrite {
+        private final PersistenceTarget target;
+        private final Object payload;
+        private final Durability durability;
+        private final long timeoutMillis;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private PendingWrite(PersistenceTarget target, Object payload, Durability durability, long timeoutMillis) {
+            this.target = target;
+            this.payload = payload;
+            this.durability = durability;
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        /**
+         * @return true se a mutação atingiu a durabilidade pedida (ou foi apenas enfileirada,
+         * no caso de FIRE_AND_FORGET); false se a gravação falhou ou não terminou dentro do
+         * tempo limite (meli.persistence.await-timeout-ms). Mutações enfileiradas depois desta
+         * (inclusive as que desfazem a operação) são gravadas depois dela.
+         */
+        public boolean await() {
+            if (durability == Durability.FIRE_AND_FORGET) {
+                return !done.isCompletedExceptionally();
+            }
+            try {
+                done.get(timeoutMillis, TimeUnit.MILLISECONDS);
+                return true;
+            } catch (TimeoutException e) {
+                System.err.println("BACKEND: PersistenceWriter: ERROR write not confirmed after " + timeoutMillis + " ms.");
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.meli.repository;
+
+import com.meli.model.Product;
+
+/*
+ * Observador das mutações do ProductRepository (índices e caches derivados do catálogo).
+ * Os métodos são chamados com o lock de escrita do repositório, logo depois da publicação
+ * da nova versão, na mesma ordem das mutações; devem ser rápidos e não chamar escritas
+ * do repositório.
+ */
+public interface ProductChangeListener {
+
+    /**
+     * @param previous Versão anterior do produto, ou null se ele acabou de ser criado.
+     * @param current Versão publicada.
+     */
+    void onProductSaved(Product previous, Product current);
+
+    void onProductDeleted(Product previous);
+}
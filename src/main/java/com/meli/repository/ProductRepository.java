@@ -5,39 +5,68 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.meli.model.Product;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.Set;
-import java.util.stream.Collectors; // Added for more detailed list logging
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.IntFunction;
 
+/*
+ * Armazenamento único e autoritativo dos produtos em memória, compartilhado por ProductService.
+ * Leituras usam o snapshot imutável publicado mais recentemente (copy-on-write), sem lock;
+ * escritas são serializadas no lock do repositório, publicam uma nova lista e enfileiram
+ * exatamente esse snapshot no PersistenceWriter (único caminho de gravação de products.json).
+ */
 @Repository
 public class ProductRepository {
 
-    private final File PRODUCT_PATH = new File("data/products.json");
+    private final File PRODUCT_PATH;
     private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules().enable(SerializationFeature.INDENT_OUTPUT);
-    private List<Product> products;
+    // Snapshot imutável (lista + índices por id e por posição); substituído por inteiro a cada mutação
+    private volatile ProductSnapshot current;
+    private final PersistenceWriter persistenceWriter;
+    // Destino no writer em segundo plano: várias mutações no mesmo lote viram uma única reescrita do arquivo
+    private final PersistenceTarget productFileTarget = this::writeSnapshotBatch;
+    private final List<ProductChangeListener> listeners = new CopyOnWriteArrayList<>();
+    // ReentrantLock em vez de synchronized: a seção crítica pode bloquear (backpressure do writer),
+    // e com threads virtuais um monitor preso prenderia também a thread da plataforma
+    private final ReentrantLock lock = new ReentrantLock();
+    private final IdSequence ids;
+    private final long epoch = System.currentTimeMillis();
 
-    public ProductRepository() {
+    public ProductRepository(PersistenceWriter persistenceWriter, IdSequences idSequences,
+                             @Value("${meli.data.dir:data}") String dataDir) {
+        this.PRODUCT_PATH = new File(dataDir, "products.json");
+        this.persistenceWriter = persistenceWriter;
+        this.ids = idSequences.forEntity("products");
         System.out.println("BACKEND: ProductRepository: --- Initializing Repository ---");
         if (!PRODUCT_PATH.getParentFile().exists()) {
             PRODUCT_PATH.getParentFile().mkdirs();
             System.out.println("BACKEND: ProductRepository: Created data directory: " + PRODUCT_PATH.getParentFile().getAbsolutePath());
         }
-        products = loadProducts();
-        if (products.isEmpty() && !PRODUCT_PATH.exists()) {
+        current = ProductSnapshot.of(loadProducts(), epoch);
+        current.products.forEach(product -> ids.observe(product.getId()));
+        if (current.products.isEmpty() && !PRODUCT_PATH.exists()) {
             System.out.println("BACKEND: ProductRepository: products list is empty and file does not exist. Saving empty list to create file.");
-            saveProducts();
+            saveProducts(Durability.FLUSH).await();
             System.out.println("BACKEND: ProductRepository: Initialized empty products.json file.");
         }
-        System.out.println("BACKEND: ProductRepository: --- Initialization complete. In-memory products count: " + products.size() + " ---");
+        System.out.println("BACKEND: ProductRepository: --- Initialization complete. In-memory products count: " + current.products.size() + " ---");
     }
 
     private List<Product> loadProducts() {
@@ -48,7 +77,7 @@ public class ProductRepository {
 
         try {
             if (PRODUCT_PATH.exists()) {
-                String fileContent = new String(Files.readAllBytes(Paths.get(PRODUCT_PATH.getAbsolutePath())));
+                String fileContent = new String(Files.readAllBytes(Paths.get(PRODUCT_PATH.getAbsolutePath())), StandardCharsets.UTF_8);
                 System.out.println("BACKEND: ProductRepository: Raw file content before deserialization:\n" + fileContent);
 
                 if (fileContent.trim().isEmpty() || fileContent.trim().equals("[]")) {
@@ -85,8 +114,8 @@ public class ProductRepository {
 
                 if (idsCorrected) {
                     System.out.println("BACKEND: ProductRepository: IDs were corrected during load. Saving cleaned data back to file.");
-                    this.products = loadedProducts;
-                    saveProducts();
+                    this.current = ProductSnapshot.of(loadedProducts, epoch);
+                    saveProducts(Durability.FLUSH).await();
                 }
 
                 return loadedProducts;
@@ -100,85 +129,411 @@ public class ProductRepository {
         return new ArrayList<>();
     }
 
-    private void saveProducts() {
-        System.out.println("BACKEND: ProductRepository: Attempting to save " + products.size() + " products to: " + PRODUCT_PATH.getAbsolutePath());
-        // Log product IDs and titles for verification
-        System.out.println("BACKEND: ProductRepository: In-memory products list BEFORE saving (IDs): " + products.stream().map(Product::getId).collect(Collectors.toList()));
+    /**
+     * Enfileira o snapshot atual no PersistenceWriter. Deve ser chamado com o lock
+     * do repositório para que a ordem da fila siga a ordem das publicações.
+     */
+    private PersistenceWriter.PendingWrite saveProducts(Durability durability) {
+        List<Product> products = current.products;
+        System.out.println("BACKEND: ProductRepository: Enqueuing snapshot of " + products.size() + " products for: " + PRODUCT_PATH.getAbsolutePath());
+        return persistenceWriter.enqueue(productFileTarget, products, durability);
+    }
+
+    /**
+     * Executado pela thread do PersistenceWriter: apenas o snapshot mais recente do lote é gravado.
+     */
+    private void writeSnapshotBatch(List<Object> snapshots, boolean fsync) throws IOException {
+        @SuppressWarnings("unchecked")
+        List<Product> latest = (List<Product>) snapshots.get(snapshots.size() - 1);
+        PersistenceWriter.writeJsonFile(objectMapper.writer(), PRODUCT_PATH, latest, fsync);
+        System.out.println("BACKEND: ProductRepository: Products saved successfully (" + snapshots.size() + " mutations merged). Total products: " + latest.size());
+    }
+
+    private void awaitPersisted(PersistenceWriter.PendingWrite pending, String operation) {
+        if (!pending.await()) {
+            System.err.println("BACKEND: ProductRepository: ERROR saving products to JSON file after " + operation + ".");
+            throw new PersistenceFailureException("Falha ao gravar produtos (" + operation + ").");
+        }
+    }
+
+    /**
+     * Publica uma nova versão (lista + índices) e enfileira sua gravação. Chamado com o lock do repositório.
+     */
+    private PersistenceWriter.PendingWrite publish(List<Product> next, IntObjectIndex<Product> nextById,
+                                                   IntObjectIndex<Integer> nextPositions, Durability durability) {
+        current = new ProductSnapshot(Collections.unmodifiableList(next), nextById, nextPositions,
+                current.version + 1, System.currentTimeMillis());
+        return saveProducts(durability);
+    }
+
+    /**
+     * Registra um observador das mutações. Retorna o snapshot atual, obtido sob o mesmo lock,
+     * para que o observador possa se inicializar sem perder nenhuma mutação.
+     */
+    public List<Product> addListener(ProductChangeListener listener) {
+        lock.lock();
         try {
-            objectMapper.writeValue(PRODUCT_PATH, products);
-            System.out.println("BACKEND: ProductRepository: Products saved successfully. Total products: " + products.size());
-        } catch (IOException e) {
-            System.err.println("BACKEND: ProductRepository: ERROR saving products to JSON file: " + e.getMessage());
-            e.printStackTrace();
+            listeners.add(listener);
+            return current.products;
+        } finally {
+            lock.unlock();
         }
     }
 
+    /**
+     * Retorna o snapshot imutável atual, sem cópia. Quem precisar alterar a lista deve copiá-la.
+     */
     public List<Product> getAll() {
-        System.out.println("BACKEND: ProductRepository.getAll() called. Returning " + products.size() + " products from in-memory list.");
-        return new ArrayList<>(products);
+        List<Product> snapshot = current.products;
+        System.out.println("BACKEND: ProductRepository.getAll() called. Returning " + snapshot.size() + " products from in-memory list.");
+        return snapshot;
+    }
+
+    /**
+     * Retorna o snapshot imutável atual, sem cópia.
+     */
+    public List<Product> snapshot() {
+        return current.products;
+    }
+
+    /**
+     * Produtos exibidos na vitrine (ver isListed), na ordem do catálogo. Calculado uma vez por
+     * versão publicada, então a leitura não copia nem filtra nada.
+     */
+    public List<Product> listed() {
+        return current.listed;
+    }
+
+    /**
+     * Número da versão atual do catálogo; cresce a cada publicação.
+     */
+    public long version() {
+        return current.version;
+    }
+
+    /**
+     * Instante (epoch ms) da publicação da versão atual; no início, o instante da carga do arquivo.
+     */
+    public long lastModified() {
+        return current.lastModified;
+    }
+
+    /**
+     * Instante (epoch ms) em que este processo carregou o catálogo. A versão do catálogo recomeça
+     * a cada início, então (epoch, version) é o que identifica uma versão entre reinícios.
+     */
+    public long epoch() {
+        return epoch;
+    }
+
+    /**
+     * Produtos com estoque zerado saem da vitrine; estoque nulo (não controlado) continua.
+     */
+    public static boolean isListed(Product product) {
+        return product.getStock() == null || product.getStock() != 0;
+    }
+
+    /**
+     * Produtos do vendedor, na ordem do catálogo. O índice por vendedor é montado na primeira
+     * consulta a cada versão publicada; as seguintes não percorrem o catálogo.
+     */
+    public List<Product> findBySellerId(int sellerId) {
+        List<Product> products = current.bySeller().get(sellerId);
+        return products == null ? Collections.emptyList() : Collections.unmodifiableList(products);
     }
 
     public Optional<Product> getById(int id) {
-        System.out.println("BACKEND: ProductRepository.getById() called for ID: " + id);
-        Optional<Product> foundProduct = products.stream().filter(p -> p.getId() == id).findFirst();
-        System.out.println("BACKEND: ProductRepository.getById(): Product " + (foundProduct.isPresent() ? "found" : "NOT found") + " for ID " + id);
-        return foundProduct;
+        return Optional.ofNullable(findById(id));
+    }
+
+    /**
+     * Busca O(1) no índice por id, sem alocação. Retorna null se não existir.
+     */
+    public Product findById(int id) {
+        return current.byId.get(id);
     }
 
     public Product save(Product product) {
+        return save(product, persistenceWriter.getDefaultDurability());
+    }
+
+    public Product save(Product product, Durability durability) {
         System.out.println("BACKEND: ProductRepository.save() called for new product: " + product.getTitle());
-        int maxId = products.stream().mapToInt(Product::getId).max().orElse(0);
-        product.setId(maxId + 1);
-        System.out.println("BACKEND: ProductRepository.save(): Assigned new ID " + product.getId() + " to product '" + product.getTitle() + "'");
+        PersistenceWriter.PendingWrite pending;
+        lock.lock();
+        try {
+            List<Product> products = current.products;
+            product.setId(ids.next());
+            product.setVersion(1);
+            product.setLastModified(System.currentTimeMillis());
+            System.out.println("BACKEND: ProductRepository.save(): Assigned new ID " + product.getId() + " to product '" + product.getTitle() + "'");
 
-        products.add(product);
-        saveProducts();
+            List<Product> next = new ArrayList<>(products.size() + 1);
+            next.addAll(products);
+            next.add(product);
+            IntObjectIndex<Product> nextById = current.byId.copy();
+            nextById.put(product.getId(), product);
+            IntObjectIndex<Integer> nextPositions = current.positions.copy();
+            nextPositions.put(product.getId(), products.size());
+            pending = publish(next, nextById, nextPositions, durability);
+            for (ProductChangeListener listener : listeners) {
+                listener.onProductSaved(null, product);
+            }
+        } finally {
+            lock.unlock();
+        }
+        awaitPersisted(pending, "save");
         return product;
     }
 
     public boolean update(Product productToUpdate) {
+        return update(productToUpdate, null, persistenceWriter.getDefaultDurability());
+    }
+
+    public boolean update(Product productToUpdate, Long expectedVersion) {
+        return update(productToUpdate, expectedVersion, persistenceWriter.getDefaultDurability());
+    }
+
+    public boolean update(Product productToUpdate, Long expectedVersion, Durability durability) {
+        return update(productToUpdate, expectedVersion, null, durability);
+    }
+
+    public boolean update(Product productToUpdate, Long expectedVersion, BiFunction<Product, Integer, Integer> stockOf) {
+        return update(productToUpdate, expectedVersion, stockOf, persistenceWriter.getDefaultDurability());
+    }
+
+    /**
+     * Substitui o produto com o mesmo id. O sellerId original é preservado e a versão é a anterior + 1.
+     * @param expectedVersion Se não for null, só substitui se a versão publicada ainda for esta
+     *                        (compare-and-set com o lock do repositório).
+     * @param stockOf Se não for null, define o estoque publicado a partir da versão anterior e do
+     *                estoque pedido; chamado com o lock, depois da verificação de versão.
+     * @throws VersionConflictException se a versão publicada for outra.
+     */
+    public boolean update(Product productToUpdate, Long expectedVersion,
+                          BiFunction<Product, Integer, Integer> stockOf, Durability durability) {
         System.out.println("BACKEND: ProductRepository.update() called for product ID: " + productToUpdate.getId());
-        boolean updated = false;
-        for (int i = 0; i < products.size(); i++) {
-            if (products.get(i).getId() == productToUpdate.getId()) {
-                products.set(i, productToUpdate);
-                updated = true;
-                break;
+        PersistenceWriter.PendingWrite pending = null;
+        lock.lock();
+        try {
+            Integer position = current.positions.get(productToUpdate.getId());
+            if (position != null) {
+                Product previous = current.products.get(position);
+                if (expectedVersion != null && previous.getVersion() != expectedVersion) {
+                    throw new VersionConflictException("Produto", previous.getId(), expectedVersion, previous.getVersion());
+                }
+                productToUpdate.setSellerId(previous.getSellerId());
+                if (stockOf != null) {
+                    productToUpdate.setStock(stockOf.apply(previous, productToUpdate.getStock()));
+                }
+                productToUpdate.setVersion(previous.getVersion() + 1);
+                productToUpdate.setLastModified(System.currentTimeMillis());
+                List<Product> next = new ArrayList<>(current.products);
+                next.set(position, productToUpdate);
+                IntObjectIndex<Product> nextById = current.byId.copy();
+                nextById.put(productToUpdate.getId(), productToUpdate);
+                // A substituição não muda posições: o índice de posições é compartilhado com a versão anterior
+                pending = publish(next, nextById, current.positions, durability);
+                for (ProductChangeListener listener : listeners) {
+                    listener.onProductSaved(previous, productToUpdate);
+                }
             }
+        } finally {
+            lock.unlock();
         }
-        if (updated) {
-            saveProducts();
-            System.out.println("BACKEND: ProductRepository: Product ID " + productToUpdate.getId() + " updated in memory and file saved.");
-        } else {
+        if (pending == null) {
             System.err.println("BACKEND: ProductRepository: Product ID " + productToUpdate.getId() + " not found for update in repository. No save performed.");
+            return false;
         }
-        return updated;
+        awaitPersisted(pending, "update");
+        System.out.println("BACKEND: ProductRepository: Product ID " + productToUpdate.getId() + " updated in memory and file saved.");
+        return true;
+    }
+
+    public boolean updateStock(Collection<Integer> productIds, IntFunction<Integer> stockOf) {
+        return updateStock(productIds, stockOf, persistenceWriter.getDefaultDurability());
+    }
+
+    /**
+     * Atualiza o estoque de vários produtos com uma única publicação e uma única gravação.
+     * O estoque de cada produto é lido de stockOf com o lock do repositório, então a última
+     * publicação sempre carrega o valor mais recente, mesmo com chamadas concorrentes.
+     * Os produtos publicados são cópias; as versões anteriores não são alteradas.
+     * @return false se nenhum dos produtos existe.
+     */
+    public boolean updateStock(Collection<Integer> productIds, IntFunction<Integer> stockOf, Durability durability) {
+        PersistenceWriter.PendingWrite pending;
+        lock.lock();
+        try {
+            if (productIds.stream().noneMatch(id -> current.byId.containsKey(id))) {
+                return false;
+            }
+            pending = enqueueStockUpdate(productIds, stockOf, durability);
+        } finally {
+            lock.unlock();
+        }
+        if (pending != null) {
+            awaitPersisted(pending, "stock update");
+        }
+        return true;
+    }
+
+    public PersistenceWriter.PendingWrite enqueueStockUpdate(Collection<Integer> productIds, IntFunction<Integer> stockOf) {
+        return enqueueStockUpdate(productIds, stockOf, persistenceWriter.getDefaultDurability());
+    }
+
+    /**
+     * Como updateStock, mas não espera a gravação: retorna a escrita pendente (ou null se nada
+     * mudou) para que o chamador junte várias gravações e espere uma única vez.
+     */
+    public PersistenceWriter.PendingWrite enqueueStockUpdate(Collection<Integer> productIds, IntFunction<Integer> stockOf,
+                                                             Durability durability) {
+        lock.lock();
+        try {
+            IntObjectIndex<Product> nextById = current.byId.copy();
+            IntObjectIndex<Product> previousById = new IntObjectIndex<>(productIds.size());
+            for (int id : productIds) {
+                Product previous = current.byId.get(id);
+                if (previous == null || previousById.containsKey(id)) {
+                    continue;
+                }
+                Integer stock = stockOf.apply(id);
+                if (Objects.equals(stock, previous.getStock())) {
+                    continue;
+                }
+                previousById.put(id, previous);
+                nextById.put(id, withStock(previous, stock));
+            }
+            if (previousById.isEmpty()) {
+                return null;
+            }
+            List<Product> next = new ArrayList<>(current.products);
+            previousById.forEachValue(previous -> next.set(current.positions.get(previous.getId()), nextById.get(previous.getId())));
+            PersistenceWriter.PendingWrite pending = publish(next, nextById, current.positions, durability);
+            previousById.forEachValue(previous -> {
+                for (ProductChangeListener listener : listeners) {
+                    listener.onProductSaved(previous, nextById.get(previous.getId()));
+                }
+            });
+            return pending;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Product withStock(Product product, Integer stock) {
+        Product copy = new Product(product.getId(), product.getTitle(), product.getPrice(), product.getDescription(),
+                product.getImageUrl(), product.getBrand(), stock, product.getCategory(), product.getSellerId());
+        copy.setVersion(product.getVersion() + 1);
+        copy.setLastModified(System.currentTimeMillis());
+        return copy;
     }
 
     public boolean deleteById(int id) {
+        return deleteById(id, persistenceWriter.getDefaultDurability());
+    }
+
+    public boolean deleteById(int id, Durability durability) {
         System.out.println("BACKEND: ProductRepository.deleteById() called for ID: " + id);
-        System.out.println("BACKEND: ProductRepository.deleteById(): Current in-memory product IDs before removal attempt: " + products.stream().map(Product::getId).collect(Collectors.toList()));
-
-        // Find the product to log its details before attempting removal
-        Optional<Product> productToDeleteOptional = products.stream().filter(p -> p.getId() == id).findFirst();
-        if (productToDeleteOptional.isPresent()) {
-            Product productToDelete = productToDeleteOptional.get();
-            System.out.println("BACKEND: ProductRepository.deleteById(): Product '" + productToDelete.getTitle() + "' (ID: " + id + ") found for deletion in memory.");
-
-            boolean removed = products.removeIf(p -> p.getId() == id);
-            if (removed) {
-                System.out.println("BACKEND: ProductRepository.deleteById(): Product ID " + id + " successfully removed from in-memory list.");
-                System.out.println("BACKEND: ProductRepository.deleteById(): In-memory product IDs AFTER removal: " + products.stream().map(Product::getId).collect(Collectors.toList()));
-                saveProducts();
-                System.out.println("BACKEND: ProductRepository: Product ID " + id + " deleted from repository and file saved.");
-            } else {
-                // This case should ideally not be hit if productToDeleteOptional.isPresent() is true
-                System.err.println("BACKEND: ProductRepository: ERROR: Product ID " + id + " was found but failed to remove from list via removeIf.");
+        PersistenceWriter.PendingWrite pending = null;
+        lock.lock();
+        try {
+            Product previous = current.byId.get(id);
+            if (previous != null) {
+                List<Product> next = new ArrayList<>(current.products);
+                next.removeIf(p -> p.getId() == id);
+                IntObjectIndex<Product> nextById = current.byId.copy();
+                nextById.remove(id);
+                // Os produtos depois do removido mudam de posição: o índice é refeito
+                pending = publish(next, nextById, positionsOf(next), durability);
+                for (ProductChangeListener listener : listeners) {
+                    listener.onProductDeleted(previous);
+                }
             }
-            return removed;
-        } else {
+        } finally {
+            lock.unlock();
+        }
+        if (pending == null) {
             System.out.println("BACKEND: ProductRepository: Product ID " + id + " NOT found for deletion in memory. No removal or save performed.");
             return false;
         }
+        awaitPersisted(pending, "delete");
+        System.out.println("BACKEND: ProductRepository: Product ID " + id + " deleted from repository and file saved.");
+        return true;
+    }
+
+    /*
+     * Posição de cada id na lista; com ids repetidos (arquivo antigo), vale a primeira, como no índice por id.
+     */
+    private static IntObjectIndex<Integer> positionsOf(List<Product> products) {
+        IntObjectIndex<Integer> positions = new IntObjectIndex<>(products.size());
+        for (int i = 0; i < products.size(); i++) {
+            if (!positions.containsKey(products.get(i).getId())) {
+                positions.put(products.get(i).getId(), i);
+            }
+        }
+        return positions;
+    }
+
+    /*
+     * Versão imutável do catálogo: a lista (ordem de inserção), os índices por id e por posição
+     * e a vitrine são publicados juntos, então um leitor nunca vê um sem o outro.
+     * O índice de posições nunca é alterado depois de publicado: versões que não movem produtos
+     * (substituições e estoque) reaproveitam o da versão anterior.
+     */
+    private static final class ProductSnapshot {
+        private final List<Product> products;
+        private final IntObjectIndex<Product> byId;
+        private final IntObjectIndex<Integer> positions;
+        private final List<Product> listed;
+        private final long version;
+        private final long lastModified;
+        // Montado na primeira consulta por vendedor (ver findBySellerId); duas threads podem montá-lo
+        // ao mesmo tempo, com o mesmo resultado
+        private volatile IntObjectIndex<List<Product>> bySeller;
+
+        private ProductSnapshot(List<Product> products, IntObjectIndex<Product> byId, IntObjectIndex<Integer> positions,
+                                long version, long lastModified) {
+            this.products = products;
+            this.byId = byId;
+            this.positions = positions;
+            this.version = version;
+            this.lastModified = lastModified;
+            List<Product> listed = new ArrayList<>(products.size());
+            for (Product product : products) {
+                if (isListed(product)) {
+                    listed.add(product);
+                }
+            }
+            this.listed = listed.size() == products.size() ? products : Collections.unmodifiableList(listed);
+        }
+
+        private IntObjectIndex<List<Product>> bySeller() {
+            IntObjectIndex<List<Product>> index = bySeller;
+            if (index == null) {
+                index = new IntObjectIndex<>();
+                for (Product product : products) {
+                    List<Product> sellerProducts = index.get(product.getSellerId());
+                    if (sellerProducts == null) {
+                        sellerProducts = new ArrayList<>();
+                        index.put(product.getSellerId(), sellerProducts);
+                    }
+                    sellerProducts.add(product);
+                }
+                bySeller = index;
+            }
+            return index;
+        }
+
+        private static ProductSnapshot of(List<Product> products, long loadedAt) {
+            IntObjectIndex<Product> byId = new IntObjectIndex<>(products.size());
+            for (Product product : products) {
+                product.setLastModified(loadedAt);
+                if (!byId.containsKey(product.getId())) {
+                    byId.put(product.getId(), product);
+                }
+            }
+            return new ProductSnapshot(Collections.unmodifiableList(new ArrayList<>(products)), byId, positionsOf(products), 0, loadedAt);
+        }
     }
 }
@@ -1,64 +1,250 @@
 package com.meli.repository;
 
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.meli.model.User;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
 
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
+/*
+ * O mapa em memória é a fonte da verdade dos usuários; users.json é apenas o último checkpoint.
+ * Cada save/delete marca o usuário como sujo guardando seu registro já serializado (apenas desse
+ * usuário). O PersistenceWriter descarrega os registros sujos de forma incremental no log
+ * users.log, e o log é compactado em users.json periodicamente.
+ * O pedido de flush ao writer é feito depois de soltar o lock do repositório: com a fila cheia
+ * (backpressure) só quem gravou espera, e as outras leituras e gravações seguem. A ordem não
+ * depende da fila, porque o conjunto sujo guarda o último registro de cada usuário.
+ */
 @Repository
 public class UserRepository {
-    private static final File USER_FILE = new File("data/users.json");
-    private static final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules(); 
-    private List<User> users;
+    private final File USER_FILE;
+    private final File USER_LOG_FILE;
+    private static final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+    // Ordem de inserção preservada para getAll(); versões imutáveis, lidas sem lock e sem cópia
+    private final VersionedList<User> users = new VersionedList<>();
+    // Índice primitivo para as buscas por id (sem boxing), mantido junto com o mapa
+    private final IntObjectIndex<User> usersById = new IntObjectIndex<>();
+    // Índice de email normalizado (minúsculas) -> usuário, e a chave atualmente indexada de cada usuário
+    private final Map<String, User> usersByEmail = new HashMap<>();
+    private final IntObjectIndex<String> indexedEmailById = new IntObjectIndex<>();
+    // Registros pendentes por usuário: várias alterações antes do flush viram um único registro
+    // Lock próprio: o writer drena os registros sem disputar o lock do repositório
+    private final Map<Integer, byte[]> dirtyRecords = new LinkedHashMap<>();
+    private final ReentrantLock dirtyLock = new ReentrantLock();
+    // Lock do repositório (ver ProductRepository: sem synchronized por causa das threads virtuais).
+    // As buscas (id e email) usam o lock de leitura; o de escrita só cobre a alteração em memória, nunca a fila do writer
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final JsonWriteAheadLog userLog;
+    private final PersistenceWriter persistenceWriter;
+    // Destino no writer em segundo plano: descarrega todos os usuários sujos em uma única escrita
+    private final PersistenceTarget userLogTarget = this::flushDirtyUsers;
+    private final IdSequence ids;
 
-    public UserRepository() {
-        users = loadUsers();
+    public UserRepository(PersistenceWriter persistenceWriter, IdSequences idSequences,
+                          @Value("${meli.users.checkpoint-interval:500}") int checkpointInterval,
+                          @Value("${meli.data.dir:data}") String dataDir) {
+        this.USER_FILE = new File(dataDir, "users.json");
+        this.USER_LOG_FILE = new File(dataDir, "users.log");
+        this.persistenceWriter = persistenceWriter;
+        this.ids = idSequences.forEntity("users");
+        this.userLog = new JsonWriteAheadLog(USER_FILE, USER_LOG_FILE, mapper, checkpointInterval);
+        for (User user : loadUsers()) {
+            users.add(user);
+            usersById.put(user.getId(), user);
+            indexEmail(user);
+            ids.observe(user.getId());
+        }
+        System.out.println("DEBUG: UserRepository - Loaded " + users.size() + " users from " + USER_FILE.getName() + " + " + USER_LOG_FILE.getName());
     }
 
-    public static List<User> loadUsers() {
+    /**
+     * Carrega o último snapshot (users.json) e reaplica a cauda do log (users.log).
+     */
+    private List<User> loadUsers() {
+        List<User> loadedUsers = new ArrayList<>();
         try {
-            if (!USER_FILE.exists() || USER_FILE.length() == 0) {
-                return new ArrayList<>();
+            for (JsonNode node : userLog.load()) {
+                loadedUsers.add(mapper.treeToValue(node, User.class));
             }
-            return mapper.readValue(USER_FILE, new TypeReference<List<User>>() {});
         } catch (IOException e) {
             e.printStackTrace();
-            return new ArrayList<>();
         }
+        return loadedUsers;
     }
 
-    public static void saveUsers(List<User> usersToSave) {
+    /**
+     * Executado pela thread do PersistenceWriter: anexa ao log os registros de todos os usuários
+     * sujos até o momento. Flushes enfileirados depois deste encontram o conjunto vazio.
+     */
+    private void flushDirtyUsers(List<Object> flushRequests, boolean fsync) throws IOException {
+        Map<Integer, byte[]> drained;
+        dirtyLock.lock();
+        try {
+            drained = new LinkedHashMap<>(dirtyRecords);
+            dirtyRecords.clear();
+        } finally {
+            dirtyLock.unlock();
+        }
         try {
-            File parentDir = USER_FILE.getParentFile();
-            if (parentDir != null && !parentDir.exists()) {
-                parentDir.mkdirs();
+            userLog.append(new ArrayList<>(drained.values()));
+            if (fsync) {
+                userLog.force();
+            }
+        } catch (IOException | RuntimeException e) {
+            restoreDirty(drained);
+            throw e;
+        }
+        // Os registros já estão no log: se o checkpoint falhar, o flush continua gravado
+        // e o próximo flush tenta o checkpoint de novo
+        if (userLog.isCheckpointDue()) {
+            try {
+                userLog.checkpoint();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("ERROR: UserRepository - Failed to write users checkpoint to " + USER_FILE.getAbsolutePath() + ": " + e.getMessage());
+                e.printStackTrace();
             }
-            mapper.writerWithDefaultPrettyPrinter().writeValue(USER_FILE, usersToSave);
+        }
+    }
+
+    /**
+     * Fecha o log ao encerrar a aplicação, depois de um último flush dos usuários pendentes.
+     * O writer não é encerrado aqui (ver OrderRepository.close).
+     */
+    @PreDestroy
+    public void close() {
+        if (!requestFlush(Durability.FSYNC).await()) {
+            System.err.println("ERROR: UserRepository - Failed to write pending users before closing " + USER_LOG_FILE.getAbsolutePath());
+        }
+        try {
+            userLog.close();
         } catch (IOException e) {
-            e.printStackTrace();
+            System.err.println("ERROR: UserRepository - Failed to close " + USER_LOG_FILE.getAbsolutePath() + ": " + e.getMessage());
+        }
+    }
+
+    /*
+     * Devolve ao conjunto sujo os registros de um flush que falhou, para o próximo flush tentar de novo.
+     * Um usuário alterado depois do dreno já tem um registro mais novo, que é mantido.
+     */
+    private void restoreDirty(Map<Integer, byte[]> drained) {
+        dirtyLock.lock();
+        try {
+            Map<Integer, byte[]> merged = new LinkedHashMap<>(drained);
+            for (Map.Entry<Integer, byte[]> newer : dirtyRecords.entrySet()) {
+                merged.remove(newer.getKey());
+                merged.put(newer.getKey(), newer.getValue());
+            }
+            dirtyRecords.clear();
+            dirtyRecords.putAll(merged);
+        } finally {
+            dirtyLock.unlock();
+        }
+    }
+
+    private void awaitPersisted(PersistenceWriter.PendingWrite pending) {
+        if (!pending.await()) {
+            System.err.println("ERROR: UserRepository - Failed to save users to " + USER_LOG_FILE.getAbsolutePath());
+            throw new PersistenceFailureException("Falha ao gravar usuários em " + USER_LOG_FILE.getName() + ".");
         }
     }
-    
+
+    /**
+     * Todos os usuários, na ordem de cadastro: a versão atual (imutável), sem lock e sem cópia.
+     */
     public List<User> getAll() {
-        return new ArrayList<>(users); 
+        return users.snapshot();
     }
 
     public User getById(int id) {
-        // Não precisa de null check para id, pois é int primitivo
-        return users.stream().filter(u -> u.getId() == id).findFirst().orElse(null);
+        lock.readLock().lock();
+        try {
+            // Não precisa de null check para id, pois é int primitivo
+            return usersById.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
+    /**
+     * Busca em tempo constante no índice de emails (sem diferenciar maiúsculas/minúsculas).
+     */
     public Optional<User> findUserByEmail(String email) {
-        return users.stream()
-                .filter(user -> user.getEmail().equalsIgnoreCase(email))
-                .findFirst();
+        lock.readLock().lock();
+        try {
+            String key = normalizeEmail(email);
+            return key == null ? Optional.empty() : Optional.ofNullable(usersByEmail.get(key));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Cadastra um novo usuário somente se o email ainda não estiver em uso.
+     * A verificação e a inserção acontecem sob o mesmo lock, então dois cadastros
+     * simultâneos com o mesmo email não podem ambos ter sucesso.
+     * @return true se o usuário foi cadastrado; false se o email já existe.
+     */
+    public boolean register(User user) {
+        return register(user, persistenceWriter.getDefaultDurability());
+    }
+
+    public boolean register(User user, Durability durability) {
+        lock.writeLock().lock();
+        try {
+            String key = normalizeEmail(user.getEmail());
+            if (key == null || usersByEmail.containsKey(key)) {
+                return false;
+            }
+            user.setId(0);
+            User published = applySave(user.copy());
+            user.setId(published.getId());
+            user.setVersion(published.getVersion());
+        } finally {
+            lock.writeLock().unlock();
+        }
+        awaitPersisted(requestFlush(durability));
+        return true;
+    }
+
+    /**
+     * Troca o email da cópia de um usuário, verificando a unicidade no índice de emails.
+     * A cópia só é alterada se o novo email estiver livre (ou já pertencer ao próprio usuário);
+     * o índice de emails passa a apontar para ela quando a cópia é gravada (ver update).
+     * Usa o lock de leitura: dentro de update (que já tem o de escrita) a verificação e a gravação
+     * são atômicas; fora dele a gravação verifica o índice de novo (ver indexEmail).
+     * @return true se o email foi trocado; false se outro usuário já o utiliza.
+     */
+    public boolean changeEmail(User user, String newEmail) {
+        lock.readLock().lock();
+        try {
+            String key = normalizeEmail(newEmail);
+            if (key == null) {
+                return false;
+            }
+            User owner = usersByEmail.get(key);
+            if (owner != null && owner.getId() != user.getId()) {
+                return false;
+            }
+            user.setEmail(newEmail);
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
@@ -67,42 +253,162 @@ public class UserRepository {
      * @param user O usuário a ser salvo.
      */
     public void save(User user) {
-        List<User> currentUsers = loadUsers();
-
-        boolean found = false;
-        // Se o ID do usuário é diferente de 0, tenta encontrar e atualizar
-        if (user.getId() != 0) { // CORREÇÃO AQUI: Usa 0 para indicar novo, não null
-            for (int i = 0; i < currentUsers.size(); i++) {
-                if (currentUsers.get(i).getId() == user.getId()) { // CORREÇÃO AQUI: Comparação direta de int
-                    currentUsers.set(i, user);
-                    found = true;
-                    System.out.println("DEBUG: UserRepository.save - Updated existing user with ID: " + user.getId());
-                    break;
-                }
+        save(user, persistenceWriter.getDefaultDurability());
+    }
+
+    /**
+     * Salva um usuário com a durabilidade escolhida pelo chamador.
+     * Apenas o próprio usuário é serializado; os demais não são lidos nem reescritos.
+     * O repositório publica uma cópia: o objeto do chamador (que pode ser uma versão já publicada,
+     * lida por outros) nunca é alterado, exceto pelo id de um usuário novo.
+     */
+    public void save(User user, Durability durability) {
+        lock.writeLock().lock();
+        try {
+            User published = applySave(user.copy());
+            if (user.getId() != published.getId()) {
+                user.setId(published.getId());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        awaitPersisted(requestFlush(durability));
+    }
+
+    /**
+     * Altera e salva um usuário existente com o lock do repositório, de forma atômica com a
+     * verificação de versão (compare-and-set). A alteração recebe uma cópia da versão atual,
+     * que só substitui a publicada se a alteração não desistir (retornando false): leitores
+     * nunca veem um usuário alterado pela metade.
+     * @param expectedVersion Versão que o chamador leu, ou null para não verificar.
+     * @return false se o usuário não existe ou a alteração desistiu.
+     * @throws VersionConflictException se a versão atual for outra.
+     */
+    public boolean update(int id, Long expectedVersion, Predicate<User> changes) {
+        lock.writeLock().lock();
+        try {
+            User current = usersById.get(id);
+            if (current == null) {
+                return false;
+            }
+            if (expectedVersion != null && current.getVersion() != expectedVersion) {
+                throw new VersionConflictException("Usuário", id, expectedVersion, current.getVersion());
+            }
+            User copy = current.copy();
+            if (!changes.test(copy)) {
+                return false;
             }
+            applySave(copy);
+        } finally {
+            lock.writeLock().unlock();
         }
+        awaitPersisted(requestFlush(persistenceWriter.getDefaultDurability()));
+        return true;
+    }
 
-        if (!found) {
+    /*
+     * Publica o usuário informado como a versão atual. Chamado com o lock, sempre com um objeto que
+     * ninguém mais tem (cópia feita pelo repositório).
+     */
+    private User applySave(User user) {
+        if (user.getId() != 0 && usersById.containsKey(user.getId())) {
+            System.out.println("DEBUG: UserRepository.save - Updated existing user with ID: " + user.getId());
+        } else {
             // Se o ID era 0 ou não foi encontrado, gera um novo ID e adiciona
-            int newId = currentUsers.stream()
-                                    .mapToInt(User::getId)
-                                    .max()
-                                    .orElse(0) + 1;
+            int newId = ids.next();
             user.setId(newId);
-            currentUsers.add(user);
             System.out.println("DEBUG: UserRepository.save - Added new user with generated ID: " + newId);
         }
-        saveUsers(currentUsers);
-        this.users = currentUsers;
+        User previous = usersById.get(user.getId());
+        if (previous == null) {
+            user.setVersion(1);
+            users.add(user);
+        } else {
+            user.setVersion(previous.getVersion() + 1);
+            users.replace(previous, user);
+        }
+        usersById.put(user.getId(), user);
+        indexEmail(user);
+        markDirty(user.getId(), userLog.encodePut(user.getId(), user));
+        return user;
     }
 
     public boolean deleteById(int id) {
-        List<User> currentUsers = loadUsers();
-        boolean removed = currentUsers.removeIf(u -> u.getId() == id); // Não precisa de null check
-        if (removed) {
-            saveUsers(currentUsers);
-            this.users = currentUsers;
+        return deleteById(id, persistenceWriter.getDefaultDurability());
+    }
+
+    public boolean deleteById(int id, Durability durability) {
+        lock.writeLock().lock();
+        try {
+            User removed = usersById.remove(id);
+            if (removed == null) {
+                return false;
+            }
+            users.remove(removed);
+            unindexEmail(id);
+            markDirty(id, userLog.encodeDelete(id));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        awaitPersisted(requestFlush(durability));
+        return true;
+    }
+
+    /**
+     * Mantém o índice de email em dia com o email atual do usuário. Chamado com o lock.
+     * Se o email já pertence a outro usuário, o dono atual do índice é preservado.
+     */
+    private void indexEmail(User user) {
+        String key = normalizeEmail(user.getEmail());
+        String previousKey = indexedEmailById.get(user.getId());
+        if (previousKey != null && previousKey.equals(key)) {
+            usersByEmail.put(key, user);
+            return;
+        }
+        if (key != null) {
+            User owner = usersByEmail.get(key);
+            if (owner != null && owner.getId() != user.getId()) {
+                System.err.println("WARN: UserRepository - Email " + user.getEmail() + " already indexed for user ID " + owner.getId() + "; keeping it for that user.");
+                return;
+            }
+        }
+        unindexEmail(user.getId());
+        if (key != null) {
+            usersByEmail.put(key, user);
+            indexedEmailById.put(user.getId(), key);
+        }
+    }
+
+    private void unindexEmail(int id) {
+        String previousKey = indexedEmailById.remove(id);
+        if (previousKey != null) {
+            usersByEmail.remove(previousKey);
         }
-        return removed;
+    }
+
+    private static String normalizeEmail(String email) {
+        return email == null ? null : email.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Substitui o registro pendente do usuário. Chamado com o lock, na mesma ordem das alterações em memória.
+     */
+    private void markDirty(int id, byte[] record) {
+        dirtyLock.lock();
+        try {
+            dirtyRecords.remove(id);
+            dirtyRecords.put(id, record);
+        } finally {
+            dirtyLock.unlock();
+        }
+    }
+
+    /**
+     * Pede ao writer um flush dos usuários sujos. Chamado depois de soltar o lock: o registro já
+     * está no conjunto sujo, então este flush (ou um anterior que o tenha drenado) o grava; se um
+     * flush anterior falhar, o registro volta ao conjunto e este flush tenta de novo.
+     */
+    private PersistenceWriter.PendingWrite requestFlush(Durability durability) {
+        return persistenceWriter.enqueue(userLogTarget, null, durability);
     }
 }
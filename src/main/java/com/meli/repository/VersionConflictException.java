@@ -0,0 +1,27 @@
+package com.meli.repository;
+
+/*
+ * Lançada quando uma atualização condicional encontra uma versão diferente da esperada
+ * (outra escrita aconteceu desde a leitura do cliente). Os controllers respondem 412.
+ */
+public class VersionConflictException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long expectedVersion;
+    private final long currentVersion;
+
+    public VersionConflictException(String entity, int id, long expectedVersion, long currentVersion) {
+        super(entity + " " + id + ": versão esperada " + expectedVersion + ", versão atual " + currentVersion + ".");
+        this.expectedVersion = expectedVersion;
+        this.currentVersion = currentVersion;
+    }
+
+    public long getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    public long getCurrentVersion() {
+        return currentVersion;
+    }
+}
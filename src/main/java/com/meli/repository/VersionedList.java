@@ -0,0 +1,115 @@
+package com.meli.repository;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Predicate;
+
+/*
+ * Lista com versões imutáveis (MVCC). Leitores pegam a versão atual, que já é uma List
+ * somente leitura: sem lock, sem cópia e sem alocação por leitura. Escritores (serializados
+ * pelo lock do repositório) publicam uma nova versão.
+ * Inserção no fim é O(1) amortizado: as versões compartilham o mesmo array e cada uma só
+ * enxerga as posições até o seu tamanho, que nunca são reescritas. Remoção e substituição
+ * copiam o array (raras: exclusões e trocas de objeto).
+ */
+final class VersionedList<E> {
+
+    private volatile Version<E> current = new Version<>(new Object[8], 0, 0);
+
+    /**
+     * Versão atual, imutável. Continua válida (e igual) mesmo depois de novas escritas.
+     */
+    List<E> snapshot() {
+        return current;
+    }
+
+    /**
+     * Número da versão atual; cresce a cada escrita.
+     */
+    long version() {
+        return current.version;
+    }
+
+    int size() {
+        return current.size;
+    }
+
+    void add(E element) {
+        Version<E> v = current;
+        Object[] items = v.items;
+        if (v.size == items.length) {
+            items = Arrays.copyOf(items, items.length << 1);
+        }
+        items[v.size] = element;
+        current = new Version<>(items, v.size + 1, v.version + 1);
+    }
+
+    /**
+     * Troca o elemento (mesma instância) por outro, na mesma posição.
+     */
+    boolean replace(E previous, E replacement) {
+        Version<E> v = current;
+        for (int i = 0; i < v.size; i++) {
+            if (v.items[i] == previous) {
+                Object[] items = Arrays.copyOf(v.items, v.items.length);
+                items[i] = replacement;
+                current = new Version<>(items, v.size, v.version + 1);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remove o elemento (mesma instância).
+     */
+    boolean remove(E element) {
+        return removeIf(e -> e == element);
+    }
+
+    boolean removeIf(Predicate<? super E> filter) {
+        Version<E> v = current;
+        Object[] items = new Object[v.items.length];
+        int n = 0;
+        for (int i = 0; i < v.size; i++) {
+            @SuppressWarnings("unchecked")
+            E element = (E) v.items[i];
+            if (!filter.test(element)) {
+                items[n++] = element;
+            }
+        }
+        if (n == v.size) {
+            return false;
+        }
+        current = new Version<>(items, n, v.version + 1);
+        return true;
+    }
+
+    private static final class Version<E> extends AbstractList<E> implements RandomAccess {
+        private final Object[] items;
+        private final int size;
+        private final long version;
+
+        private Version(Object[] items, int size, long version) {
+            this.items = items;
+            this.size = size;
+            this.version = version;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return (E) items[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
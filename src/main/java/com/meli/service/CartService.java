@@ -13,16 +13,26 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
 
+/*
+ * Operações do carrinho. Cada operação que lê e altera o carrinho roda com o lock daquele
+ * consumidor (ConsumerLocks), então alterações no mesmo carrinho são linearizáveis.
+ * O carrinho nunca é alterado no lugar: a operação monta um mapa novo e o grava em uma nova
+ * versão do Consumer (UserRepository.update), então quem lê o consumidor publicado (gravação,
+ * respostas HTTP) nunca vê um carrinho pela metade, nem perde alterações feitas no perfil.
+ */
 @Service
 public class CartService {
 
     private final UserRepository userRepository;
     private final ProductService productService;
+    private final ConsumerLocks consumerLocks;
 
-    public CartService(UserRepository userRepository, ProductService productService) {
+    public CartService(UserRepository userRepository, ProductService productService, ConsumerLocks consumerLocks) {
         this.userRepository = userRepository;
         this.productService = productService;
+        this.consumerLocks = consumerLocks;
     }
 
     /**
@@ -53,6 +63,10 @@ public class CartService {
      * @return Optional do Consumer atualizado se bem-sucedido, Optional.empty() caso contrário.
      */
     public Optional<Consumer> addProductToCart(int consumerId, int productId, int quantity) {
+        return withConsumerLock(consumerId, () -> addProductToCartLocked(consumerId, productId, quantity));
+    }
+
+    private Optional<Consumer> addProductToCartLocked(int consumerId, int productId, int quantity) {
         Optional<Consumer> optionalConsumer = getConsumerById(consumerId);
         if (optionalConsumer.isEmpty()) {
             System.err.println("ERROR: CartService.addProductToCart: Falha ao obter consumidor com ID " + consumerId + ".");
@@ -74,10 +88,10 @@ public class CartService {
             return Optional.empty(); 
         }
 
-        consumer.addProductToCart(productId, quantity);
-        userRepository.save(consumer);
-        System.out.println("DEBUG: CartService.addProductToCart: Adicionado " + quantity + " unidades do produto " + product.getTitle() + " (ID: " + productId + ") ao carrinho do consumidor " + consumerId + ". Nova quantidade total: " + consumer.getCart().get(productId));
-        return Optional.of(consumer);
+        Map<Integer, Integer> cart = new HashMap<>(consumer.getCart());
+        cart.merge(productId, quantity, Integer::sum);
+        System.out.println("DEBUG: CartService.addProductToCart: Adicionado " + quantity + " unidades do produto " + product.getTitle() + " (ID: " + productId + ") ao carrinho do consumidor " + consumerId + ". Nova quantidade total: " + cart.get(productId));
+        return saveCart(consumerId, cart);
     }
 
     /**
@@ -88,6 +102,10 @@ public class CartService {
      * @return Optional do Consumer atualizado se bem-sucedido, Optional.empty() caso contrário.
      */
     public Optional<Consumer> setProductQuantityInCart(int consumerId, int productId, int newQuantity) {
+        return withConsumerLock(consumerId, () -> setProductQuantityInCartLocked(consumerId, productId, newQuantity));
+    }
+
+    private Optional<Consumer> setProductQuantityInCartLocked(int consumerId, int productId, int newQuantity) {
         Optional<Consumer> optionalConsumer = getConsumerById(consumerId);
         if (optionalConsumer.isEmpty()) {
             System.err.println("ERROR: CartService.setProductQuantityInCart: Falha ao obter consumidor com ID " + consumerId + ".");
@@ -102,20 +120,19 @@ public class CartService {
             return Optional.empty();
         }
 
+        Map<Integer, Integer> cart = new HashMap<>(consumer.getCart());
         if (newQuantity <= 0) {
-            consumer.removeProductFromCart(productId);
+            cart.remove(productId);
             System.out.println("DEBUG: CartService.setProductQuantityInCart: Produto " + productId + " removido do carrinho do consumidor " + consumerId + " (quantidade definida para 0).");
         } else {
             if (product.getStock() == null || product.getStock() < newQuantity) {
                 System.err.println("ERROR: CartService.setProductQuantityInCart: Estoque insuficiente para o produto " + product.getTitle() + " (ID: " + productId + "). Disponível: " + product.getStock() + ", Solicitado (total): " + newQuantity + ".");
                 return Optional.empty(); 
             }
-            consumer.getCart().put(productId, newQuantity);
+            cart.put(productId, newQuantity);
             System.out.println("DEBUG: CartService.setProductQuantityInCart: Quantidade do produto " + product.getTitle() + " (ID: " + productId + ") definida para " + newQuantity + " no carrinho do consumidor " + consumerId);
         }
-        
-        userRepository.save(consumer);
-        return Optional.of(consumer);
+        return saveCart(consumerId, cart);
     }
 
     /**
@@ -126,6 +143,10 @@ public class CartService {
      * @return Optional do Consumer atualizado se bem-sucedido, Optional.empty() caso contrário.
      */
     public Optional<Consumer> removeProductFromCart(int consumerId, int productId) {
+        return withConsumerLock(consumerId, () -> removeProductFromCartLocked(consumerId, productId));
+    }
+
+    private Optional<Consumer> removeProductFromCartLocked(int consumerId, int productId) {
         Optional<Consumer> optionalConsumer = getConsumerById(consumerId);
         if (optionalConsumer.isEmpty()) {
             System.err.println("ERROR: CartService.removeProductFromCart: Falha ao obter consumidor com ID " + consumerId + ".");
@@ -133,14 +154,16 @@ public class CartService {
         }
 
         Consumer consumer = optionalConsumer.get();
-        consumer.removeProductFromCart(productId);
-        userRepository.save(consumer);
+        Map<Integer, Integer> cart = new HashMap<>(consumer.getCart());
+        cart.remove(productId);
         System.out.println("DEBUG: CartService.removeProductFromCart: Produto com ID " + productId + " removido do carrinho do consumidor " + consumerId);
-        return Optional.of(consumer);
+        return saveCart(consumerId, cart);
     }
 
     /**
      * Obtém o carrinho de um consumidor, incluindo detalhes completos dos produtos.
+     * A leitura não usa o lock: o carrinho é trocado por inteiro a cada alteração (volatile).
+     * Só a limpeza de produtos que não existem mais, quando há, roda com o lock.
      * @param consumerId ID do consumidor.
      * @return Optional de uma lista de mapas (detalhes do produto + quantidade no carrinho) se encontrado, Optional.empty() caso contrário.
      */
@@ -152,11 +175,11 @@ public class CartService {
         }
 
         Consumer consumer = optionalConsumer.get();
-        Map<Integer, Integer> cartProducts = consumer.getCart();
+        Map<Integer, Integer> cartProducts = new HashMap<>(consumer.getCart());
         List<Map<String, Object>> detailedCartItems = new ArrayList<>();
 
         // Usar um iterador para permitir remoção segura durante a iteração
-        cartProducts.entrySet().removeIf(entry -> {
+        boolean removedInvalid = cartProducts.entrySet().removeIf(entry -> {
             Integer productId = entry.getKey();
             Integer quantityInCart = entry.getValue();
             Product product = productService.getProductById(productId);
@@ -176,26 +199,70 @@ public class CartService {
                 return true; // Remover este item inválido
             }
         });
-        userRepository.save(consumer);
+        // Só grava se algum item inválido foi removido
+        if (removedInvalid) {
+            consumerLocks.withLock(consumerId, () -> removeMissingProducts(consumerId));
+        }
         return Optional.of(detailedCartItems);
     }
 
+    /*
+     * Remove do carrinho atual (relido com o lock) os produtos que não existem mais.
+     */
+    private Void removeMissingProducts(int consumerId) {
+        Optional<Consumer> optionalConsumer = getConsumerById(consumerId);
+        if (optionalConsumer.isEmpty()) {
+            return null;
+        }
+        Map<Integer, Integer> cart = new HashMap<>(optionalConsumer.get().getCart());
+        if (cart.keySet().removeIf(productId -> productService.getProductById(productId) == null)) {
+            saveCart(consumerId, cart);
+        }
+        return null;
+    }
+
     /**
      * Limpa todos os produtos do carrinho de um consumidor.
      * @param consumerId ID do consumidor.
      * @return Optional do Consumer atualizado se bem-sucedido, Optional.empty() caso contrário.
      */
     public Optional<Consumer> clearCart(int consumerId) {
+        return withConsumerLock(consumerId, () -> clearCartLocked(consumerId));
+    }
+
+    private Optional<Consumer> clearCartLocked(int consumerId) {
         Optional<Consumer> optionalConsumer = getConsumerById(consumerId);
         if (optionalConsumer.isEmpty()) {
             System.err.println("ERROR: CartService.clearCart: Falha ao obter consumidor com ID " + consumerId + ".");
             return Optional.empty();
         }
 
-        Consumer consumer = optionalConsumer.get();
-        consumer.getCart().clear();
-        userRepository.save(consumer);
         System.out.println("DEBUG: CartService.clearCart: Carrinho do consumidor " + consumerId + " limpo.");
-        return Optional.of(consumer);
+        return saveCart(consumerId, new HashMap<>());
+    }
+
+    /*
+     * Executa a ação com o lock do consumidor. O lock só é pedido depois de confirmar que o
+     * consumidor existe, então ids desconhecidos não fazem o mapa de locks crescer.
+     */
+    private Optional<Consumer> withConsumerLock(int consumerId, Supplier<Optional<Consumer>> action) {
+        if (getConsumerById(consumerId).isEmpty()) {
+            return Optional.empty();
+        }
+        return consumerLocks.withLock(consumerId, action);
+    }
+
+    /*
+     * Grava o carrinho em uma nova versão do consumidor e retorna essa versão. Chamado com o lock do consumidor.
+     */
+    private Optional<Consumer> saveCart(int consumerId, Map<Integer, Integer> cart) {
+        boolean saved = userRepository.update(consumerId, null, user -> {
+            if (!(user instanceof Consumer)) {
+                return false;
+            }
+            ((Consumer) user).setCart(cart);
+            return true;
+        });
+        return saved ? getConsumerById(consumerId) : Optional.empty();
     }
 }
@@ -0,0 +1,171 @@
+package com.meli.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/*
+ * Sequenciador em anel (padrão disruptor) com um único consumidor.
+ * Produtores (threads de requisição) reservam uma posição com um incremento atômico, escrevem o
+ * comando e marcam a posição como publicada, sem lock. Uma única thread aplica os comandos na
+ * ordem da sequência, em lotes de até batchSize comandos publicados consecutivos, então o estado
+ * tocado pelo handler tem um único escritor. Com o anel cheio, o produtor espera (backpressure).
+ * Se o handler lançar qualquer Throwable, o lote é entregue a onFailure e a thread continua:
+ * um lote com erro não pode deixar os produtores seguintes sem escritor.
+ */
+final class CommandSequencer<T> {
+
+    private final Object[] slots;
+    private final int mask;
+    // Sequência publicada em cada posição (-1 = nunca); a escrita volátil libera o conteúdo da posição
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong(-1);
+    // Última sequência já aplicada; posições até ela podem ser reutilizadas
+    private volatile long consumed = -1;
+    private final int batchSize;
+    private final Consumer<List<T>> handler;
+    private final BiConsumer<List<T>, Throwable> onFailure;
+    private final Thread writerThread;
+    private volatile boolean writerParked;
+    private volatile boolean running = true;
+
+    private final LongAdder commands = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final AtomicLong maxBatch = new AtomicLong();
+    private final AtomicLong ringFullWaits = new AtomicLong();
+    private final LongAdder failedBatches = new LongAdder();
+
+    /**
+     * @param ringSize Capacidade do anel, arredondada para a próxima potência de 2.
+     * @param handler Aplica um lote de comandos; chamado sempre pela mesma thread, na ordem da sequência.
+     * @param onFailure Recebe o lote e o erro quando o handler falha (ex.: para concluir os comandos com erro).
+     */
+    CommandSequencer(String name, int ringSize, int batchSize, Consumer<List<T>> handler,
+                     BiConsumer<List<T>, Throwable> onFailure) {
+        int capacity = ringSize <= 2 ? 2 : Integer.highestOneBit(ringSize - 1) << 1;
+        this.slots = new Object[capacity];
+        this.mask = capacity - 1;
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+        this.batchSize = Math.max(1, batchSize);
+        this.handler = handler;
+        this.onFailure = onFailure;
+        this.writerThread = new Thread(this::runLoop, name);
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Publica um comando. Só bloqueia se o anel estiver cheio.
+     * @throws IllegalStateException se o sequenciador já foi parado.
+     */
+    void publish(T command) {
+        if (!running || !writerThread.isAlive()) {
+            throw new IllegalStateException("Sequenciador parado.");
+        }
+        long sequence = claimed.incrementAndGet();
+        long wrapPoint = sequence - slots.length;
+        if (wrapPoint > consumed) {
+            ringFullWaits.incrementAndGet();
+            while (wrapPoint > consumed) {
+                if (!writerThread.isAlive()) {
+                    throw new IllegalStateException("Sequenciador parado.");
+                }
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+            }
+        }
+        int index = (int) (sequence & mask);
+        slots[index] = command;
+        published.set(index, sequence);
+        if (writerParked) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    /**
+     * Para depois de aplicar tudo o que já foi publicado.
+     */
+    void shutdown() {
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runLoop() {
+        List<T> batch = new ArrayList<>(batchSize);
+        long next = 0;
+        while (running || next <= claimed.get()) {
+            while (batch.size() < batchSize && isPublished(next + batch.size())) {
+                int index = (int) ((next + batch.size()) & mask);
+                @SuppressWarnings("unchecked")
+                T command = (T) slots[index];
+                slots[index] = null;
+                batch.add(command);
+            }
+            if (batch.isEmpty()) {
+                // Marca antes de reconferir: um produtor que publicar agora vê a marca e acorda a thread
+                writerParked = true;
+                if (!isPublished(next) && running) {
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(1));
+                }
+                writerParked = false;
+                continue;
+            }
+            try {
+                handler.accept(batch);
+            } catch (Throwable e) {
+                failedBatches.increment();
+                System.err.println("ERROR: CommandSequencer (" + writerThread.getName() + ") - Lote de " + batch.size() + " comandos falhou: " + e);
+                e.printStackTrace();
+                try {
+                    onFailure.accept(batch, e);
+                } catch (Throwable nested) {
+                    System.err.println("ERROR: CommandSequencer (" + writerThread.getName() + ") - Falha ao concluir o lote com erro: " + nested);
+                }
+            }
+            commands.add(batch.size());
+            batches.increment();
+            maxBatch.accumulateAndGet(batch.size(), Math::max);
+            next += batch.size();
+            consumed = next - 1;
+            batch.clear();
+        }
+    }
+
+    private boolean isPublished(long sequence) {
+        return published.get((int) (sequence & mask)) == sequence;
+    }
+
+    /**
+     * Comandos aplicados, lotes, tamanho médio e máximo dos lotes, esperas por anel cheio e lotes com erro.
+     */
+    Map<String, Object> stats() {
+        long total = commands.sum();
+        long count = batches.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ringSize", slots.length);
+        stats.put("batchSize", batchSize);
+        stats.put("commands", total);
+        stats.put("batches", count);
+        stats.put("avgBatch", count == 0 ? 0.0 : total / (double) count);
+        stats.put("maxBatch", maxBatch.get());
+        stats.put("pending", claimed.get() - consumed);
+        stats.put("ringFullWaits", ringFullWaits.get());
+        stats.put("failedBatches", failedBatches.sum());
+        return stats;
+    }
+}
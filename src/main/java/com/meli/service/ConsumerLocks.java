@@ -0,0 +1,72 @@
+package com.meli.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/*
+ * Um lock por consumidor para as mutações do carrinho: operações no mesmo carrinho são
+ * serializadas (linearizáveis) e carrinhos de consumidores diferentes nunca disputam o mesmo lock.
+ * O chamador só pede o lock de um consumidor que existe (ver CartService), então ids quaisquer
+ * vindos da URL não criam locks novos.
+ * Também mede o tempo de espera pelo lock, exposto em GET /metrics.
+ */
+@Component
+public class ConsumerLocks {
+
+    private final ConcurrentHashMap<Integer, ReentrantLock> locks = new ConcurrentHashMap<>();
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder contended = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /**
+     * Executa a ação com o lock do consumidor, criado no primeiro uso.
+     */
+    public <T> T withLock(int consumerId, Supplier<T> action) {
+        ReentrantLock lock = locks.computeIfAbsent(consumerId, id -> new ReentrantLock());
+        acquisitions.increment();
+        if (!lock.tryLock()) {
+            long start = System.nanoTime();
+            lock.lock();
+            long waited = System.nanoTime() - start;
+            contended.increment();
+            waitNanos.add(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+        }
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Aquisições, quantas precisaram esperar e o tempo de espera (total, médio entre as que
+     * esperaram e máximo), em milissegundos.
+     */
+    public Map<String, Object> stats() {
+        long total = acquisitions.sum();
+        long waits = contended.sum();
+        long waitedNanos = waitNanos.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("consumers", locks.size());
+        stats.put("acquisitions", total);
+        stats.put("contended", waits);
+        stats.put("waitTotalMs", toMillis(waitedNanos));
+        stats.put("waitAvgMs", waits == 0 ? 0.0 : toMillis(waitedNanos / waits));
+        stats.put("waitMaxMs", toMillis(maxWaitNanos.get()));
+        return stats;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,251 @@
+package com.meli.service;
+
+import com.meli.dto.OrderProductDetailDTO;
+import com.meli.dto.OrderSummaryDTO;
+import com.meli.model.Order;
+import com.meli.model.Product;
+import com.meli.repository.OrderChangeListener;
+import com.meli.repository.OrderRepository;
+import com.meli.repository.ProductChangeListener;
+import com.meli.repository.ProductRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Visão materializada do histórico de pedidos por consumidor: os OrderSummaryDTO já montados,
+ * na ordem de criação. Atualizada de forma incremental quando um pedido é gravado (criação,
+ * status, itens) ou removido, e quando muda o título ou a imagem de um produto citado em pedidos
+ * (só os resumos desses pedidos são refeitos). A leitura não junta pedidos com produtos.
+ * Cada resumo é imutável depois de publicado: mudanças trocam o resumo inteiro na lista do consumidor.
+ */
+@Component
+public class ConsumerOrderView implements OrderChangeListener, ProductChangeListener {
+
+    private static final String MISSING_PRODUCT_IMAGE = "https://placehold.co/40x40/e0e0e0/333333?text=N/A";
+
+    private final ProductRepository productRepository;
+    // Leituras sem lock: listas copy-on-write por consumidor
+    private final ConcurrentHashMap<Integer, CopyOnWriteArrayList<OrderSummaryDTO>> byConsumer = new ConcurrentHashMap<>();
+    // Estado das escritas (com o lock): resumo atual de cada pedido e pedidos que citam cada produto
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Integer, OrderSummaryDTO> byOrder = new HashMap<>();
+    private final Map<Integer, Set<Integer>> ordersByProduct = new HashMap<>();
+    private final LongAdder orderUpdates = new LongAdder();
+    private final LongAdder productRefreshes = new LongAdder();
+
+    public ConsumerOrderView(OrderRepository orderRepository, ProductRepository productRepository) {
+        this.productRepository = productRepository;
+        // Produtos primeiro: uma mudança de produto durante a carga já é vista pelos resumos montados depois
+        productRepository.addListener(this);
+        List<Order> orders = orderRepository.addListener(this);
+        for (Order order : orders) {
+            onOrderSaved(order);
+        }
+        System.out.println("DEBUG: ConsumerOrderView - Materialized " + orders.size() + " order summaries for " + byConsumer.size() + " consumers.");
+    }
+
+    /**
+     * Resumos dos pedidos do consumidor, na ordem de criação. Leitura direta da visão.
+     */
+    public List<OrderSummaryDTO> getByConsumerId(int consumerId) {
+        List<OrderSummaryDTO> summaries = byConsumer.get(consumerId);
+        return summaries == null ? Collections.emptyList() : Collections.unmodifiableList(summaries);
+    }
+
+    @Override
+    public void onOrderSaved(Order order) {
+        lock.lock();
+        try {
+            OrderSummaryDTO previous = byOrder.get(order.getId());
+            OrderSummaryDTO summary = summarize(order);
+            if (previous != null && previous.getConsumerId() == summary.getConsumerId()) {
+                replaceSummary(previous, summary);
+            } else {
+                if (previous != null) {
+                    removeSummary(previous);
+                }
+                byConsumer.computeIfAbsent(summary.getConsumerId(), id -> new CopyOnWriteArrayList<>()).add(summary);
+            }
+            unlinkProducts(previous);
+            byOrder.put(order.getId(), summary);
+            for (OrderProductDetailDTO detail : summary.getProductsDetails()) {
+                ordersByProduct.computeIfAbsent(detail.getProductId(), id -> new HashSet<>()).add(order.getId());
+            }
+            orderUpdates.increment();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onOrderDeleted(Order order) {
+        lock.lock();
+        try {
+            OrderSummaryDTO previous = byOrder.remove(order.getId());
+            if (previous != null) {
+                removeSummary(previous);
+                unlinkProducts(previous);
+                orderUpdates.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onProductSaved(Product previous, Product current) {
+        // Só título e imagem aparecem no resumo; estoque e preço não refazem nada
+        if (previous != null && Objects.equals(previous.getTitle(), current.getTitle())
+                && Objects.equals(previous.getImageUrl(), current.getImageUrl())) {
+            return;
+        }
+        refreshOrdersCiting(current.getId());
+    }
+
+    @Override
+    public void onProductDeleted(Product previous) {
+        refreshOrdersCiting(previous.getId());
+    }
+
+    private void refreshOrdersCiting(int productId) {
+        lock.lock();
+        try {
+            Set<Integer> orderIds = ordersByProduct.get(productId);
+            if (orderIds == null) {
+                return;
+            }
+            for (int orderId : orderIds) {
+                OrderSummaryDTO previous = byOrder.get(orderId);
+                OrderSummaryDTO summary = withProductDetails(previous, productId);
+                byOrder.put(orderId, summary);
+                replaceSummary(previous, summary);
+                productRefreshes.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Troca o resumo na mesma posição da lista do consumidor (equals de OrderSummaryDTO compara o id).
+     */
+    private void replaceSummary(OrderSummaryDTO previous, OrderSummaryDTO summary) {
+        List<OrderSummaryDTO> summaries = byConsumer.computeIfAbsent(summary.getConsumerId(), id -> new CopyOnWriteArrayList<>());
+        int index = summaries.indexOf(previous);
+        if (index >= 0) {
+            summaries.set(index, summary);
+        } else {
+            summaries.add(summary);
+        }
+    }
+
+    private void removeSummary(OrderSummaryDTO summary) {
+        List<OrderSummaryDTO> summaries = byConsumer.get(summary.getConsumerId());
+        if (summaries != null) {
+            summaries.remove(summary);
+            if (summaries.isEmpty()) {
+                byConsumer.remove(summary.getConsumerId(), summaries);
+            }
+        }
+    }
+
+    private void unlinkProducts(OrderSummaryDTO summary) {
+        if (summary == null) {
+            return;
+        }
+        for (OrderProductDetailDTO detail : summary.getProductsDetails()) {
+            Set<Integer> orderIds = ordersByProduct.get(detail.getProductId());
+            if (orderIds != null && orderIds.remove(summary.getId()) && orderIds.isEmpty()) {
+                ordersByProduct.remove(detail.getProductId());
+            }
+        }
+    }
+
+    /*
+     * Mesmo resumo de antes (contagem de itens e detalhes de cada produto, com um marcador para
+     * produtos que não existem mais).
+     */
+    private OrderSummaryDTO summarize(Order order) {
+        Map<Integer, Integer> products = order.getProducts();
+        List<OrderProductDetailDTO> details = new ArrayList<>(products == null ? 0 : products.size());
+        int itemCount = 0;
+        if (products != null) {
+            for (Map.Entry<Integer, Integer> entry : products.entrySet()) {
+                itemCount += entry.getValue();
+                details.add(detail(entry.getKey(), entry.getValue()));
+            }
+        }
+        return new OrderSummaryDTO(
+            order.getId(),
+            order.getConsumerId(),
+            order.getSellerId(),
+            Collections.unmodifiableList(details),
+            itemCount,
+            order.getShippingAddress(),
+            order.getTotal(),
+            order.getShippingCost(),
+            order.getPaymentMethod(),
+            order.getStatus(),
+            order.getTimestamp()
+        );
+    }
+
+    private OrderSummaryDTO withProductDetails(OrderSummaryDTO summary, int productId) {
+        List<OrderProductDetailDTO> details = new ArrayList<>(summary.getProductsDetails().size());
+        for (OrderProductDetailDTO detail : summary.getProductsDetails()) {
+            details.add(detail.getProductId() == productId ? detail(productId, detail.getQuantity()) : detail);
+        }
+        return new OrderSummaryDTO(
+            summary.getId(),
+            summary.getConsumerId(),
+            summary.getSellerId(),
+            Collections.unmodifiableList(details),
+            summary.getItemCount(),
+            summary.getShippingAddress(),
+            summary.getTotalAmount(),
+            summary.getShippingCost(),
+            summary.getPaymentMethod(),
+            summary.getStatus(),
+            summary.getTimestamp()
+        );
+    }
+
+    private OrderProductDetailDTO detail(int productId, int quantity) {
+        Product product = productRepository.findById(productId);
+        if (product == null) {
+            return new OrderProductDetailDTO(productId, "Produto Desconhecido (ID: " + productId + ")", quantity, MISSING_PRODUCT_IMAGE);
+        }
+        return new OrderProductDetailDTO(productId, product.getTitle(), quantity, product.getImageUrl());
+    }
+
+    /**
+     * Tamanho da visão e quantas atualizações vieram de pedidos e de produtos.
+     */
+    public Map<String, Object> stats() {
+        lock.lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("consumers", byConsumer.size());
+            stats.put("orders", byOrder.size());
+            stats.put("productsReferenced", ordersByProduct.size());
+            stats.put("orderUpdates", orderUpdates.sum());
+            stats.put("productRefreshes", productRefreshes.sum());
+            return stats;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
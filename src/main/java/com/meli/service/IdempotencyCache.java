@@ -0,0 +1,196 @@
+package com.meli.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/*
+ * Cache de respostas por chave de idempotência (header Idempotency-Key), com TTL e limite de entradas.
+ * A primeira requisição com uma chave executa a ação; as repetições concorrentes esperam o mesmo
+ * resultado em vez de executar de novo, e as posteriores (dentro do TTL) recebem a resposta guardada.
+ * Se a ação falhar, a chave é liberada para uma nova tentativa.
+ */
+@Component
+public class IdempotencyCache {
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    // Ordem de inserção = ordem de expiração (TTL único); usada para remover as entradas vencidas
+    private final ConcurrentLinkedQueue<Map.Entry<String, Entry>> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final long ttlNanos;
+    private final int maxEntries;
+
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder replays = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public IdempotencyCache(@Value("${meli.idempotency.ttl-seconds:86400}") long ttlSeconds,
+                            @Value("${meli.idempotency.max-entries:100000}") int maxEntries) {
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(Math.max(1, ttlSeconds));
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    /**
+     * Executa a ação uma única vez por chave.
+     * @param key Chave já qualificada pelo chamador (operação e usuário).
+     * @param fingerprint Identifica o corpo da requisição; a mesma chave com outro corpo é recusada.
+     * @param cacheable Resultados recusados aqui (ex.: respostas de erro) são entregues a quem já esperava,
+     *                  mas não ficam guardados.
+     * @throws KeyReusedException se a chave já foi usada com outro fingerprint.
+     */
+    public <T> Outcome<T> execute(String key, String fingerprint, Supplier<T> action, Predicate<T> cacheable) {
+        while (true) {
+            evictExpired();
+            Entry fresh = new Entry(fingerprint);
+            Entry existing = entries.putIfAbsent(key, fresh);
+            if (existing == null) {
+                insertionOrder.add(Map.entry(key, fresh));
+                return new Outcome<>(run(key, fresh, action, cacheable), false);
+            }
+            if (existing.isExpired(System.nanoTime())) {
+                entries.remove(key, existing);
+                continue;
+            }
+            if (!Objects.equals(existing.fingerprint, fingerprint)) {
+                conflicts.increment();
+                throw new KeyReusedException(key);
+            }
+            if (existing.result.isDone()) {
+                replays.increment();
+            } else {
+                coalesced.increment();
+            }
+            try {
+                @SuppressWarnings("unchecked")
+                T value = (T) existing.result.join();
+                return new Outcome<>(value, true);
+            } catch (CompletionException e) {
+                // A execução original falhou e liberou a chave: tenta de novo
+            }
+        }
+    }
+
+    private <T> T run(String key, Entry entry, Supplier<T> action, Predicate<T> cacheable) {
+        executions.increment();
+        T value;
+        try {
+            value = action.get();
+        } catch (Throwable e) {
+            // Error também libera a chave: quem espera pela entrada recebe a falha e tenta de novo
+            entries.remove(key, entry);
+            entry.result.completeExceptionally(e);
+            throw e;
+        }
+        entry.expiresAt = System.nanoTime() + ttlNanos;
+        if (!cacheable.test(value)) {
+            entries.remove(key, entry);
+        }
+        entry.result.complete(value);
+        return value;
+    }
+
+    /*
+     * Percorre a fila desde o início removendo as entradas vencidas e, acima do limite, as mais antigas
+     * já concluídas. Entradas em andamento são puladas, sem remover (as repetições precisam
+     * encontrá-las), para que uma requisição lenta não impeça a remoção das que vêm depois dela.
+     */
+    private void evictExpired() {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<String, Entry>> queued = insertionOrder.iterator();
+        while (queued.hasNext()) {
+            Map.Entry<String, Entry> head = queued.next();
+            Entry entry = head.getValue();
+            if (entries.get(head.getKey()) != entry) {
+                queued.remove();
+                continue;
+            }
+            if (!entry.result.isDone()) {
+                continue;
+            }
+            if (!entry.isExpired(now) && entries.size() <= maxEntries) {
+                return;
+            }
+            queued.remove();
+            if (entries.remove(head.getKey(), entry)) {
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Entradas, execuções, respostas repetidas (já prontas ou esperadas em paralelo),
+     * chaves reutilizadas com outro corpo e remoções por TTL/limite.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlSeconds", TimeUnit.NANOSECONDS.toSeconds(ttlNanos));
+        stats.put("executions", executions.sum());
+        stats.put("replays", replays.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("keyReused", conflicts.sum());
+        stats.put("evictions", evictions.sum());
+        return stats;
+    }
+
+    private static final class Entry {
+        private final String fingerprint;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        // Definido ao concluir; antes disso a entrada não expira
+        private volatile long expiresAt;
+
+        private Entry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        private boolean isExpired(long now) {
+            return result.isDone() && !result.isCompletedExceptionally() && now - expiresAt > 0;
+        }
+    }
+
+    /**
+     * Resultado da execução e se ele veio de uma execução anterior (repetição).
+     */
+    public static final class Outcome<T> {
+        private final T value;
+        private final boolean replayed;
+
+        private Outcome(T value, boolean replayed) {
+            this.value = value;
+            this.replayed = replayed;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public boolean isReplayed() {
+            return replayed;
+        }
+    }
+
+    /**
+     * A mesma chave de idempotência foi enviada com um corpo de requisição diferente.
+     */
+    public static class KeyReusedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public KeyReusedException(String key) {
+            super("Idempotency-Key já usada com outra requisição: " + key);
+        }
+    }
+}
@@ -8,21 +8,33 @@ import com.meli.model.PaymentMethod;
 import com.meli.model.Seller;
 import com.meli.model.User;
 import com.meli.repository.OrderRepository;
+import com.meli.repository.PersistenceFailureException;
+import com.meli.repository.PersistenceWriter;
 import com.meli.repository.UserRepository;
 import com.meli.dto.BuyRequestDTO;
-import com.meli.dto.OrderProductDetailDTO;
 import com.meli.dto.OrderSummaryDTO;
 import com.meli.dto.SellerOrderDTO;
+import com.meli.dto.SellerSalesSummaryDTO;
 
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /*
  * Contém a lógica de negócio para a criação e gerenciamento de pedidos.
@@ -34,79 +46,393 @@ public class OrderService {
     private final OrderRepository orderRepository;
     private final UserService userService;
     private final ProductService productService;
+    private final StockService stockService;
+    private final ConsumerOrderView consumerOrderView;
+    private final SellerSalesAggregates sellerSales;
+    // Um único escritor aplica as compras, na ordem em que foram publicadas
+    private final CommandSequencer<OrderCommand> sequencer;
+    // Espera máxima de uma requisição pelo sequenciador (em cada uma das duas etapas de execute)
+    private final long applyTimeoutMillis;
 
-    public OrderService(OrderRepository orderRepository, UserService userService, ProductService productService) {
+    public OrderService(OrderRepository orderRepository, UserService userService, ProductService productService,
+                        StockService stockService, ConsumerOrderView consumerOrderView,
+                        SellerSalesAggregates sellerSales,
+                        @Value("${meli.orders.sequencer.ring-size:1024}") int ringSize,
+                        @Value("${meli.orders.sequencer.batch-size:64}") int batchSize,
+                        @Value("${meli.orders.sequencer.apply-timeout-ms:10000}") long applyTimeoutMillis) {
         this.orderRepository = orderRepository;
         this.userService = userService;
         this.productService = productService;
+        this.stockService = stockService;
+        this.consumerOrderView = consumerOrderView;
+        this.sellerSales = sellerSales;
+        this.applyTimeoutMillis = Math.max(1, applyTimeoutMillis);
+        this.sequencer = new CommandSequencer<>("order-sequencer", ringSize, batchSize, this::applyBatch, this::failBatch);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sequencer.shutdown();
+    }
+
+    /**
+     * Contadores do sequenciador de pedidos (lotes, tamanho médio, esperas por anel cheio).
+     */
+    public Map<String, Object> getSequencerStats() {
+        return sequencer.stats();
     }
 
     /**
-     * Cria um novo pedido de produto.
-     * Este método agora lida com a lógica de um único pedido por vez,
-     * determinando o vendedor e os detalhes do pedido.
+     * Finaliza uma compra como uma unidade de trabalho:
+     * valida o consumidor, publica o comando no sequenciador de pedidos e espera ele ser aplicado.
+     * A thread do sequenciador reserva o estoque de todos os itens (ou de nenhum) e monta um pedido
+     * por vendedor, na ordem de chegada; o estoque e os pedidos de um lote inteiro vão para o
+     * writer de persistência de uma vez. Esta thread só espera a gravação.
+     * Se a gravação falhar, o estoque é devolvido e os pedidos criados são removidos.
      * @param purchaseItems Lista de BuyRequestDTOs (productId e quantity).
      * @param consumerId ID do consumidor que está fazendo a compra.
-     * @return Optional de Order se o pedido for criado com sucesso, Optional.empty() caso contrário.
+     * @return Resultado com os pedidos criados, ou os erros de validação/estoque.
      */
-    public Optional<Order> createProductOrder(List<BuyRequestDTO> purchaseItems, int consumerId) {
-        // Validação do consumidor
+    public CheckoutResult checkout(List<BuyRequestDTO> purchaseItems, int consumerId) {
         User user = userService.getUserById(consumerId);
         if (user == null || !(user instanceof Consumer)) {
             System.err.println("ERROR: OrderService - Consumidor com ID " + consumerId + " não encontrado ou não é do tipo Consumidor.");
-            return Optional.empty();
+            return CheckoutResult.rejected("Acesso negado: Você precisa estar logado como um consumidor para realizar compras.");
+        }
+        if (purchaseItems == null || purchaseItems.isEmpty()) {
+            return CheckoutResult.rejected("Nenhum item selecionado para compra.");
         }
-        Consumer consumer = (Consumer) user;
 
-        // Agrupa produtos por vendedor para criar um pedido por vendedor
-        Map<Integer, List<BuyRequestDTO>> itemsBySeller = new HashMap<>();
+        OrderCommand command = OrderCommand.purchase((Consumer) user, purchaseItems);
+        CheckoutResult result = execute(command);
+        if (result.getStatus() == CheckoutResult.Status.COMPLETED) {
+            for (Order order : result.getOrders()) {
+                System.out.println("DEBUG: OrderService - Pedido criado com sucesso para o consumidor " + consumerId + " e vendedor " + order.getSellerId() + ". ID do pedido: " + order.getId());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Cria os pedidos (um por vendedor) sem mexer no estoque, pelo mesmo sequenciador da compra.
+     * @param purchaseItems Lista de BuyRequestDTOs (productId e quantity).
+     * @param consumerId ID do consumidor que está fazendo a compra.
+     * @return Resultado com os pedidos criados; REJECTED se os dados forem inválidos e FAILED se a
+     *         gravação falhar ou o sequenciador não responder (erro do servidor, não do pedido).
+     */
+    public CheckoutResult createProductOrder(List<BuyRequestDTO> purchaseItems, int consumerId) {
+        // Validação do consumidor
+        User user = userService.getUserById(consumerId);
+        if (user == null || !(user instanceof Consumer)) {
+            System.err.println("ERROR: OrderService - Consumidor com ID " + consumerId + " não encontrado ou não é do tipo Consumidor.");
+            return CheckoutResult.rejected("Acesso negado: Você precisa estar logado como um consumidor para criar pedidos.");
+        }
+        Map<Integer, Integer> quantities = new LinkedHashMap<>();
         for (BuyRequestDTO item : purchaseItems) {
-            Product product = productService.getProductById(item.getId());
-            if (product == null) {
-                System.err.println("ERROR: OrderService - Produto com ID " + item.getId() + " não encontrado durante a criação do pedido.");
-                return Optional.empty(); // Ou lidar com erro de forma diferente
+            if (item.getId() == null || item.getQuantity() == null) {
+                return CheckoutResult.rejected("Item sem produto ou quantidade.");
             }
-            itemsBySeller.computeIfAbsent(product.getSellerId(), k -> new ArrayList<>()).add(item);
+            quantities.merge(item.getId(), item.getQuantity(), Integer::sum);
+        }
+        CheckoutResult result = execute(OrderCommand.ordersOnly((Consumer) user, quantities));
+        if (result.getStatus() == CheckoutResult.Status.FAILED) {
+            System.err.println("ERROR: OrderService - Falha ao gravar os pedidos do consumidor " + consumerId + ".");
         }
+        return result;
+    }
 
-        Order createdOrder = null;
+    /*
+     * Publica o comando, espera o sequenciador aplicá-lo e depois espera a gravação.
+     * A espera pelo sequenciador é limitada: se o tempo acabar antes de o comando ser pego, ele é
+     * abandonado (o sequenciador o ignora) e nada foi reservado; se já estava sendo aplicado,
+     * espera mais um período antes de desistir, e nesse caso o que for aplicado depois é desfeito.
+     */
+    private CheckoutResult execute(OrderCommand command) {
+        try {
+            sequencer.publish(command);
+        } catch (IllegalStateException e) {
+            return CheckoutResult.failed("Erro interno ao finalizar a compra: " + e.getMessage());
+        }
+        if (!awaitApplied(command)) {
+            if (command.claimed.compareAndSet(false, true)) {
+                System.err.println("ERROR: OrderService - Compra abandonada: o sequenciador não respondeu em " + applyTimeoutMillis + " ms.");
+                return CheckoutResult.failed("Erro interno ao finalizar a compra: tempo esgotado.");
+            }
+            if (!awaitApplied(command)) {
+                // O sequenciador já pegou o comando e ainda pode reservar e criar os pedidos: como a
+                // resposta será de falha, o que ele aplicar é desfeito quando terminar
+                System.err.println("ERROR: OrderService - Compra sem resposta do sequenciador após " + (2 * applyTimeoutMillis) + " ms; será desfeita quando for aplicada.");
+                command.applied.thenRunAsync(() -> rollbackAbandoned(command));
+                return CheckoutResult.failed("Erro interno ao finalizar a compra: tempo esgotado.");
+            }
+        }
+        if (command.rejection != null) {
+            return command.rejection;
+        }
+        boolean persisted = command.failure == null;
+        if (persisted) {
+            try {
+                persisted = command.ordersWrite.await();
+                persisted &= command.stockWrite == null || command.stockWrite.await();
+            } catch (RuntimeException e) {
+                System.err.println("ERROR: OrderService - Erro ao gravar a compra: " + e.getMessage());
+                persisted = false;
+            }
+        } else {
+            System.err.println("ERROR: OrderService - Erro ao aplicar a compra: " + command.failure);
+        }
+        if (!persisted) {
+            rollback(command.reservation, command.orders);
+            return CheckoutResult.failed("Erro interno ao finalizar a compra: falha ao gravar os dados.");
+        }
+        return CheckoutResult.completed(command.orders);
+    }
 
-        for (Map.Entry<Integer, List<BuyRequestDTO>> entry : itemsBySeller.entrySet()) {
-            int sellerId = entry.getKey();
-            List<BuyRequestDTO> sellerSpecificItems = entry.getValue();
+    private boolean awaitApplied(OrderCommand command) {
+        try {
+            command.applied.get(applyTimeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            // applied nunca é concluído com erro (a falha vai em command.failure)
+            return true;
+        }
+    }
 
-            // Validação do vendedor
-            User sellerUser = userService.getUserById(sellerId);
-            if (sellerUser == null || !(sellerUser instanceof Seller)) {
-                System.err.println("ERROR: OrderService - Vendedor com ID " + sellerId + " não encontrado ou não é do tipo Vendedor.");
-                return Optional.empty();
+    /*
+     * Executado somente pela thread do sequenciador, na ordem da sequência. Reserva e monta os pedidos
+     * de cada comando; os aceitos do lote são gravados juntos (uma publicação de estoque e uma
+     * mutação no log de pedidos). Não espera a gravação: cada thread de requisição espera a sua.
+     */
+    private void applyBatch(List<OrderCommand> batch) {
+        List<OrderCommand> accepted = new ArrayList<>(batch.size());
+        List<Order> batchOrders = new ArrayList<>();
+        Set<Integer> touchedProducts = new LinkedHashSet<>();
+        try {
+            for (OrderCommand command : batch) {
+                if (!command.claimed.compareAndSet(false, true)) {
+                    continue; // A requisição desistiu de esperar: não reserva nem cria pedidos
+                }
+                Map<Integer, Integer> quantities = command.quantities;
+                if (command.reserveStock) {
+                    // Reserva atômica de todos os itens ou de nenhum: sem venda além do estoque
+                    StockService.Reservation reservation = stockService.reserveAll(command.items);
+                    if (!reservation.isSuccessful()) {
+                        command.reject(CheckoutResult.rejected(reservation.getErrors()));
+                        continue;
+                    }
+                    command.reservation = reservation;
+                    quantities = reservation.getQuantities();
+                }
+                List<Order> newOrders = buildOrders(command.consumer, quantities);
+                if (newOrders == null || newOrders.isEmpty()) {
+                    if (command.reservation != null) {
+                        stockService.cancel(command.reservation);
+                        command.reservation = null;
+                    }
+                    command.reject(CheckoutResult.rejected("Falha ao criar o pedido. Verifique os dados do usuário ou a consistência dos produtos."));
+                    continue;
+                }
+                command.orders = newOrders;
+                batchOrders.addAll(newOrders);
+                if (command.reservation != null) {
+                    touchedProducts.addAll(quantities.keySet());
+                }
+                accepted.add(command);
+            }
+            if (!accepted.isEmpty()) {
+                PersistenceWriter.PendingWrite stockWrite = stockService.enqueuePublish(touchedProducts);
+                PersistenceWriter.PendingWrite ordersWrite = orderRepository.enqueueNewOrders(batchOrders);
+                for (OrderCommand command : accepted) {
+                    command.stockWrite = stockWrite;
+                    command.ordersWrite = ordersWrite;
+                    command.applied.complete(null);
+                }
             }
+        } catch (RuntimeException e) {
+            failBatch(batch, e);
+        }
+    }
 
-            Map<Integer, Integer> productsInOrder = new HashMap<>();
-            double totalAmount = 0.0;
+    /*
+     * Conclui com erro os comandos do lote ainda não concluídos (também chamado pelo sequenciador
+     * quando applyBatch lança um Error); execute desfaz o que cada um já tinha reservado.
+     */
+    private void failBatch(List<OrderCommand> batch, Throwable error) {
+        for (OrderCommand command : batch) {
+            if (!command.applied.isDone()) {
+                command.failure = error;
+                command.applied.complete(null);
+            }
+        }
+    }
 
-            for (BuyRequestDTO item : sellerSpecificItems) {
-                Product product = productService.getProductById(item.getId());
-                productsInOrder.put(item.getId(), item.getQuantity());
-                totalAmount += product.getPrice() * item.getQuantity(); // Usar preço atual do produto
+    /*
+     * Agrupa os itens por vendedor e monta um pedido por vendedor, com o preço atual dos produtos.
+     * Retorna null se algum produto não existir ou não tiver um vendedor válido.
+     */
+    private List<Order> buildOrders(Consumer consumer, Map<Integer, Integer> quantities) {
+        Map<Integer, Map<Integer, Integer>> itemsBySeller = new LinkedHashMap<>();
+        Map<Integer, Double> totalBySeller = new HashMap<>();
+        for (Map.Entry<Integer, Integer> item : quantities.entrySet()) {
+            Product product = productService.getProductById(item.getKey());
+            if (product == null) {
+                System.err.println("ERROR: OrderService - Produto com ID " + item.getKey() + " não encontrado durante a criação do pedido.");
+                return null;
+            }
+            User sellerUser = userService.getUserById(product.getSellerId());
+            if (sellerUser == null || !(sellerUser instanceof Seller)) {
+                System.err.println("ERROR: OrderService - Vendedor com ID " + product.getSellerId() + " não encontrado ou não é do tipo Vendedor.");
+                return null;
             }
+            itemsBySeller.computeIfAbsent(product.getSellerId(), k -> new HashMap<>()).put(item.getKey(), item.getValue());
+            double price = product.getPrice() == null ? 0.0 : product.getPrice(); // Usar preço atual do produto
+            totalBySeller.merge(product.getSellerId(), price * item.getValue(), Double::sum);
+        }
 
+        List<Order> newOrders = new ArrayList<>(itemsBySeller.size());
+        ZonedDateTime now = ZonedDateTime.now();
+        for (Map.Entry<Integer, Map<Integer, Integer>> entry : itemsBySeller.entrySet()) {
             Order newOrder = new Order();
-            newOrder.setConsumerId(consumerId);
-            newOrder.setSellerId(sellerId);
-            newOrder.setProducts(productsInOrder);
-            newOrder.setTimestamp(ZonedDateTime.now());
-            newOrder.setTotal(totalAmount);
+            newOrder.setConsumerId(consumer.getId());
+            newOrder.setSellerId(entry.getKey());
+            newOrder.setProducts(entry.getValue());
+            newOrder.setTimestamp(now);
+            newOrder.setTotal(totalBySeller.get(entry.getKey()));
             newOrder.setShippingCost(0.0); // Assumindo custo de envio 0 por padrão
             newOrder.setPaymentMethod(consumer.getPreferredPaymentMethod());
             newOrder.setStatus(OrderStatus.COMPLETED);
+            newOrders.add(newOrder);
+        }
+        return newOrders;
+    }
 
-            orderRepository.save(newOrder);
-            System.out.println("DEBUG: OrderService - Pedido criado com sucesso para o consumidor " + consumerId + " e vendedor " + sellerId + ". ID do pedido: " + newOrder.getId());
-            createdOrder = newOrder;
+    /*
+     * Desfaz um comando aplicado depois que a requisição desistiu de esperar (ela já respondeu com falha).
+     * Roda fora da thread do sequenciador, porque o desfazer espera as gravações.
+     */
+    private void rollbackAbandoned(OrderCommand command) {
+        if (command.rejection == null) {
+            rollback(command.reservation, command.orders);
+        }
+    }
+
+    /*
+     * Desfaz uma compra cuja gravação falhou: devolve o estoque e remove os pedidos já criados.
+     */
+    private void rollback(StockService.Reservation reservation, List<Order> newOrders) {
+        if (newOrders == null) {
+            newOrders = Collections.emptyList();
+        }
+        // A memória é desfeita de qualquer forma; se a gravação do desfazer também falhar, só registra
+        try {
+            if (reservation != null) {
+                stockService.cancel(reservation);
+                stockService.publish(reservation);
+            }
+        } catch (PersistenceFailureException e) {
+            System.err.println("ERROR: OrderService - Falha ao gravar o estoque devolvido: " + e.getMessage());
+        }
+        for (Order order : newOrders) {
+            if (order.getId() != 0) {
+                try {
+                    orderRepository.deleteById(order.getId());
+                } catch (PersistenceFailureException e) {
+                    System.err.println("ERROR: OrderService - Falha ao gravar a remoção do pedido: " + e.getMessage());
+                }
+            }
+        }
+        System.err.println("ERROR: OrderService - Compra desfeita: estoque devolvido e " + newOrders.size() + " pedido(s) removido(s).");
+    }
+
+    /*
+     * Comando publicado no sequenciador. Os campos de saída são preenchidos pela thread do
+     * sequenciador antes de completar 'applied', então a thread da requisição os lê depois do join.
+     */
+    private static final class OrderCommand {
+        private final Consumer consumer;
+        private final List<BuyRequestDTO> items;
+        private final Map<Integer, Integer> quantities;
+        private final boolean reserveStock;
+        private final CompletableFuture<Void> applied = new CompletableFuture<>();
+        // Quem marcar primeiro decide: o sequenciador (vai aplicar) ou a requisição (desistiu de esperar)
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private CheckoutResult rejection;
+        private Throwable failure;
+        private StockService.Reservation reservation;
+        private List<Order> orders;
+        private PersistenceWriter.PendingWrite stockWrite;
+        private PersistenceWriter.PendingWrite ordersWrite;
+
+        private OrderCommand(Consumer consumer, List<BuyRequestDTO> items, Map<Integer, Integer> quantities, boolean reserveStock) {
+            this.consumer = consumer;
+            this.items = items;
+            this.quantities = quantities;
+            this.reserveStock = reserveStock;
+        }
+
+        static OrderCommand purchase(Consumer consumer, List<BuyRequestDTO> items) {
+            return new OrderCommand(consumer, items, null, true);
+        }
+
+        static OrderCommand ordersOnly(Consumer consumer, Map<Integer, Integer> quantities) {
+            return new OrderCommand(consumer, null, quantities, false);
+        }
+
+        private void reject(CheckoutResult result) {
+            rejection = result;
+            applied.complete(null);
+        }
+    }
+
+    /*
+     * Resultado de checkout: os pedidos criados (um por vendedor) ou as mensagens de erro.
+     */
+    public static final class CheckoutResult {
+        public enum Status { COMPLETED, REJECTED, FAILED }
+
+        private final Status status;
+        private final List<Order> orders;
+        private final List<String> errors;
+
+        private CheckoutResult(Status status, List<Order> orders, List<String> errors) {
+            this.status = status;
+            this.orders = orders;
+            this.errors = errors;
+        }
+
+        static CheckoutResult completed(List<Order> orders) {
+            return new CheckoutResult(Status.COMPLETED, Collections.unmodifiableList(orders), Collections.emptyList());
+        }
+
+        static CheckoutResult rejected(String error) {
+            return rejected(Collections.singletonList(error));
+        }
+
+        static CheckoutResult rejected(List<String> errors) {
+            return new CheckoutResult(Status.REJECTED, Collections.emptyList(), errors);
+        }
+
+        static CheckoutResult failed(String error) {
+            return new CheckoutResult(Status.FAILED, Collections.emptyList(), Collections.singletonList(error));
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public List<Order> getOrders() {
+            return orders;
+        }
+
+        public List<String> getErrors() {
+            return errors;
         }
-        
-        return Optional.ofNullable(createdOrder);
     }
 
     /**
@@ -127,77 +453,25 @@ public class OrderService {
     }
 
     /**
-     * Obtém pedidos de um consumidor específico e os converte para OrderSummaryDTO.
-     * Inclui a lista de detalhes dos produtos (OrderProductDetailDTO) e a contagem de itens no DTO.
+     * Obtém os pedidos de um consumidor específico como OrderSummaryDTO (detalhes dos produtos e
+     * contagem de itens). Os resumos vêm da visão materializada, mantida a cada gravação de pedido
+     * e a cada mudança de título/imagem de produto: a leitura não percorre pedidos nem produtos.
      * @param consumerId O ID do consumidor.
      * @return Uma lista de OrderSummaryDTOs feitos pelo consumidor.
      */
     public List<OrderSummaryDTO> getOrdersByConsumerId(int consumerId) {
-        System.out.println("DEBUG: OrderService.getOrdersByConsumerId - Buscando pedidos para o consumidor ID: " + consumerId);
-        List<Order> consumerOrders = orderRepository.getAll().stream()
-                                            .filter(order -> order.getConsumerId() == consumerId)
-                                            .collect(Collectors.toList());
-
-        List<OrderSummaryDTO> responseDTOs = new ArrayList<>();
-        for (Order order : consumerOrders) {
-            System.out.println("DEBUG: OrderService.getOrdersByConsumerId - Processando pedido ID: " + order.getId() + ", Consumer ID: " + order.getConsumerId());
-            System.out.println("DEBUG: OrderService.getOrdersByConsumerId - Produtos no pedido (mapa): " + order.getProducts());
-
-            // Calcula itemCount a partir do mapa de produtos
-            int itemCount = order.getProducts().values().stream().mapToInt(Integer::intValue).sum();
-            
-            // Constrói a lista de OrderProductDetailDTOs
-            List<OrderProductDetailDTO> productsDetails = new ArrayList<>();
-            if (order.getProducts() != null && !order.getProducts().isEmpty()) {
-                for (Map.Entry<Integer, Integer> entry : order.getProducts().entrySet()) {
-                    Integer productId = entry.getKey();
-                    Integer quantity = entry.getValue();
-                    System.out.println("DEBUG: OrderService.getOrdersByConsumerId - Buscando detalhes para Produto ID: " + productId + ", Quantidade: " + quantity);
-
-                    Product product = productService.getProductById(productId); // Busca o produto para obter detalhes
-
-                    if (product != null) {
-                        System.out.println("DEBUG: OrderService.getOrdersByConsumerId - Produto encontrado: " + product.getTitle());
-                        productsDetails.add(new OrderProductDetailDTO(
-                            product.getId(),
-                            product.getTitle(),
-                            quantity,
-                            product.getImageUrl()
-                        ));
-                    } else {
-                        System.err.println("WARNING: OrderService.getOrdersByConsumerId - Produto com ID " + productId + " NÃO ENCONTRADO no ProductService para o pedido " + order.getId() + ". Usando placeholder.");
-                        productsDetails.add(new OrderProductDetailDTO(
-                            productId,
-                            "Produto Desconhecido (ID: " + productId + ")", // Adiciona o ID para depuração no frontend
-                            quantity,
-                            "https://placehold.co/40x40/e0e0e0/333333?text=N/A"
-                        ));
-                    }
-                }
-            } else {
-                System.out.println("DEBUG: OrderService.getOrdersByConsumerId - Mapa de produtos vazio ou nulo para o pedido ID: " + order.getId());
-            }
-
-
-            responseDTOs.add(new OrderSummaryDTO(
-                order.getId(),
-                order.getConsumerId(),
-                order.getSellerId(),
-                productsDetails, // Passa a lista de detalhes dos produtos
-                itemCount, // Passa a contagem de itens
-                order.getShippingAddress(),
-                order.getTotal(),
-                order.getShippingCost(),
-                order.getPaymentMethod(),
-                order.getStatus(),
-                order.getTimestamp()
-            ));
-        }
-
+        List<OrderSummaryDTO> responseDTOs = consumerOrderView.getByConsumerId(consumerId);
         System.out.println("DEBUG: OrderService.getOrdersByConsumerId - Encontrados " + responseDTOs.size() + " pedidos (DTOs de resumo) para o consumidor ID: " + consumerId);
         return responseDTOs;
     }
 
+    /**
+     * Tamanho e atualizações da visão de pedidos por consumidor.
+     */
+    public Map<String, Object> getConsumerOrderViewStats() {
+        return consumerOrderView.stats();
+    }
+
     /**
      * Obtém pedidos que contêm produtos de um vendedor específico.
      * Retorna uma lista de SellerOrderDTOs, que incluem apenas os itens do vendedor em cada pedido.
@@ -205,15 +479,10 @@ public class OrderService {
      * @return Lista de SellerOrderDTOs.
      */
     public List<SellerOrderDTO> getOrdersBySellerId(int sellerId) {
-        List<Order> allOrders = orderRepository.getAll();
+        List<Order> ordersForSeller = orderRepository.getBySellerId(sellerId);
         List<SellerOrderDTO> sellerOrders = new ArrayList<>();
 
-        for (Order order : allOrders) {
-            // Filtra apenas os pedidos onde este vendedor é o sellerId
-            if (order.getSellerId() != sellerId) {
-                continue;
-            }
-
+        for (Order order : ordersForSeller) {
             List<Map<String, Object>> sellerItemsInOrder = new ArrayList<>();
             double currentOrderSellerAmount = 0.0;
 
@@ -223,7 +492,7 @@ public class OrderService {
                 Integer quantity = entry.getValue();
                 Product product = productService.getProductById(productId);
 
-                // Verifica se o produto existe (já sabemos que pertence a este vendedor pelo filtro acima)
+                // Verifica se o produto existe (já sabemos que pertence a este vendedor pelo índice do repositório)
                 if (product != null) {
                     Map<String, Object> itemDetails = new HashMap<>();
                     itemDetails.put("productId", product.getId());
@@ -251,4 +520,15 @@ public class OrderService {
         System.out.println("DEBUG: OrderService.getOrdersBySellerId - Encontrados " + sellerOrders.size() + " pedidos para o vendedor ID: " + sellerId);
         return sellerOrders;
     }
+
+    /**
+     * Resumo de vendas do vendedor (pedidos, unidades por produto, faturamento total e por status),
+     * lido dos agregados mantidos a cada gravação de pedido: não percorre o histórico.
+     * @param sellerId ID do vendedor.
+     */
+    public SellerSalesSummaryDTO getSellerSalesSummary(int sellerId) {
+        SellerSalesSummaryDTO summary = sellerSales.getSummary(sellerId);
+        System.out.println("DEBUG: OrderService.getSellerSalesSummary - Vendedor ID: " + sellerId + ", pedidos: " + summary.getOrderCount() + ", faturamento: " + summary.getRevenue());
+        return summary;
+    }
 }
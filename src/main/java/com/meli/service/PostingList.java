@@ -0,0 +1,108 @@
+package com.meli.service;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/*
+ * Lista de posições (ranks) do catálogo, ordenada e sem repetição, usada pelos índices de busca.
+ * Inserções no fim (caso comum: produto novo) são O(1). Não é thread-safe; o índice dono faz o lock.
+ */
+final class PostingList {
+    private int[] ranks = new int[4];
+    private int size;
+
+    void add(int rank) {
+        int pos = size == 0 || ranks[size - 1] < rank ? -(size + 1) : Arrays.binarySearch(ranks, 0, size, rank);
+        if (pos >= 0) {
+            return;
+        }
+        pos = -pos - 1;
+        if (size == ranks.length) {
+            ranks = Arrays.copyOf(ranks, size << 1);
+        }
+        System.arraycopy(ranks, pos, ranks, pos + 1, size - pos);
+        ranks[pos] = rank;
+        size++;
+    }
+
+    void remove(int rank) {
+        int pos = Arrays.binarySearch(ranks, 0, size, rank);
+        if (pos >= 0) {
+            System.arraycopy(ranks, pos + 1, ranks, pos, size - pos - 1);
+            size--;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return ranks.length;
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(ranks, size);
+    }
+
+    void copyInto(int[] target, int offset) {
+        System.arraycopy(ranks, 0, target, offset, size);
+    }
+
+    /*
+     * Interseção de listas ordenadas, partindo da menor e usando busca binária nas demais.
+     */
+    static int[] intersect(List<int[]> lists) {
+        lists.sort((a, b) -> Integer.compare(a.length, b.length));
+        int[] result = lists.get(0);
+        for (int l = 1; l < lists.size() && result.length > 0; l++) {
+            int[] other = lists.get(l);
+            int[] next = new int[result.length];
+            int count = 0;
+            int from = 0;
+            for (int rank : result) {
+                int pos = Arrays.binarySearch(other, from, other.length, rank);
+                if (pos >= 0) {
+                    next[count++] = rank;
+                    from = pos + 1;
+                } else {
+                    from = -pos - 1;
+                }
+                if (from >= other.length) {
+                    break;
+                }
+            }
+            result = Arrays.copyOf(next, count);
+        }
+        return result;
+    }
+
+    /*
+     * União ordenada e sem repetição de listas ordenadas.
+     */
+    static int[] union(Collection<int[]> lists) {
+        int total = 0;
+        for (int[] list : lists) {
+            total += list.length;
+        }
+        int[] all = new int[total];
+        int offset = 0;
+        for (int[] list : lists) {
+            System.arraycopy(list, 0, all, offset, list.length);
+            offset += list.length;
+        }
+        return sortDistinct(all);
+    }
+
+    static int[] sortDistinct(int[] all) {
+        Arrays.sort(all);
+        int distinct = 0;
+        for (int i = 0; i < all.length; i++) {
+            if (i == 0 || all[i] != all[i - 1]) {
+                all[distinct++] = all[i];
+            }
+        }
+        return Arrays.copyOf(all, distinct);
+    }
+}
@@ -0,0 +1,79 @@
+package com.meli.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/*
+ * Corpo JSON já codificado em UTF-8, em partes: um objeto, ou um array montado com os fragmentos
+ * de cada elemento e os separadores. As partes são escritas direto na saída, sem cópia nem Jackson.
+ * Os separadores reproduzem o que o Jackson geraria para o array (com ou sem indentação).
+ */
+public final class PreSerializedJson {
+
+    private static final byte[] PRETTY_OPEN = "[ ".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PRETTY_SEPARATOR = ", ".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PRETTY_CLOSE = " ]".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PRETTY_EMPTY = "[ ]".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] COMPACT_OPEN = "[".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] COMPACT_SEPARATOR = ",".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] COMPACT_CLOSE = "]".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] COMPACT_EMPTY = "[]".getBytes(StandardCharsets.UTF_8);
+
+    private final byte[][] parts;
+    private final long length;
+
+    private PreSerializedJson(byte[][] parts) {
+        this.parts = parts;
+        long total = 0;
+        for (byte[] part : parts) {
+            total += part.length;
+        }
+        this.length = total;
+    }
+
+    public static PreSerializedJson object(byte[] json) {
+        return new PreSerializedJson(new byte[][]{json});
+    }
+
+    static PreSerializedJson array(List<byte[]> elements, boolean pretty) {
+        if (elements.isEmpty()) {
+            return new PreSerializedJson(new byte[][]{pretty ? PRETTY_EMPTY : COMPACT_EMPTY});
+        }
+        byte[] separator = pretty ? PRETTY_SEPARATOR : COMPACT_SEPARATOR;
+        byte[][] parts = new byte[elements.size() * 2 + 1][];
+        int n = 0;
+        parts[n++] = pretty ? PRETTY_OPEN : COMPACT_OPEN;
+        for (byte[] element : elements) {
+            if (n > 1) {
+                parts[n++] = separator;
+            }
+            parts[n++] = element;
+        }
+        parts[n] = pretty ? PRETTY_CLOSE : COMPACT_CLOSE;
+        return new PreSerializedJson(parts);
+    }
+
+    /**
+     * Tamanho total em bytes (Content-Length).
+     */
+    public long length() {
+        return length;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        for (byte[] part : parts) {
+            out.write(part);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder((int) Math.min(length, Integer.MAX_VALUE));
+        for (byte[] part : parts) {
+            sb.append(new String(part, StandardCharsets.UTF_8));
+        }
+        return sb.toString();
+    }
+}
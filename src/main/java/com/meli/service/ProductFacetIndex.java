@@ -0,0 +1,243 @@
+package com.meli.service;
+
+import com.meli.dto.ProductFilterDTO;
+import com.meli.model.Product;
+import com.meli.repository.IntObjectIndex;
+import com.meli.repository.ProductChangeListener;
+import com.meli.repository.ProductRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+ * Índices de bitmap por faceta: categoria, marca, vendedor e "em estoque".
+ * Cada valor de faceta guarda um RankBitmap com as posições (ranks) dos produtos no catálogo;
+ * filtros viram OU entre valores da mesma faceta e E entre facetas, e as contagens são
+ * cardinalidades de interseções. Nenhuma consulta percorre os produtos.
+ * O universo de filtros e contagens é a vitrine (ProductRepository.isListed), o mesmo critério da
+ * listagem de /products, e "em estoque" usa esse mesmo predicado: as contagens de um filtro batem
+ * com a listagem do mesmo filtro (inStock=false não casa com nenhum produto listado).
+ * Cada entrada guarda os valores que indexou, para tirar o rank dos bitmaps certos quando o
+ * produto muda ou é removido.
+ */
+@Component
+public class ProductFacetIndex implements ProductChangeListener {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final IntObjectIndex<Entry> entriesById = new IntObjectIndex<>();
+    // Produtos da vitrine (em estoque, pelo critério de isListed)
+    private final RankBitmap listed = new RankBitmap();
+    private final Map<String, RankBitmap> byCategory = new HashMap<>();
+    private final Map<String, RankBitmap> byBrand = new HashMap<>();
+    private final Map<Integer, RankBitmap> bySeller = new HashMap<>();
+    private int[] idByRank = new int[64];
+    private int nextRank;
+
+    public ProductFacetIndex(ProductRepository productRepository) {
+        List<Product> products = productRepository.addListener(this);
+        for (Product product : products) {
+            onProductSaved(null, product);
+        }
+        System.out.println("DEBUG: ProductFacetIndex - Indexed " + products.size() + " products: " + byCategory.size() + " categories, " + byBrand.size() + " brands, " + bySeller.size() + " sellers.");
+    }
+
+    @Override
+    public void onProductSaved(Product previous, Product current) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entriesById.get(current.getId());
+            if (entry == null) {
+                entry = new Entry(nextRank++);
+                if (entry.rank >= idByRank.length) {
+                    idByRank = Arrays.copyOf(idByRank, idByRank.length << 1);
+                }
+                idByRank[entry.rank] = current.getId();
+                entriesById.put(current.getId(), entry);
+            } else if (sameFacets(entry, current)) {
+                return;
+            } else {
+                unindex(entry);
+            }
+            entry.category = current.getCategory();
+            entry.brand = current.getBrand();
+            entry.sellerId = current.getSellerId();
+            entry.listed = ProductRepository.isListed(current);
+            index(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onProductDeleted(Product previous) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entriesById.remove(previous.getId());
+            if (entry != null) {
+                unindex(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ids dos produtos que atendem ao filtro, na ordem do catálogo.
+     */
+    public int[] filter(ProductFilterDTO filter) {
+        lock.readLock().lock();
+        try {
+            int[] ranks = matching(listed, filter, null).toArray();
+            int[] ids = new int[ranks.length];
+            for (int i = 0; i < ranks.length; i++) {
+                ids[i] = idByRank[ranks[i]];
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Contagens por valor de cada faceta para o filtro atual. A contagem de uma faceta considera
+     * os filtros das demais facetas, mas não o dela mesma (seleção múltipla: marcar "Samsung"
+     * não zera as outras marcas). Valores ordenados da maior para a menor contagem.
+     * @param restrictToIds Se não for null, só esses produtos entram nas contagens (ex.: faixa de preço).
+     */
+    public Map<String, Object> counts(ProductFilterDTO filter, int[] restrictToIds) {
+        lock.readLock().lock();
+        try {
+            RankBitmap universe = listed;
+            if (restrictToIds != null) {
+                universe = new RankBitmap();
+                for (int id : restrictToIds) {
+                    Entry entry = entriesById.get(id);
+                    if (entry != null && entry.listed) {
+                        universe.add(entry.rank);
+                    }
+                }
+            }
+            Map<String, Object> counts = new LinkedHashMap<>();
+            counts.put("total", matching(universe, filter, null).cardinality());
+            counts.put("category", valueCounts(byCategory, matching(universe, filter, Facet.CATEGORY)));
+            counts.put("brand", valueCounts(byBrand, matching(universe, filter, Facet.BRAND)));
+            counts.put("sellerId", valueCounts(bySeller, matching(universe, filter, Facet.SELLER)));
+            // O universo já é só de produtos em estoque: nenhum listado fica em "false"
+            Map<String, Integer> stock = new LinkedHashMap<>();
+            stock.put("true", matching(universe, filter, Facet.IN_STOCK).cardinality());
+            stock.put("false", 0);
+            counts.put("inStock", stock);
+            return counts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private enum Facet { CATEGORY, BRAND, SELLER, IN_STOCK }
+
+    /*
+     * Bitmap dos produtos do universo que atendem ao filtro, ignorando a faceta informada (ou nenhuma).
+     */
+    private RankBitmap matching(RankBitmap universe, ProductFilterDTO filter, Facet ignored) {
+        RankBitmap result = universe;
+        if (ignored != Facet.CATEGORY && !filter.getCategory().isEmpty()) {
+            result = result.and(union(byCategory, filter.getCategory()));
+        }
+        if (ignored != Facet.BRAND && !filter.getBrand().isEmpty()) {
+            result = result.and(union(byBrand, filter.getBrand()));
+        }
+        if (ignored != Facet.SELLER && !filter.getSellerId().isEmpty()) {
+            result = result.and(union(bySeller, filter.getSellerId()));
+        }
+        if (ignored != Facet.IN_STOCK && Boolean.FALSE.equals(filter.getInStock())) {
+            result = new RankBitmap();
+        }
+        return result;
+    }
+
+    private static <K> RankBitmap union(Map<K, RankBitmap> facet, List<K> values) {
+        RankBitmap result = new RankBitmap();
+        for (K value : values) {
+            RankBitmap bitmap = facet.get(value);
+            if (bitmap != null) {
+                result = result.or(bitmap);
+            }
+        }
+        return result;
+    }
+
+    private static <K> Map<String, Integer> valueCounts(Map<K, RankBitmap> facet, RankBitmap base) {
+        List<Map.Entry<String, Integer>> counts = new ArrayList<>(facet.size());
+        for (Map.Entry<K, RankBitmap> entry : facet.entrySet()) {
+            int count = entry.getValue().andCardinality(base);
+            if (count > 0) {
+                counts.add(Map.entry(String.valueOf(entry.getKey()), count));
+            }
+        }
+        counts.sort(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> count : counts) {
+            result.put(count.getKey(), count.getValue());
+        }
+        return result;
+    }
+
+    private static boolean sameFacets(Entry entry, Product product) {
+        return Objects.equals(entry.category, product.getCategory())
+                && Objects.equals(entry.brand, product.getBrand())
+                && entry.sellerId == product.getSellerId()
+                && entry.listed == ProductRepository.isListed(product);
+    }
+
+    private void index(Entry entry) {
+        if (entry.category != null) {
+            byCategory.computeIfAbsent(entry.category, k -> new RankBitmap()).add(entry.rank);
+        }
+        if (entry.brand != null) {
+            byBrand.computeIfAbsent(entry.brand, k -> new RankBitmap()).add(entry.rank);
+        }
+        bySeller.computeIfAbsent(entry.sellerId, k -> new RankBitmap()).add(entry.rank);
+        if (entry.listed) {
+            listed.add(entry.rank);
+        }
+    }
+
+    private void unindex(Entry entry) {
+        removeFrom(byCategory, entry.category, entry.rank);
+        removeFrom(byBrand, entry.brand, entry.rank);
+        removeFrom(bySeller, entry.sellerId, entry.rank);
+        listed.remove(entry.rank);
+    }
+
+    private static <K> void removeFrom(Map<K, RankBitmap> facet, K value, int rank) {
+        if (value == null) {
+            return;
+        }
+        RankBitmap bitmap = facet.get(value);
+        if (bitmap != null) {
+            bitmap.remove(rank);
+            if (bitmap.isEmpty()) {
+                facet.remove(value);
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final int rank;
+        private String category;
+        private String brand;
+        private int sellerId;
+        private boolean listed;
+
+        private Entry(int rank) {
+            this.rank = rank;
+        }
+    }
+}
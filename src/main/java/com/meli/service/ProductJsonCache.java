@@ -0,0 +1,124 @@
+package com.meli.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.meli.model.Product;
+import com.meli.repository.ProductChangeListener;
+import com.meli.repository.ProductRepository;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * JSON de cada produto codificado uma vez por versão publicada, com o mesmo ObjectMapper das
+ * respostas (inclusive a indentação configurada). As listas do catálogo são montadas com esses
+ * fragmentos, então um produto que não mudou não passa de novo pelo Jackson.
+ * A codificação é feita na primeira leitura; salvar ou remover o produto descarta o fragmento.
+ * Cada fragmento guarda a instância de onde saiu: como as versões publicadas são imutáveis,
+ * a comparação por identidade garante que nunca se serve o JSON de outra versão.
+ */
+@Component
+public class ProductJsonCache implements ProductChangeListener {
+
+    private final ConcurrentHashMap<Integer, Entry> entries = new ConcurrentHashMap<>();
+    private final ProductRepository productRepository;
+    private final ObjectMapper objectMapper;
+    private final boolean pretty;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final AtomicLong cachedBytes = new AtomicLong();
+
+    public ProductJsonCache(ProductRepository productRepository, ObjectMapper objectMapper) {
+        this.productRepository = productRepository;
+        this.objectMapper = objectMapper;
+        this.pretty = objectMapper.isEnabled(SerializationFeature.INDENT_OUTPUT);
+        productRepository.addListener(this);
+    }
+
+    /**
+     * JSON (UTF-8) do produto, codificado no máximo uma vez por versão.
+     */
+    public byte[] toJson(Product product) {
+        Entry entry = entries.get(product.getId());
+        if (entry != null && entry.product == product) {
+            hits.increment();
+            return entry.json;
+        }
+        misses.increment();
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(product);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        // Só guarda a versão publicada: uma leitura atrasada não substitui o fragmento de uma versão nova
+        if (productRepository.findById(product.getId()) == product) {
+            Entry previous = entries.put(product.getId(), new Entry(product, json));
+            cachedBytes.addAndGet(json.length - (previous == null ? 0 : previous.json.length));
+        }
+        return json;
+    }
+
+    public PreSerializedJson object(Product product) {
+        return PreSerializedJson.object(toJson(product));
+    }
+
+    public PreSerializedJson array(List<Product> products) {
+        List<byte[]> elements = new ArrayList<>(products.size());
+        for (Product product : products) {
+            elements.add(toJson(product));
+        }
+        return PreSerializedJson.array(elements, pretty);
+    }
+
+    @Override
+    public void onProductSaved(Product previous, Product current) {
+        invalidate(current.getId());
+    }
+
+    @Override
+    public void onProductDeleted(Product previous) {
+        invalidate(previous.getId());
+    }
+
+    private void invalidate(int productId) {
+        Entry removed = entries.remove(productId);
+        if (removed != null) {
+            invalidations.increment();
+            cachedBytes.addAndGet(-removed.json.length);
+        }
+    }
+
+    /**
+     * Fragmentos guardados, bytes, acertos, codificações e descartes por mutação.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("bytes", cachedBytes.get());
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    private static final class Entry {
+        private final Product product;
+        private final byte[] json;
+
+        private Entry(Product product, byte[] json) {
+            this.product = product;
+            this.json = json;
+        }
+    }
+}
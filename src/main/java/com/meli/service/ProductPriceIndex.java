@@ -0,0 +1,153 @@
+package com.meli.service;
+
+import com.meli.model.Product;
+import com.meli.repository.IntObjectIndex;
+import com.meli.repository.ProductChangeListener;
+import com.meli.repository.ProductRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+ * Índice ordenado por preço: preço -> posições (ranks) dos produtos com esse preço.
+ * Uma faixa [min, max] é um subMap da árvore, então a consulta custa O(log n + k) e já sai
+ * ordenada, sem ordenar o catálogo a cada requisição. Empates de preço saem na ordem do catálogo.
+ * Produtos sem preço ficam fora das faixas e aparecem no fim das listagens ordenadas.
+ * Cada entrada guarda o preço indexado (a versão anterior nem sempre chega na notificação).
+ */
+@Component
+public class ProductPriceIndex implements ProductChangeListener {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<Double, PostingList> byPrice = new TreeMap<>();
+    private final PostingList withoutPrice = new PostingList();
+    private final IntObjectIndex<Entry> entriesById = new IntObjectIndex<>();
+    private int[] idByRank = new int[64];
+    private int nextRank;
+
+    public ProductPriceIndex(ProductRepository productRepository) {
+        List<Product> products = productRepository.addListener(this);
+        for (Product product : products) {
+            onProductSaved(null, product);
+        }
+        System.out.println("DEBUG: ProductPriceIndex - Indexed " + products.size() + " products, " + byPrice.size() + " distinct prices.");
+    }
+
+    @Override
+    public void onProductSaved(Product previous, Product current) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entriesById.get(current.getId());
+            if (entry == null) {
+                entry = new Entry(nextRank++);
+                if (entry.rank >= idByRank.length) {
+                    idByRank = Arrays.copyOf(idByRank, idByRank.length << 1);
+                }
+                idByRank[entry.rank] = current.getId();
+                entriesById.put(current.getId(), entry);
+            } else if (Objects.equals(entry.price, current.getPrice())) {
+                return;
+            } else {
+                unindex(entry);
+            }
+            entry.price = current.getPrice();
+            postings(entry.price, true).add(entry.rank);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onProductDeleted(Product previous) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entriesById.remove(previous.getId());
+            if (entry != null) {
+                unindex(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ids dos produtos com preço entre min e max (inclusive; null = sem limite), ordenados por preço.
+     * Sem limites, inclui no fim os produtos sem preço.
+     */
+    public int[] query(Double minPrice, Double maxPrice, boolean descending) {
+        lock.readLock().lock();
+        try {
+            if (minPrice != null && maxPrice != null && minPrice > maxPrice) {
+                return new int[0];
+            }
+            NavigableMap<Double, PostingList> range = byPrice;
+            if (minPrice != null && maxPrice != null) {
+                range = byPrice.subMap(minPrice, true, maxPrice, true);
+            } else if (minPrice != null) {
+                range = byPrice.tailMap(minPrice, true);
+            } else if (maxPrice != null) {
+                range = byPrice.headMap(maxPrice, true);
+            }
+            if (descending) {
+                range = range.descendingMap();
+            }
+            boolean includeUnpriced = minPrice == null && maxPrice == null;
+            int total = includeUnpriced ? withoutPrice.size() : 0;
+            for (PostingList list : range.values()) {
+                total += list.size();
+            }
+            int[] ids = new int[total];
+            int n = 0;
+            for (PostingList list : range.values()) {
+                n = appendIds(list, ids, n);
+            }
+            if (includeUnpriced) {
+                appendIds(withoutPrice, ids, n);
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int appendIds(PostingList list, int[] ids, int n) {
+        int start = n;
+        list.copyInto(ids, start);
+        int end = start + list.size();
+        for (int i = start; i < end; i++) {
+            ids[i] = idByRank[ids[i]];
+        }
+        return end;
+    }
+
+    private PostingList postings(Double price, boolean create) {
+        if (price == null) {
+            return withoutPrice;
+        }
+        return create ? byPrice.computeIfAbsent(price, p -> new PostingList()) : byPrice.get(price);
+    }
+
+    private void unindex(Entry entry) {
+        PostingList list = postings(entry.price, false);
+        if (list != null) {
+            list.remove(entry.rank);
+            if (list.size() == 0 && entry.price != null) {
+                byPrice.remove(entry.price);
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final int rank;
+        private Double price;
+
+        private Entry(int rank) {
+            this.rank = rank;
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package com.meli.service;
+
+import com.meli.model.Product;
+import com.meli.repository.ProductChangeListener;
+import com.meli.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/*
+ * Cache dos resultados de busca por termo normalizado (ids na ordem do catálogo), com limite de
+ * entradas e TTL. Buscas iguais concorrentes esperam um único cálculo.
+ * Guarda ids, não produtos: mudanças de estoque ou preço não alteram o resultado e não invalidam nada;
+ * os produtos são resolvidos na versão atual a cada leitura. Quando o texto de um produto muda
+ * (ou ele é criado/removido), só são descartados os termos que casavam com a versão anterior ou
+ * com a nova. Registrado depois dos índices de busca (dependências do construtor), então quando a
+ * invalidação roda os índices já refletem a mutação; um cálculo em andamento para um termo afetado
+ * também é descartado.
+ * Cada termo fica registrado sob um trigrama (modo substring) ou sob o seu primeiro token (modo
+ * token); a invalidação só confere os termos registrados sob os trigramas/prefixos do produto, em
+ * vez de todo o cache. O limite de entradas vale já na reserva: com o cache cheio de cálculos em
+ * andamento, a busca é feita sem ser guardada.
+ */
+@Component
+public class ProductSearchCache implements ProductChangeListener {
+
+    private static final int GRAM = 3;
+
+    // Leituras com acerto consultam só este mapa, sem lock
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    // Protege as inclusões/remoções em entries e as estruturas abaixo, que sempre têm as mesmas entradas
+    private final ReentrantLock lock = new ReentrantLock();
+    // Ordem de inserção = ordem de expiração (TTL único); remoção em O(1) quando a entrada é invalidada
+    private final LinkedHashSet<Entry> insertionOrder = new LinkedHashSet<>();
+    // Trigrama ou primeiro token -> entradas registradas; "" para termos sem trigrama/token
+    private final Map<String, Set<Entry>> watchers = new HashMap<>();
+    private final boolean tokenSearch;
+    private final int maxEntries;
+    private final long ttlNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder bypassed = new LongAdder();
+
+    public ProductSearchCache(ProductRepository productRepository, ProductSearchIndex searchIndex,
+                              ProductSubstringIndex substringIndex,
+                              @Value("${meli.search.mode:substring}") String searchMode,
+                              @Value("${meli.search.cache.max-entries:1000}") int maxEntries,
+                              @Value("${meli.search.cache.ttl-seconds:60}") long ttlSeconds) {
+        this.tokenSearch = "token".equalsIgnoreCase(searchMode.trim());
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(Math.max(1, ttlSeconds));
+        // searchIndex e substringIndex não são usados aqui: recebê-los garante que já observam o repositório
+        productRepository.addListener(this);
+    }
+
+    /**
+     * Termo como chave do cache, com a mesma normalização da busca: no modo substring, sem espaços
+     * nas pontas e em minúsculas; no modo token, os termos (sem acentos) ordenados.
+     */
+    public String normalize(String term) {
+        if (!tokenSearch) {
+            return term.trim().toLowerCase();
+        }
+        List<String> tokens = new ArrayList<>(ProductSearchIndex.tokenize(term));
+        Collections.sort(tokens);
+        return String.join(" ", tokens);
+    }
+
+    /**
+     * Ids do resultado da busca. Em caso de falta, calcula com search (que recebe o termo
+     * normalizado e deve dar o mesmo resultado do termo original).
+     */
+    public int[] get(String term, Function<String, int[]> search) {
+        String key = normalize(term);
+        while (true) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.isExpired(System.nanoTime())) {
+                    if (remove(entry)) {
+                        expirations.increment();
+                    }
+                    continue;
+                }
+                if (entry.result.isDone()) {
+                    hits.increment();
+                } else {
+                    coalesced.increment();
+                }
+                try {
+                    return entry.result.join();
+                } catch (CompletionException e) {
+                    // O cálculo original falhou e liberou a chave: calcula de novo
+                    continue;
+                }
+            }
+            Entry fresh = new Entry(key, tokenSearch);
+            Entry reserved = reserve(fresh);
+            if (reserved == null) {
+                // Cache cheio de cálculos em andamento: busca sem guardar
+                misses.increment();
+                bypassed.increment();
+                return search.apply(key);
+            }
+            if (reserved != fresh) {
+                continue;
+            }
+            misses.increment();
+            int[] ids;
+            try {
+                ids = search.apply(key);
+            } catch (RuntimeException e) {
+                remove(fresh);
+                fresh.result.completeExceptionally(e);
+                throw e;
+            }
+            fresh.expiresAt = System.nanoTime() + ttlNanos;
+            fresh.result.complete(ids);
+            return ids;
+        }
+    }
+
+    /*
+     * Registra a entrada se houver espaço (depois de remover vencidas e, no limite, as mais antigas
+     * já calculadas). Retorna a própria entrada, a que já existia para a chave, ou null se o cache
+     * está cheio de cálculos em andamento.
+     */
+    private Entry reserve(Entry fresh) {
+        lock.lock();
+        try {
+            Entry existing = entries.get(fresh.key);
+            if (existing != null) {
+                return existing;
+            }
+            evict(System.nanoTime());
+            if (insertionOrder.size() >= maxEntries) {
+                return null;
+            }
+            entries.put(fresh.key, fresh);
+            insertionOrder.add(fresh);
+            watchers.computeIfAbsent(fresh.bucket, b -> new HashSet<>()).add(fresh);
+            return fresh;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean remove(Entry entry) {
+        lock.lock();
+        try {
+            return removeLocked(entry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean removeLocked(Entry entry) {
+        if (!entries.remove(entry.key, entry)) {
+            return false;
+        }
+        insertionOrder.remove(entry);
+        unwatch(entry);
+        return true;
+    }
+
+    private void unwatch(Entry entry) {
+        Set<Entry> watching = watchers.get(entry.bucket);
+        if (watching != null && watching.remove(entry) && watching.isEmpty()) {
+            watchers.remove(entry.bucket);
+        }
+    }
+
+    @Override
+    public void onProductSaved(Product previous, Product current) {
+        if (previous != null && ProductSearchIndex.sameText(previous, current)) {
+            return;
+        }
+        invalidate(previous, current);
+    }
+
+    @Override
+    public void onProductDeleted(Product previous) {
+        invalidate(previous, null);
+    }
+
+    private void invalidate(Product previous, Product current) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        // Trigramas/prefixos calculados fora do lock; com ele, só as entradas registradas sob eles
+        ProductText before = previous == null ? null : new ProductText(previous, tokenSearch);
+        ProductText after = current == null ? null : new ProductText(current, tokenSearch);
+        lock.lock();
+        try {
+            List<Entry> matched = new ArrayList<>();
+            collectMatches(before, matched);
+            collectMatches(after, matched);
+            for (Entry entry : matched) {
+                if (removeLocked(entry)) {
+                    invalidations.increment();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void collectMatches(ProductText text, List<Entry> matched) {
+        if (text == null) {
+            return;
+        }
+        for (String bucket : text.buckets) {
+            Set<Entry> watching = watchers.get(bucket);
+            if (watching != null) {
+                for (Entry entry : watching) {
+                    if (text.matches(entry)) {
+                        matched.add(entry);
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Remove do início da fila as entradas vencidas e, no limite, as mais antigas já calculadas
+     * (pulando as que ainda estão em cálculo). Chamado com o lock.
+     */
+    private void evict(long now) {
+        Iterator<Entry> it = insertionOrder.iterator();
+        while (it.hasNext()) {
+            Entry head = it.next();
+            boolean expired = head.isExpired(now);
+            boolean full = insertionOrder.size() >= maxEntries;
+            if (!expired && !full) {
+                return;
+            }
+            if (!expired && !head.result.isDone()) {
+                continue;
+            }
+            it.remove();
+            entries.remove(head.key, head);
+            unwatch(head);
+            if (expired) {
+                expirations.increment();
+            } else {
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Entradas, acertos, faltas, buscas que esperaram um cálculo em andamento e remoções
+     * (por limite, por TTL e por mutação de produto).
+     */
+    public Map<String, Object> stats() {
+        long hitCount = hits.sum() + coalesced.sum();
+        long lookups = hitCount + misses.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttlSeconds", TimeUnit.NANOSECONDS.toSeconds(ttlNanos));
+        stats.put("hits", hits.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("misses", misses.sum());
+        stats.put("hitRate", lookups == 0 ? 0.0 : hitCount / (double) lookups);
+        stats.put("evictions", evictions.sum());
+        stats.put("expirations", expirations.sum());
+        stats.put("invalidations", invalidations.sum());
+        stats.put("bypassed", bypassed.sum());
+        return stats;
+    }
+
+    private static final class Entry {
+        private final String key;
+        // Modo token: termos da chave (cada um deve ser prefixo de algum termo do produto)
+        private final String[] tokens;
+        // Onde a entrada fica registrada para invalidação: todo produto que casa com o termo contém
+        // o seu primeiro trigrama (substring) ou um termo com o seu primeiro token como prefixo
+        private final String bucket;
+        private final CompletableFuture<int[]> result = new CompletableFuture<>();
+        // Definido ao concluir; antes disso a entrada não expira
+        private volatile long expiresAt;
+
+        private Entry(String key, boolean tokenSearch) {
+            this.key = key;
+            this.tokens = tokenSearch && !key.isEmpty() ? key.split(" ") : new String[0];
+            if (tokenSearch) {
+                this.bucket = tokens.length == 0 ? "" : tokens[0];
+            } else {
+                this.bucket = key.length() < GRAM ? "" : key.substring(0, GRAM);
+            }
+        }
+
+        private boolean isExpired(long now) {
+            return result.isDone() && !result.isCompletedExceptionally() && now - expiresAt > 0;
+        }
+    }
+
+    /*
+     * Texto de uma versão de produto, preparado uma vez por notificação: os buckets onde podem
+     * estar as entradas que casam com ele e os dados para conferir cada uma.
+     */
+    private static final class ProductText {
+        private final Set<String> terms;
+        private final String[] fields;
+        private final Set<String> buckets = new HashSet<>();
+
+        private ProductText(Product product, boolean tokenSearch) {
+            buckets.add("");
+            if (tokenSearch) {
+                this.terms = ProductSearchIndex.terms(product);
+                this.fields = null;
+                for (String term : terms) {
+                    for (int end = 1; end <= term.length(); end++) {
+                        buckets.add(term.substring(0, end));
+                    }
+                }
+            } else {
+                this.terms = null;
+                ProductSubstringIndex.Field[] all = ProductSubstringIndex.Field.values();
+                this.fields = new String[all.length];
+                for (int i = 0; i < all.length; i++) {
+                    String text = all[i].text(product);
+                    fields[i] = text;
+                    if (text != null) {
+                        for (int start = 0; start + GRAM <= text.length(); start++) {
+                            buckets.add(text.substring(start, start + GRAM));
+                        }
+                    }
+                }
+            }
+        }
+
+        private boolean matches(Entry entry) {
+            if (fields != null) {
+                for (String text : fields) {
+                    if (text != null && text.contains(entry.key)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            for (String token : entry.tokens) {
+                boolean found = false;
+                for (String term : terms) {
+                    if (term.startsWith(token)) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.meli.service;
+
+import com.meli.model.Product;
+import com.meli.repository.IntObjectIndex;
+import com.meli.repository.ProductChangeListener;
+import com.meli.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/*
+ * Índice invertido de termos sobre título, descrição, categoria e marca dos produtos.
+ * Os termos são normalizados (minúsculas + remoção de acentos), então "eletronico" encontra
+ * "Eletrônicos". Cada produto recebe uma posição (rank) fixa na ordem do catálogo; as listas de
+ * postagem guardam ranks ordenados, de modo que a interseção já sai na ordem do catálogo.
+ * Atualizado incrementalmente a cada inclusão, alteração e remoção feita pelo ProductService:
+ * o índice observa o ProductRepository, que notifica na mesma ordem em que publica as versões.
+ * Só é mantido quando meli.search.mode=token.
+ */
+@Component
+public class ProductSearchIndex implements ProductChangeListener {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int[] EMPTY = new int[0];
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // termo normalizado -> ranks dos produtos que o contêm (ordenados)
+    private final TreeMap<String, PostingList> postings = new TreeMap<>();
+    private final IntObjectIndex<Entry> entriesById = new IntObjectIndex<>();
+    private int[] idByRank = new int[64];
+    private int nextRank;
+
+    public ProductSearchIndex(ProductRepository productRepository,
+                              @Value("${meli.search.mode:substring}") String searchMode) {
+        if ("token".equalsIgnoreCase(searchMode.trim())) {
+            rebuild(productRepository.addListener(this));
+        }
+    }
+
+    @Override
+    public void onProductSaved(Product previous, Product current) {
+        // Alterações que não tocam os campos de texto (ex.: estoque, preço) não reindexam
+        if (previous == null || !sameText(previous, current)) {
+            index(current);
+        }
+    }
+
+    @Override
+    public void onProductDeleted(Product previous) {
+        remove(previous.getId());
+    }
+
+    /**
+     * Reconstrói o índice a partir do catálogo completo, na ordem informada.
+     */
+    public void rebuild(List<Product> products) {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            entriesById.clear();
+            nextRank = 0;
+            for (Product product : products) {
+                indexLocked(product);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        System.out.println("DEBUG: ProductSearchIndex.rebuild - Indexed " + products.size() + " products, " + postings.size() + " distinct terms.");
+    }
+
+    /**
+     * Inclui ou reindexa um produto. Um produto já indexado mantém sua posição no catálogo.
+     */
+    public void index(Product product) {
+        lock.writeLock().lock();
+        try {
+            indexLocked(product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int productId) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entriesById.remove(productId);
+            if (entry != null) {
+                removePostings(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retorna os ids dos produtos em que cada termo da busca é prefixo de algum termo indexado,
+     * na ordem do catálogo.
+     */
+    public int[] search(String query) {
+        List<String> queryTerms = new ArrayList<>(tokenize(query));
+        if (queryTerms.isEmpty()) {
+            return EMPTY;
+        }
+        lock.readLock().lock();
+        try {
+            List<int[]> perTerm = new ArrayList<>(queryTerms.size());
+            for (String term : queryTerms) {
+                int[] ranks = prefixUnion(term);
+                if (ranks.length == 0) {
+                    return EMPTY;
+                }
+                perTerm.add(ranks);
+            }
+            int[] ranks = PostingList.intersect(perTerm);
+            int[] ids = new int[ranks.length];
+            for (int i = 0; i < ranks.length; i++) {
+                ids[i] = idByRank[ranks[i]];
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Minúsculas e sem acentos: "Eletrônicos" -> "eletronicos".
+     */
+    public static String fold(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Termos distintos (normalizados) de um texto, na ordem em que aparecem.
+     */
+    public static Set<String> tokenize(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String term : NON_ALPHANUMERIC.split(fold(text))) {
+            if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Termos indexados de um produto: título, descrição, categoria e marca.
+     */
+    static Set<String> terms(Product product) {
+        Set<String> terms = new LinkedHashSet<>();
+        terms.addAll(tokenize(product.getTitle()));
+        terms.addAll(tokenize(product.getDescription()));
+        terms.addAll(tokenize(product.getCategory()));
+        terms.addAll(tokenize(product.getBrand()));
+        return terms;
+    }
+
+    static boolean sameText(Product a, Product b) {
+        return Objects.equals(a.getTitle(), b.getTitle())
+                && Objects.equals(a.getDescription(), b.getDescription())
+                && Objects.equals(a.getCategory(), b.getCategory())
+                && Objects.equals(a.getBrand(), b.getBrand());
+    }
+
+    private void indexLocked(Product product) {
+        Set<String> terms = terms(product);
+
+        Entry entry = entriesById.get(product.getId());
+        if (entry != null) {
+            removePostings(entry);
+        } else {
+            entry = new Entry(nextRank++);
+            if (entry.rank >= idByRank.length) {
+                idByRank = Arrays.copyOf(idByRank, idByRank.length << 1);
+            }
+            idByRank[entry.rank] = product.getId();
+            entriesById.put(product.getId(), entry);
+        }
+        entry.terms = terms.toArray(new String[0]);
+        for (String term : entry.terms) {
+            postings.computeIfAbsent(term, t -> new PostingList()).add(entry.rank);
+        }
+    }
+
+    private void removePostings(Entry entry) {
+        for (String term : entry.terms) {
+            PostingList list = postings.get(term);
+            if (list != null) {
+                list.remove(entry.rank);
+                if (list.size() == 0) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    /*
+     * União ordenada das postagens de todos os termos que começam com o prefixo.
+     */
+    private int[] prefixUnion(String prefix) {
+        Map<String, PostingList> matches = postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        if (matches.isEmpty()) {
+            return EMPTY;
+        }
+        if (matches.size() == 1) {
+            return matches.values().iterator().next().toArray();
+        }
+        int total = 0;
+        for (PostingList list : matches.values()) {
+            total += list.size();
+        }
+        int[] all = new int[total];
+        int offset = 0;
+        for (PostingList list : matches.values()) {
+            list.copyInto(all, offset);
+            offset += list.size();
+        }
+        return PostingList.sortDistinct(all);
+    }
+
+    private static final class Entry {
+        private final int rank;
+        private String[] terms = new String[0];
+
+        private Entry(int rank) {
+            this.rank = rank;
+        }
+    }
+}
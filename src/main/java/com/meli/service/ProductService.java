@@ -1,129 +1,181 @@
 package com.meli.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.type.CollectionType;
+import com.meli.dto.ProductFilterDTO;
 import com.meli.model.Product;
+import com.meli.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Map;
 
+/*
+ * Regras de negócio de produtos. O estado fica inteiramente no ProductRepository
+ * (único armazenamento em memória e único caminho de persistência de products.json).
+ */
 @Service
 public class ProductService {
-    private final String DATA_DIR = "data";
-    private final String DATA_FILE_PATH = DATA_DIR + File.separator + "products.json";
-
-    private List<Product> products = new ArrayList<>();
-    private final ObjectMapper mapper = new ObjectMapper();
-
-    public ProductService() {
-        File dataDir = new File(DATA_DIR);
-        if (!dataDir.exists()) {
-            if (dataDir.mkdirs()) {
-                System.out.println("DEBUG: ProductService - Created data directory: " + dataDir.getAbsolutePath());
-            } else {
-                System.err.println("ERROR: ProductService - Failed to create data directory: " + dataDir.getAbsolutePath());
-            }
+
+    private final ProductRepository productRepository;
+    private final ProductSearchIndex searchIndex;
+    private final ProductSubstringIndex substringIndex;
+    private final ProductFacetIndex facetIndex;
+    private final ProductPriceIndex priceIndex;
+    private final StockService stockService;
+    private final ProductSearchCache searchCache;
+    // token: palavras com prefixo e sem acentos; substring: contains original, acelerado por trigramas
+    private final boolean tokenSearch;
+
+    public ProductService(ProductRepository productRepository, ProductSearchIndex searchIndex,
+                          ProductSubstringIndex substringIndex, ProductFacetIndex facetIndex,
+                          ProductPriceIndex priceIndex, StockService stockService, ProductSearchCache searchCache,
+                          @Value("${meli.search.mode:substring}") String searchMode) {
+        this.productRepository = productRepository;
+        this.searchIndex = searchIndex;
+        this.substringIndex = substringIndex;
+        this.facetIndex = facetIndex;
+        this.priceIndex = priceIndex;
+        this.stockService = stockService;
+        this.searchCache = searchCache;
+        this.tokenSearch = "token".equalsIgnoreCase(searchMode.trim());
+    }
+
+    /**
+     * Snapshot imutável do catálogo (sem cópia).
+     */
+    public List<Product> getAllProducts() {
+        List<Product> products = productRepository.getAll();
+        System.out.println("DEBUG: ProductService.getAllProducts - Returning " + products.size() + " products.");
+        return products;
+    }
+
+    /**
+     * Versão global do catálogo: muda a cada publicação (produto criado, alterado, removido ou estoque).
+     */
+    public long getCatalogVersion() {
+        return productRepository.version();
+    }
+
+    /**
+     * Instante (epoch ms) em que o catálogo desta execução foi carregado; qualifica getCatalogVersion.
+     */
+    public long getCatalogEpoch() {
+        return productRepository.epoch();
+    }
+
+    /**
+     * Instante (epoch ms) da última publicação do catálogo.
+     */
+    public long getCatalogLastModified() {
+        return productRepository.lastModified();
+    }
+
+    /**
+     * Produtos da vitrine (sem os de estoque zerado) que atendem aos filtros.
+     * Sem filtros, é a vitrine pré-calculada da versão atual do catálogo: nenhuma cópia por requisição.
+     * Só facetas: ordem do catálogo, resolvidos pelos bitmaps.
+     * Com faixa de preço ou ordenação: ordem de preço (crescente, salvo sort=price_desc),
+     * percorrendo apenas a faixa do índice de preços.
+     */
+    public List<Product> getListedProducts(ProductFilterDTO filter) {
+        if (filter.isEmpty()) {
+            return productRepository.listed();
         }
-        loadProducts();
-    }
-
-    private void loadProducts() {
-        File file = new File(DATA_FILE_PATH);
-        System.out.println("DEBUG: ProductService.loadProducts - Attempting to load products from: " + file.getAbsolutePath());
-        System.out.println("DEBUG: ProductService.loadProducts - File exists: " + file.exists());
-        System.out.println("DEBUG: ProductService.loadProducts - File is readable: " + file.canRead());
-        System.out.println("DEBUG: ProductService.loadProducts - File size (bytes): " + file.length());
-
-
-        if (file.exists() && file.length() > 0) {
-            try {
-                CollectionType listType = mapper.getTypeFactory().constructCollectionType(List.class, Product.class);
-                products = mapper.readValue(file, listType);
-                System.out.println("DEBUG: ProductService.loadProducts - Successfully loaded " + products.size() + " products.");
-                if (products.isEmpty()) {
-                    System.out.println("DEBUG: ProductService.loadProducts - Loaded list is empty. This might indicate malformed JSON or an empty array in the file.");
-                } else {
-                    System.out.println("DEBUG: ProductService.loadProducts - First product in list (for verification): " + products.get(0).getTitle() + " (ID: " + products.get(0).getId() + ")");
-                }
-            } catch (IOException e) {
-                System.err.println("ERROR: ProductService.loadProducts - Failed to read or parse products.json: " + e.getMessage());
-                e.printStackTrace();
-                products = new ArrayList<>(); // Ensure it's an empty list if loading fails
+        int[] ids = matchingIds(filter);
+        List<Product> products = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            Product product = productRepository.findById(id);
+            if (product != null && ProductRepository.isListed(product)) {
+                products.add(product);
             }
-        } else {
-            System.out.println("DEBUG: ProductService.loadProducts - products.json not found or is empty. Starting with an empty product list in memory.");
-            products = new ArrayList<>(); // Explicitly ensure it's empty
         }
+        System.out.println("DEBUG: ProductService.getListedProducts - Returning " + products.size() + " filtered products.");
+        return products;
     }
 
-    private synchronized void saveProducts() {
-        File file = new File(DATA_FILE_PATH);
-        System.out.println("DEBUG: ProductService.saveProducts - Attempting to save " + products.size() + " products to: " + file.getAbsolutePath());
-        try {
-            File parentDir = file.getParentFile();
-            if (parentDir != null && !parentDir.exists()) {
-                parentDir.mkdirs();
+    private int[] matchingIds(ProductFilterDTO filter) {
+        int[] ids;
+        if (filter.hasPriceQuery()) {
+            boolean descending = ProductFilterDTO.SORT_PRICE_DESC.equals(filter.getSort());
+            ids = priceIndex.query(filter.getMinPrice(), filter.getMaxPrice(), descending);
+            if (filter.hasFacets()) {
+                ids = retainAll(ids, facetIndex.filter(filter));
             }
-            mapper.writerWithDefaultPrettyPrinter().writeValue(file, products);
-            System.out.println("DEBUG: ProductService.saveProducts - Products saved successfully.");
-        } catch (IOException e) {
-            System.err.println("ERROR: ProductService.saveProducts - Failed to save products to file: " + e.getMessage());
-            e.printStackTrace();
+        } else {
+            ids = facetIndex.filter(filter);
         }
+        return ids;
     }
 
-    public List<Product> getAllProducts() {
-        System.out.println("DEBUG: ProductService.getAllProducts - Returning " + products.size() + " products.");
-        return new ArrayList<>(products);
+    /**
+     * Contagens por categoria, marca, vendedor e estoque para os filtros informados
+     * (incluindo a faixa de preço, se houver).
+     */
+    public Map<String, Object> getFacetCounts(ProductFilterDTO filter) {
+        int[] inPriceRange = filter.hasPriceRange()
+                ? priceIndex.query(filter.getMinPrice(), filter.getMaxPrice(), false)
+                : null;
+        return facetIndex.counts(filter, inPriceRange);
+    }
+
+    /*
+     * Mantém a ordem de 'ids', descartando os que não estão em 'allowed'.
+     */
+    private static int[] retainAll(int[] ids, int[] allowed) {
+        int[] sortedAllowed = allowed.clone();
+        Arrays.sort(sortedAllowed);
+        int n = 0;
+        int[] result = new int[Math.min(ids.length, allowed.length)];
+        for (int id : ids) {
+            if (n < result.length && Arrays.binarySearch(sortedAllowed, id) >= 0) {
+                result[n++] = id;
+            }
+        }
+        return Arrays.copyOf(result, n);
     }
 
     public List<Product> getProductsBySellerId(int sellerId) {
         System.out.println("DEBUG: ProductService.getProductsBySellerId - Filtering for sellerId: " + sellerId);
-        List<Product> filteredProducts = products.stream()
-                       .filter(p -> p.getSellerId() == sellerId)
-                       .collect(Collectors.toList());
+        List<Product> filteredProducts = productRepository.findBySellerId(sellerId);
         System.out.println("DEBUG: ProductService.getProductsBySellerId - Found " + filteredProducts.size() + " products for sellerId: " + sellerId);
         return filteredProducts;
     }
 
+    /**
+     * Busca O(1) no índice do repositório. Chamado em laços (itens de pedido e de carrinho),
+     * por isso não registra log por chamada.
+     */
     public Product getProductById(int id) {
-        System.out.println("DEBUG: ProductService.getProductById - Searching for product with ID: " + id);
-        Optional<Product> foundProduct = products.stream().filter(p -> p.getId() == id).findFirst();
-        if (foundProduct.isPresent()) {
-            System.out.println("DEBUG: ProductService.getProductById - Found product: " + foundProduct.get().getTitle());
-        } else {
-            System.out.println("DEBUG: ProductService.getProductById - Product with ID " + id + " not found.");
-        }
-        return foundProduct.orElse(null);
+        return productRepository.findById(id);
     }
 
     public Product addProduct(Product product) {
-        int newId = generateNextId();
-        product.setId(newId);
-        products.add(product);
-        saveProducts();
+        productRepository.save(product);
         System.out.println("DEBUG: ProductService.addProduct - Added new product: " + product.getTitle() + " with ID: " + product.getId() + " for seller: " + product.getSellerId());
         return product;
     }
 
     public Product updateProduct(int id, Product updatedProduct) {
+        return updateProduct(id, updatedProduct, null);
+    }
+
+    /**
+     * Substitui o produto somente se a versão publicada ainda for expectedVersion (null = sem verificação).
+     * @return O produto publicado (com a nova versão), ou null se não existe.
+     * @throws com.meli.repository.VersionConflictException se o produto mudou desde a versão esperada.
+     */
+    public Product updateProduct(int id, Product updatedProduct, Long expectedVersion) {
         System.out.println("DEBUG: ProductService.updateProduct - Attempting to update product with ID: " + id);
-        for (int i = 0; i < products.size(); i++) {
-            if (products.get(i).getId() == id) {
-                updatedProduct.setId(id);
-                updatedProduct.setSellerId(products.get(i).getSellerId());
-
-                products.set(i, updatedProduct);
-                saveProducts();
-                System.out.println("DEBUG: ProductService.updateProduct - Product " + id + " updated successfully.");
-                return updatedProduct;
-            }
+        updatedProduct.setId(id);
+        // O estoque pedido vira uma diferença sobre a versão substituída, aplicada ao contador na mesma
+        // publicação: reservas feitas desde a leitura do vendedor continuam descontadas
+        if (productRepository.update(updatedProduct, expectedVersion,
+                (previous, requested) -> stockService.applyEdit(id, previous.getStock(), requested))) {
+            System.out.println("DEBUG: ProductService.updateProduct - Product " + id + " updated successfully.");
+            Product published = productRepository.findById(id);
+            return published != null ? published : updatedProduct;
         }
         System.out.println("DEBUG: ProductService.updateProduct - Product with ID " + id + " not found for update.");
         return null;
@@ -131,9 +183,8 @@ public class ProductService {
 
     public boolean deleteProduct(int id) {
         System.out.println("DEBUG: ProductService.deleteProduct - Attempting to delete product with ID: " + id);
-        boolean removed = products.removeIf(p -> p.getId() == id);
+        boolean removed = productRepository.deleteById(id);
         if (removed) {
-            saveProducts();
             System.out.println("DEBUG: ProductService.deleteProduct - Product with ID " + id + " removed successfully.");
         } else {
             System.out.println("DEBUG: ProductService.deleteProduct - Product with ID " + id + " not found for deletion.");
@@ -141,13 +192,6 @@ public class ProductService {
         return removed;
     }
 
-    private int generateNextId() {
-        return products.stream()
-                .mapToInt(Product::getId)
-                .max()
-                .orElse(0) + 1;
-    }
-
     /**
      * Busca produtos por termo de pesquisa (título, descrição, categoria, marca).
      * @param searchTerm O termo de pesquisa.
@@ -159,34 +203,48 @@ public class ProductService {
             return getAllProducts(); // Retorna todos os produtos se o termo de busca for vazio
         }
 
-        String normalizedSearchTerm = searchTerm.trim().toLowerCase();
-        List<Product> allProducts = new ArrayList<>(products); // Trabalha com uma cópia
-        List<Product> filteredProducts = new ArrayList<>();
-
-        for (Product product : allProducts) {
-            boolean matches = false;
-            // Busca por título
-            if (product.getTitle() != null && product.getTitle().toLowerCase().contains(normalizedSearchTerm)) {
-                matches = true;
-            }
-            // Busca por descrição
-            if (!matches && product.getDescription() != null && product.getDescription().toLowerCase().contains(normalizedSearchTerm)) {
-                matches = true;
-            }
-            // Busca por categoria (AGORA INCLUI CATEGORIA NA BUSCA)
-            if (!matches && product.getCategory() != null && product.getCategory().toLowerCase().contains(normalizedSearchTerm)) {
-                matches = true;
-            }
-            // Busca por marca
-            if (!matches && product.getBrand() != null && product.getBrand().toLowerCase().contains(normalizedSearchTerm)) {
-                matches = true;
-            }
-
-            if (matches) {
+        // Ids do cache por termo normalizado; os produtos são resolvidos na versão atual
+        int[] ids = searchCache.get(searchTerm, this::searchIds);
+        List<Product> filteredProducts = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            Product product = productRepository.findById(id);
+            if (product != null) {
                 filteredProducts.add(product);
             }
         }
         System.out.println("DEBUG: ProductService.searchProducts - Found " + filteredProducts.size() + " products for search term: '" + searchTerm + "'");
         return filteredProducts;
     }
+
+    private int[] searchIds(String searchTerm) {
+        if (tokenSearch) {
+            // Índice invertido: cada termo da busca casa como prefixo de palavras de título,
+            // descrição, categoria ou marca (sem diferenciar acentos); resultados na ordem do catálogo
+            return searchIndex.search(searchTerm);
+        }
+        // Substring em título, descrição, categoria ou marca; candidatos vindos do índice de trigramas
+        List<Product> products = substringIndex.search(searchTerm);
+        int[] ids = new int[products.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = products.get(i).getId();
+        }
+        return ids;
+    }
+
+    /**
+     * Contadores do cache de resultados de busca.
+     */
+    public Map<String, Object> getSearchCacheStats() {
+        return searchCache.stats();
+    }
+
+    /**
+     * Tamanho do índice de trigramas por campo, para decidir quais campos indexar.
+     */
+    public Map<String, Object> getSearchIndexStats() {
+        Map<String, Object> stats = substringIndex.stats();
+        stats.put("mode", tokenSearch ? "token" : "substring");
+        stats.put("tokenIndexTerms", searchIndex.termCount());
+        return stats;
+    }
 }
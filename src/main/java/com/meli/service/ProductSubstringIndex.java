@@ -0,0 +1,383 @@
+package com.meli.service;
+
+import com.meli.model.Product;
+import com.meli.repository.IntObjectIndex;
+import com.meli.repository.ProductChangeListener;
+import com.meli.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/*
+ * Índice de trigramas para a busca por substring (semântica original de searchProducts:
+ * o termo em minúsculas contido no título, descrição, categoria ou marca em minúsculas).
+ * Os trigramas do termo dão um conjunto de candidatos, e cada candidato é verificado com
+ * contains(), então o resultado é idêntico ao da varredura completa, na ordem do catálogo.
+ * O índice é opcional por campo (meli.search.ngram.fields): campos sem índice são varridos.
+ * Termos com menos de 3 caracteres não têm trigramas e também caem na varredura.
+ */
+@Component
+public class ProductSubstringIndex implements ProductChangeListener {
+
+    private static final int GRAM = 3;
+
+    public enum Field {
+        TITLE(Product::getTitle),
+        DESCRIPTION(Product::getDescription),
+        CATEGORY(Product::getCategory),
+        BRAND(Product::getBrand);
+
+        private final Function<Product, String> accessor;
+
+        Field(Function<Product, String> accessor) {
+            this.accessor = accessor;
+        }
+
+        String text(Product product) {
+            String text = accessor.apply(product);
+            // Mesma normalização da busca original (toLowerCase do locale padrão)
+            return text == null ? null : text.toLowerCase();
+        }
+    }
+
+    private final ProductRepository productRepository;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Field, TrigramPostings> indexes = new EnumMap<>(Field.class);
+    private final Set<Field> scannedFields = EnumSet.allOf(Field.class);
+    private final IntObjectIndex<Integer> rankById = new IntObjectIndex<>();
+    private int[] idByRank = new int[64];
+    private int nextRank;
+    // Estimativa dos campos sem índice, válida enquanto o catálogo estiver na mesma versão
+    private final ReentrantLock estimateLock = new ReentrantLock();
+    private volatile Estimate estimate;
+
+    public ProductSubstringIndex(ProductRepository productRepository,
+                                 @Value("${meli.search.mode:substring}") String searchMode,
+                                 @Value("${meli.search.ngram.fields:title,description,category,brand}") String ngramFields) {
+        this.productRepository = productRepository;
+        if (!"substring".equalsIgnoreCase(searchMode.trim())) {
+            System.out.println("DEBUG: ProductSubstringIndex - Search mode is '" + searchMode + "'; trigram index disabled.");
+            return;
+        }
+        for (String name : ngramFields.split(",")) {
+            if (name.isBlank()) {
+                continue;
+            }
+            try {
+                Field field = Field.valueOf(name.trim().toUpperCase(Locale.ROOT));
+                indexes.put(field, new TrigramPostings());
+                scannedFields.remove(field);
+            } catch (IllegalArgumentException e) {
+                System.err.println("WARN: ProductSubstringIndex - Unknown field '" + name.trim() + "' in meli.search.ngram.fields; ignoring.");
+            }
+        }
+        if (!indexes.isEmpty()) {
+            List<Product> products = productRepository.addListener(this);
+            lock.writeLock().lock();
+            try {
+                for (Product product : products) {
+                    add(product);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        System.out.println("DEBUG: ProductSubstringIndex - Trigram index on " + indexes.keySet() + ", scanning " + scannedFields + ".");
+    }
+
+    @Override
+    public void onProductSaved(Product previous, Product current) {
+        lock.writeLock().lock();
+        try {
+            Integer rank = previous == null ? null : rankById.get(previous.getId());
+            if (rank == null) {
+                add(current);
+                return;
+            }
+            for (Map.Entry<Field, TrigramPostings> entry : indexes.entrySet()) {
+                String before = entry.getKey().text(previous);
+                String after = entry.getKey().text(current);
+                if (!Objects.equals(before, after)) {
+                    entry.getValue().remove(rank, before);
+                    entry.getValue().add(rank, after);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onProductDeleted(Product previous) {
+        lock.writeLock().lock();
+        try {
+            Integer rank = rankById.remove(previous.getId());
+            if (rank != null) {
+                for (Map.Entry<Field, TrigramPostings> entry : indexes.entrySet()) {
+                    entry.getValue().remove(rank, entry.getKey().text(previous));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Produtos cujo título, descrição, categoria ou marca contém o termo (sem diferenciar
+     * maiúsculas/minúsculas), na ordem do catálogo. Mesmo resultado da varredura completa.
+     */
+    public List<Product> search(String searchTerm) {
+        String needle = searchTerm.trim().toLowerCase();
+        lock.readLock().lock();
+        try {
+            int[] candidates = needle.length() >= GRAM && !indexes.isEmpty() ? candidates(needle) : null;
+            if (candidates != null && scannedFields.isEmpty()) {
+                List<Product> result = new ArrayList<>(candidates.length);
+                for (int rank : candidates) {
+                    Product product = productRepository.findById(idByRank[rank]);
+                    if (product != null && matches(product, needle, indexes.keySet())) {
+                        result.add(product);
+                    }
+                }
+                return result;
+            }
+            return scan(needle, candidates);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Tamanho de cada índice de campo (trigramas distintos, postagens e estimativa de bytes).
+     * Para campos sem índice, a estimativa é calculada sobre o catálogo, para ajudar a decidir se
+     * vale habilitá-los; ela é guardada e só é refeita quando o catálogo muda de versão.
+     */
+    public Map<String, Object> stats() {
+        Estimate scanned = scannedFields.isEmpty() ? null : estimate();
+        Map<String, Object> fields = new LinkedHashMap<>();
+        long totalBytes = 0;
+        for (Field field : Field.values()) {
+            Map<String, Object> fieldStats;
+            lock.readLock().lock();
+            try {
+                TrigramPostings postings = indexes.get(field);
+                fieldStats = postings == null ? null : postings.stats(true);
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (fieldStats == null) {
+                fieldStats = scanned.fields.get(field);
+            } else {
+                totalBytes += (long) fieldStats.get("estimatedBytes");
+            }
+            fields.put(field.name().toLowerCase(Locale.ROOT), fieldStats);
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("products", productRepository.snapshot().size());
+        stats.put("indexedEstimatedBytes", totalBytes);
+        stats.put("fields", fields);
+        return stats;
+    }
+
+    /*
+     * Estimativa dos campos sem índice para a versão atual do catálogo. A versão é lida antes do
+     * snapshot: se o catálogo mudar no meio, a estimativa fica marcada com a versão anterior e é
+     * refeita na próxima chamada. Chamadas concorrentes esperam um único cálculo.
+     */
+    private Estimate estimate() {
+        long version = productRepository.version();
+        Estimate cached = estimate;
+        if (cached != null && cached.catalogVersion == version) {
+            return cached;
+        }
+        estimateLock.lock();
+        try {
+            cached = estimate;
+            if (cached != null && cached.catalogVersion == version) {
+                return cached;
+            }
+            List<Product> products = productRepository.snapshot();
+            Map<Field, Map<String, Object>> fields = new EnumMap<>(Field.class);
+            for (Field field : scannedFields) {
+                TrigramPostings postings = new TrigramPostings();
+                for (int rank = 0; rank < products.size(); rank++) {
+                    postings.add(rank, field.text(products.get(rank)));
+                }
+                fields.put(field, Collections.unmodifiableMap(postings.stats(false)));
+            }
+            cached = new Estimate(version, fields);
+            estimate = cached;
+            return cached;
+        } finally {
+            estimateLock.unlock();
+        }
+    }
+
+    private void add(Product product) {
+        int rank = nextRank++;
+        if (rank >= idByRank.length) {
+            idByRank = Arrays.copyOf(idByRank, idByRank.length << 1);
+        }
+        idByRank[rank] = product.getId();
+        rankById.put(product.getId(), rank);
+        for (Map.Entry<Field, TrigramPostings> entry : indexes.entrySet()) {
+            entry.getValue().add(rank, entry.getKey().text(product));
+        }
+    }
+
+    /*
+     * União, entre os campos indexados, dos produtos que contêm todos os trigramas do termo.
+     */
+    private int[] candidates(String needle) {
+        List<int[]> perField = new ArrayList<>(indexes.size());
+        for (TrigramPostings postings : indexes.values()) {
+            int[] ranks = postings.containingAll(needle);
+            if (ranks.length > 0) {
+                perField.add(ranks);
+            }
+        }
+        return perField.size() == 1 ? perField.get(0) : PostingList.union(perField);
+    }
+
+    /*
+     * Varredura do catálogo: campos sem índice são sempre verificados; campos indexados
+     * só para os candidatos (ou para todos, quando o termo é curto demais para trigramas).
+     */
+    private List<Product> scan(String needle, int[] candidates) {
+        List<Product> result = new ArrayList<>();
+        for (Product product : productRepository.snapshot()) {
+            boolean matches;
+            if (candidates == null) {
+                matches = matches(product, needle, EnumSet.allOf(Field.class));
+            } else {
+                matches = matches(product, needle, scannedFields);
+                if (!matches) {
+                    Integer rank = rankById.get(product.getId());
+                    matches = rank != null && Arrays.binarySearch(candidates, rank) >= 0
+                            && matches(product, needle, indexes.keySet());
+                }
+            }
+            if (matches) {
+                result.add(product);
+            }
+        }
+        return result;
+    }
+
+    private static boolean matches(Product product, String needle, Set<Field> fields) {
+        for (Field field : fields) {
+            String text = field.text(product);
+            if (text != null && text.contains(needle)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Estimate {
+        private final long catalogVersion;
+        private final Map<Field, Map<String, Object>> fields;
+
+        private Estimate(long catalogVersion, Map<Field, Map<String, Object>> fields) {
+            this.catalogVersion = catalogVersion;
+            this.fields = fields;
+        }
+    }
+
+    /*
+     * Trigramas de um campo: cada trigrama (3 chars de 16 bits em um long) -> ranks dos produtos.
+     */
+    private static final class TrigramPostings {
+        // Estimativas para JVM 64 bits com compressed oops: entrada do HashMap (+ slot da tabela),
+        // Long da chave, objeto PostingList e cabeçalho do int[] interno
+        private static final long BYTES_PER_TRIGRAM = 40 + 16 + 24 + 16;
+
+        private final Map<Long, PostingList> postings = new HashMap<>();
+        private long postingCount;
+
+        void add(int rank, String text) {
+            for (long gram : trigrams(text)) {
+                PostingList list = postings.computeIfAbsent(gram, g -> new PostingList());
+                int before = list.size();
+                list.add(rank);
+                postingCount += list.size() - before;
+            }
+        }
+
+        void remove(int rank, String text) {
+            for (long gram : trigrams(text)) {
+                PostingList list = postings.get(gram);
+                if (list != null) {
+                    int before = list.size();
+                    list.remove(rank);
+                    postingCount -= before - list.size();
+                    if (list.size() == 0) {
+                        postings.remove(gram);
+                    }
+                }
+            }
+        }
+
+        int[] containingAll(String needle) {
+            long[] grams = trigrams(needle);
+            List<int[]> lists = new ArrayList<>(grams.length);
+            for (long gram : grams) {
+                PostingList list = postings.get(gram);
+                if (list == null) {
+                    return new int[0];
+                }
+                lists.add(list.toArray());
+            }
+            return PostingList.intersect(lists);
+        }
+
+        Map<String, Object> stats(boolean indexed) {
+            long bytes = 0;
+            for (PostingList list : postings.values()) {
+                bytes += BYTES_PER_TRIGRAM + 4L * list.capacity();
+            }
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("indexed", indexed);
+            stats.put("trigrams", postings.size());
+            stats.put("postings", postingCount);
+            stats.put("estimatedBytes", bytes);
+            return stats;
+        }
+
+        /*
+         * Trigramas distintos do texto, ordenados.
+         */
+        private static long[] trigrams(String text) {
+            if (text == null || text.length() < GRAM) {
+                return new long[0];
+            }
+            long[] grams = new long[text.length() - GRAM + 1];
+            for (int i = 0; i < grams.length; i++) {
+                grams[i] = ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+            }
+            Arrays.sort(grams);
+            int distinct = 0;
+            for (int i = 0; i < grams.length; i++) {
+                if (i == 0 || grams[i] != grams[i - 1]) {
+                    grams[distinct++] = grams[i];
+                }
+            }
+            return Arrays.copyOf(grams, distinct);
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package com.meli.service;
+
+import java.util.Arrays;
+
+/*
+ * Bitmap comprimido de posições (ranks) do catálogo, no formato do Roaring: os ranks são
+ * agrupados pelos 16 bits altos e cada grupo guarda os 16 bits baixos em um contêiner que é
+ * um array ordenado de char (até 4096 valores, 2 bytes por valor) ou um bitmap de 8 KB
+ * (acima disso). Conjuntos esparsos ficam pequenos e conjuntos densos viram operações por palavra.
+ * Não é thread-safe; o índice dono faz o lock. Operações binárias retornam novos bitmaps.
+ */
+final class RankBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1 << 10; // 65536 bits
+
+    private char[] keys = new char[4];
+    private Object[] containers = new Object[4]; // char[] (array) ou long[] (bitmap)
+    private int[] cardinalities = new int[4];
+    private int size;
+
+    void add(int rank) {
+        char key = (char) (rank >>> 16);
+        char low = (char) rank;
+        int i = indexOf(key);
+        if (i < 0) {
+            i = -i - 1;
+            insertContainer(i, key, new char[4], 0);
+        }
+        Object container = containers[i];
+        int card = cardinalities[i];
+        if (container instanceof long[]) {
+            long[] words = (long[]) container;
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) == 0) {
+                words[low >>> 6] |= bit;
+                cardinalities[i] = card + 1;
+            }
+            return;
+        }
+        char[] values = (char[]) container;
+        int pos = card > 0 && values[card - 1] < low ? -(card + 1) : Arrays.binarySearch(values, 0, card, low);
+        if (pos >= 0) {
+            return;
+        }
+        pos = -pos - 1;
+        if (card == ARRAY_MAX) {
+            long[] words = toWords(values, card);
+            words[low >>> 6] |= 1L << low;
+            containers[i] = words;
+            cardinalities[i] = card + 1;
+            return;
+        }
+        if (card == values.length) {
+            values = Arrays.copyOf(values, Math.min(ARRAY_MAX, card << 1));
+            containers[i] = values;
+        }
+        System.arraycopy(values, pos, values, pos + 1, card - pos);
+        values[pos] = low;
+        cardinalities[i] = card + 1;
+    }
+
+    void remove(int rank) {
+        int i = indexOf((char) (rank >>> 16));
+        if (i < 0) {
+            return;
+        }
+        char low = (char) rank;
+        Object container = containers[i];
+        int card = cardinalities[i];
+        if (container instanceof long[]) {
+            long[] words = (long[]) container;
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) == 0) {
+                return;
+            }
+            words[low >>> 6] &= ~bit;
+            card--;
+            if (card <= ARRAY_MAX) {
+                containers[i] = toValues(words, card);
+            }
+        } else {
+            char[] values = (char[]) container;
+            int pos = Arrays.binarySearch(values, 0, card, low);
+            if (pos < 0) {
+                return;
+            }
+            System.arraycopy(values, pos + 1, values, pos, card - pos - 1);
+            card--;
+        }
+        if (card == 0) {
+            removeContainer(i);
+        } else {
+            cardinalities[i] = card;
+        }
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int cardinality() {
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += cardinalities[i];
+        }
+        return total;
+    }
+
+    RankBitmap and(RankBitmap other) {
+        RankBitmap result = new RankBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.appendAnd(keys[i], containers[i], cardinalities[i], other.containers[j], other.cardinalities[j]);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Cardinalidade da interseção sem materializar o resultado (usada nas contagens de facetas).
+     */
+    int andCardinality(RankBitmap other) {
+        int total = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                total += andCardinality(containers[i], cardinalities[i], other.containers[j], other.cardinalities[j]);
+                i++;
+                j++;
+            }
+        }
+        return total;
+    }
+
+    RankBitmap or(RankBitmap other) {
+        RankBitmap result = new RankBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j >= other.size || (i < size && keys[i] < other.keys[j])) {
+                result.appendCopy(keys[i], containers[i], cardinalities[i]);
+                i++;
+            } else if (i >= size || keys[i] > other.keys[j]) {
+                result.appendCopy(other.keys[j], other.containers[j], other.cardinalities[j]);
+                j++;
+            } else {
+                long[] words = words(containers[i], cardinalities[i]);
+                orInto(words, other.containers[j], other.cardinalities[j]);
+                result.appendWords(keys[i], words);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    RankBitmap andNot(RankBitmap other) {
+        RankBitmap result = new RankBitmap();
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+            if (j < other.size && other.keys[j] == keys[i]) {
+                long[] words = words(containers[i], cardinalities[i]);
+                long[] mask = words(other.containers[j], other.cardinalities[j]);
+                for (int w = 0; w < WORDS; w++) {
+                    words[w] &= ~mask[w];
+                }
+                result.appendWords(keys[i], words);
+            } else {
+                result.appendCopy(keys[i], containers[i], cardinalities[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Ranks em ordem crescente (ordem do catálogo).
+     */
+    int[] toArray() {
+        int[] ranks = new int[cardinality()];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            int high = keys[i] << 16;
+            Object container = containers[i];
+            if (container instanceof long[]) {
+                long[] words = (long[]) container;
+                for (int w = 0; w < WORDS; w++) {
+                    long word = words[w];
+                    while (word != 0) {
+                        ranks[n++] = high | (w << 6) | Long.numberOfTrailingZeros(word);
+                        word &= word - 1;
+                    }
+                }
+            } else {
+                char[] values = (char[]) container;
+                for (int v = 0; v < cardinalities[i]; v++) {
+                    ranks[n++] = high | values[v];
+                }
+            }
+        }
+        return ranks;
+    }
+
+    private void appendAnd(char key, Object a, int cardA, Object b, int cardB) {
+        if (a instanceof long[] && b instanceof long[]) {
+            long[] words = ((long[]) a).clone();
+            long[] other = (long[]) b;
+            for (int w = 0; w < WORDS; w++) {
+                words[w] &= other[w];
+            }
+            appendWords(key, words);
+            return;
+        }
+        char[] values = new char[Math.min(cardA, cardB)];
+        int n = 0;
+        if (a instanceof char[] && b instanceof char[]) {
+            char[] x = (char[]) a;
+            char[] y = (char[]) b;
+            int i = 0;
+            int j = 0;
+            while (i < cardA && j < cardB) {
+                if (x[i] < y[j]) {
+                    i++;
+                } else if (x[i] > y[j]) {
+                    j++;
+                } else {
+                    values[n++] = x[i];
+                    i++;
+                    j++;
+                }
+            }
+        } else {
+            char[] array = (char[]) (a instanceof char[] ? a : b);
+            int arrayCard = a instanceof char[] ? cardA : cardB;
+            long[] words = (long[]) (a instanceof long[] ? a : b);
+            for (int v = 0; v < arrayCard; v++) {
+                char low = array[v];
+                if ((words[low >>> 6] & (1L << low)) != 0) {
+                    values[n++] = low;
+                }
+            }
+        }
+        if (n > 0) {
+            append(key, Arrays.copyOf(values, n), n);
+        }
+    }
+
+    private static int andCardinality(Object a, int cardA, Object b, int cardB) {
+        if (a instanceof long[] && b instanceof long[]) {
+            long[] x = (long[]) a;
+            long[] y = (long[]) b;
+            int total = 0;
+            for (int w = 0; w < WORDS; w++) {
+                total += Long.bitCount(x[w] & y[w]);
+            }
+            return total;
+        }
+        if (a instanceof char[] && b instanceof char[]) {
+            char[] x = (char[]) a;
+            char[] y = (char[]) b;
+            int total = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardA && j < cardB) {
+                if (x[i] < y[j]) {
+                    i++;
+                } else if (x[i] > y[j]) {
+                    j++;
+                } else {
+                    total++;
+                    i++;
+                    j++;
+                }
+            }
+            return total;
+        }
+        char[] array = (char[]) (a instanceof char[] ? a : b);
+        int arrayCard = a instanceof char[] ? cardA : cardB;
+        long[] words = (long[]) (a instanceof long[] ? a : b);
+        int total = 0;
+        for (int v = 0; v < arrayCard; v++) {
+            char low = array[v];
+            if ((words[low >>> 6] & (1L << low)) != 0) {
+                total++;
+            }
+        }
+        return total;
+    }
+
+    private static void orInto(long[] words, Object container, int card) {
+        if (container instanceof long[]) {
+            long[] other = (long[]) container;
+            for (int w = 0; w < WORDS; w++) {
+                words[w] |= other[w];
+            }
+        } else {
+            char[] values = (char[]) container;
+            for (int v = 0; v < card; v++) {
+                words[values[v] >>> 6] |= 1L << values[v];
+            }
+        }
+    }
+
+    /*
+     * Cópia do contêiner como bitmap de palavras (sempre um array novo).
+     */
+    private static long[] words(Object container, int card) {
+        if (container instanceof long[]) {
+            return ((long[]) container).clone();
+        }
+        return toWords((char[]) container, card);
+    }
+
+    private static long[] toWords(char[] values, int card) {
+        long[] words = new long[WORDS];
+        for (int v = 0; v < card; v++) {
+            words[values[v] >>> 6] |= 1L << values[v];
+        }
+        return words;
+    }
+
+    private static char[] toValues(long[] words, int card) {
+        char[] values = new char[Math.max(card, 1)];
+        int n = 0;
+        for (int w = 0; w < WORDS; w++) {
+            long word = words[w];
+            while (word != 0) {
+                values[n++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return values;
+    }
+
+    /*
+     * Acrescenta um contêiner de palavras (chave maior que as existentes), escolhendo o formato
+     * pela cardinalidade.
+     */
+    private void appendWords(char key, long[] words) {
+        int card = 0;
+        for (long word : words) {
+            card += Long.bitCount(word);
+        }
+        if (card == 0) {
+            return;
+        }
+        append(key, card <= ARRAY_MAX ? toValues(words, card) : words, card);
+    }
+
+    private void appendCopy(char key, Object container, int card) {
+        Object copy = container instanceof long[]
+                ? ((long[]) container).clone()
+                : Arrays.copyOf((char[]) container, card);
+        append(key, copy, card);
+    }
+
+    private void append(char key, Object container, int card) {
+        insertContainer(size, key, container, card);
+    }
+
+    private void insertContainer(int i, char key, Object container, int card) {
+        if (size == keys.length) {
+            int capacity = size << 1;
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+            cardinalities = Arrays.copyOf(cardinalities, capacity);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        System.arraycopy(cardinalities, i, cardinalities, i + 1, size - i);
+        keys[i] = key;
+        containers[i] = container;
+        cardinalities[i] = card;
+        size++;
+    }
+
+    private void removeContainer(int i) {
+        System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+        System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+        System.arraycopy(cardinalities, i + 1, cardinalities, i, size - i - 1);
+        size--;
+        containers[size] = null;
+    }
+
+    private int indexOf(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+}
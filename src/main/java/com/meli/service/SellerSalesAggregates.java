@@ -0,0 +1,146 @@
+package com.meli.service;
+
+import com.meli.dto.SellerSalesSummaryDTO;
+import com.meli.model.Order;
+import com.meli.repository.OrderChangeListener;
+import com.meli.repository.OrderRepository;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Agregados de vendas por vendedor mantidos a cada gravação de pedido: quantidade de pedidos,
+ * unidades vendidas por produto e faturamento total e por status. Cada pedido guarda a contribuição
+ * que somou, então alterar (ex.: mudança de status) ou remover um pedido desfaz exatamente essa
+ * contribuição e aplica a nova, sem percorrer o histórico do vendedor.
+ * O faturamento usa o total gravado no pedido (preço da compra), em BigDecimal para que somas e
+ * subtrações sucessivas não acumulem erro de ponto flutuante.
+ */
+@Component
+public class SellerSalesAggregates implements OrderChangeListener {
+
+    private static final String UNKNOWN_STATUS = "UNKNOWN";
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Integer, Contribution> byOrder = new HashMap<>();
+    private final Map<Integer, SellerSales> bySeller = new HashMap<>();
+
+    public SellerSalesAggregates(OrderRepository orderRepository) {
+        List<Order> orders = orderRepository.addListener(this);
+        for (Order order : orders) {
+            onOrderSaved(order);
+        }
+        System.out.println("DEBUG: SellerSalesAggregates - Aggregated " + orders.size() + " orders for " + bySeller.size() + " sellers.");
+    }
+
+    @Override
+    public void onOrderSaved(Order order) {
+        Contribution contribution = new Contribution(order);
+        lock.lock();
+        try {
+            Contribution previous = byOrder.put(order.getId(), contribution);
+            if (previous != null) {
+                apply(previous, -1);
+            }
+            apply(contribution, 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onOrderDeleted(Order order) {
+        lock.lock();
+        try {
+            Contribution previous = byOrder.remove(order.getId());
+            if (previous != null) {
+                apply(previous, -1);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Resumo atual do vendedor; custo proporcional aos produtos e status dele, não aos pedidos.
+     * Vendedor sem pedidos recebe um resumo zerado.
+     */
+    public SellerSalesSummaryDTO getSummary(int sellerId) {
+        lock.lock();
+        try {
+            SellerSales sales = bySeller.get(sellerId);
+            if (sales == null) {
+                return new SellerSalesSummaryDTO(sellerId, 0, 0, new TreeMap<>(), 0.0, new TreeMap<>(), new TreeMap<>());
+            }
+            Map<String, Double> revenueByStatus = new TreeMap<>();
+            sales.revenueByStatus.forEach((status, revenue) -> revenueByStatus.put(status, revenue.doubleValue()));
+            return new SellerSalesSummaryDTO(sellerId, sales.orderCount, sales.unitsSold, new TreeMap<>(sales.unitsByProduct),
+                                             sales.revenue.doubleValue(), revenueByStatus, new TreeMap<>(sales.ordersByStatus));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Soma (sign = 1) ou desfaz (sign = -1) a contribuição de um pedido. Chamado com o lock.
+     */
+    private void apply(Contribution contribution, int sign) {
+        SellerSales sales = bySeller.computeIfAbsent(contribution.sellerId, id -> new SellerSales());
+        BigDecimal amount = sign > 0 ? contribution.total : contribution.total.negate();
+        sales.orderCount += sign;
+        sales.revenue = sales.revenue.add(amount);
+        sales.revenueByStatus.merge(contribution.status, amount, BigDecimal::add);
+        sales.ordersByStatus.merge(contribution.status, (long) sign, Long::sum);
+        for (Map.Entry<Integer, Integer> item : contribution.products.entrySet()) {
+            long units = (long) sign * item.getValue();
+            sales.unitsSold += units;
+            sales.unitsByProduct.merge(item.getKey(), units, Long::sum);
+        }
+        // Chaves que voltaram a zero saem do resumo (ex.: todos os pedidos do status mudaram)
+        if (sign < 0) {
+            sales.ordersByStatus.remove(contribution.status, 0L);
+            if (!sales.ordersByStatus.containsKey(contribution.status)) {
+                sales.revenueByStatus.remove(contribution.status);
+            }
+            for (Integer productId : contribution.products.keySet()) {
+                sales.unitsByProduct.remove(productId, 0L);
+            }
+            if (sales.orderCount == 0) {
+                bySeller.remove(contribution.sellerId);
+            }
+        }
+    }
+
+    /*
+     * O que um pedido somou aos agregados, guardado por id: a próxima versão publicada do pedido
+     * (ou a remoção) desfaz exatamente esta soma, sem depender dos campos da versão anterior.
+     */
+    private static final class Contribution {
+        private final int sellerId;
+        private final String status;
+        private final BigDecimal total;
+        private final Map<Integer, Integer> products;
+
+        private Contribution(Order order) {
+            this.sellerId = order.getSellerId();
+            this.status = order.getStatus() == null ? UNKNOWN_STATUS : order.getStatus().name();
+            this.total = order.getTotal() == null ? BigDecimal.ZERO : BigDecimal.valueOf(order.getTotal());
+            this.products = order.getProducts() == null ? new HashMap<>() : new HashMap<>(order.getProducts());
+        }
+    }
+
+    private static final class SellerSales {
+        private long orderCount;
+        private long unitsSold;
+        private BigDecimal revenue = BigDecimal.ZERO;
+        private final Map<Integer, Long> unitsByProduct = new HashMap<>();
+        private final Map<String, BigDecimal> revenueByStatus = new LinkedHashMap<>();
+        private final Map<String, Long> ordersByStatus = new LinkedHashMap<>();
+    }
+}
@@ -0,0 +1,242 @@
+package com.meli.service;
+
+import com.meli.dto.BuyRequestDTO;
+import com.meli.model.Product;
+import com.meli.repository.IntObjectIndex;
+import com.meli.repository.PersistenceWriter;
+import com.meli.repository.ProductChangeListener;
+import com.meli.repository.ProductRepository;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Fonte da verdade do estoque disponível: um contador atômico por produto.
+ * A reserva é um decremento condicional com compareAndSet (sem lock), então compras simultâneas
+ * do mesmo produto nunca vendem além do estoque, e compras de produtos diferentes não disputam nada.
+ * O mapa de contadores é copy-on-write: só muda quando produtos são criados ou removidos.
+ * Depois de reservar, o estoque é publicado no ProductRepository (uma gravação por compra).
+ */
+@Service
+public class StockService implements ProductChangeListener {
+
+    private final ProductRepository productRepository;
+    // Serializa as trocas do mapa de contadores (copy-on-write)
+    private final ReentrantLock lock = new ReentrantLock();
+    // Produtos com estoque nulo não têm contador (tratados como sem estoque, como antes)
+    private volatile IntObjectIndex<AtomicInteger> counters = new IntObjectIndex<>();
+
+    public StockService(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+        for (Product product : productRepository.addListener(this)) {
+            onProductSaved(null, product);
+        }
+    }
+
+    /**
+     * Produto novo ganha um contador. Alterações de produtos existentes não mexem no contador:
+     * o estoque só muda por reserve/release/applyEdit.
+     */
+    @Override
+    public void onProductSaved(Product previous, Product current) {
+        lock.lock();
+        try {
+            if (previous == null && current.getStock() != null) {
+                IntObjectIndex<AtomicInteger> next = counters.copy();
+                next.put(current.getId(), new AtomicInteger(current.getStock()));
+                counters = next;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onProductDeleted(Product previous) {
+        lock.lock();
+        try {
+            if (counters.containsKey(previous.getId())) {
+                IntObjectIndex<AtomicInteger> next = counters.copy();
+                next.remove(previous.getId());
+                counters = next;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Estoque disponível agora, ou null se o produto não controla estoque.
+     */
+    public Integer getStock(int productId) {
+        AtomicInteger counter = counters.get(productId);
+        return counter == null ? null : counter.get();
+    }
+
+    /**
+     * Decrementa o estoque somente se houver quantidade suficiente.
+     */
+    public boolean tryReserve(int productId, int quantity) {
+        AtomicInteger counter = counters.get(productId);
+        if (counter == null) {
+            return false;
+        }
+        while (true) {
+            int available = counter.get();
+            if (available < quantity) {
+                return false;
+            }
+            if (counter.compareAndSet(available, available - quantity)) {
+                return true;
+            }
+        }
+    }
+
+    public void release(int productId, int quantity) {
+        AtomicInteger counter = counters.get(productId);
+        if (counter != null) {
+            counter.addAndGet(quantity);
+        }
+    }
+
+    /**
+     * Reserva todos os itens ou nenhum. Quantidades do mesmo produto são somadas; se algum
+     * item falhar, os já reservados são devolvidos. Não grava nada (ver publish).
+     */
+    public Reservation reserveAll(List<BuyRequestDTO> items) {
+        List<String> errors = new ArrayList<>();
+        Map<Integer, Integer> quantities = new LinkedHashMap<>();
+        for (BuyRequestDTO item : items) {
+            if (item == null || item.getId() == null || item.getQuantity() == null || item.getQuantity() <= 0) {
+                errors.add("Dados de item inválidos: ID ou quantidade ausente/inválida para um item.");
+                continue;
+            }
+            if (productRepository.findById(item.getId()) == null) {
+                errors.add("Produto com ID " + item.getId() + " não encontrado.");
+                continue;
+            }
+            quantities.merge(item.getId(), item.getQuantity(), Integer::sum);
+        }
+        if (!errors.isEmpty()) {
+            return new Reservation(Collections.emptyMap(), errors);
+        }
+        Map<Integer, Integer> reserved = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Integer> entry : quantities.entrySet()) {
+            int productId = entry.getKey();
+            int quantity = entry.getValue();
+            if (tryReserve(productId, quantity)) {
+                reserved.put(productId, quantity);
+                continue;
+            }
+            Product product = productRepository.findById(productId);
+            String title = product == null ? "?" : product.getTitle();
+            errors.add("Estoque insuficiente para o produto " + title + " (ID: " + productId + "). Disponível: " + getStock(productId) + ", Solicitado: " + quantity + ".");
+            reserved.forEach(this::release);
+            return new Reservation(Collections.emptyMap(), errors);
+        }
+        return new Reservation(reserved, errors);
+    }
+
+    /**
+     * Devolve ao estoque tudo o que a reserva pegou.
+     */
+    public void cancel(Reservation reservation) {
+        reservation.getQuantities().forEach(this::release);
+    }
+
+    /**
+     * Grava no catálogo o estoque atual dos produtos da reserva, em uma única publicação.
+     */
+    public void publish(Reservation reservation) {
+        publish(reservation.getQuantities().keySet());
+    }
+
+    public void publish(Collection<Integer> productIds) {
+        if (!productIds.isEmpty()) {
+            productRepository.updateStock(productIds, this::getStock);
+        }
+    }
+
+    /**
+     * Publica o estoque da reserva sem esperar a gravação (ver ProductRepository.enqueueStockUpdate).
+     * @return A escrita pendente, ou null se nada mudou.
+     */
+    public PersistenceWriter.PendingWrite enqueuePublish(Reservation reservation) {
+        return enqueuePublish(reservation.getQuantities().keySet());
+    }
+
+    public PersistenceWriter.PendingWrite enqueuePublish(Collection<Integer> productIds) {
+        if (productIds.isEmpty()) {
+            return null;
+        }
+        return productRepository.enqueueStockUpdate(productIds, this::getStock);
+    }
+
+    /**
+     * Aplica a edição de estoque feita pelo vendedor (ver ProductRepository.update, chamado com o lock do repositório).
+     * O estoque pedido é tratado como diferença sobre o estoque da versão que ele substitui, somada
+     * ao contador com CAS: unidades reservadas desde então não voltam. O resultado não fica negativo.
+     * Passar a controlar (ou deixar de controlar) o estoque cria (ou remove) o contador.
+     * @return O estoque a publicar.
+     */
+    public Integer applyEdit(int productId, Integer publishedStock, Integer requestedStock) {
+        AtomicInteger counter = counters.get(productId);
+        if (requestedStock != null && counter != null) {
+            int delta = requestedStock - (publishedStock == null ? 0 : publishedStock);
+            while (true) {
+                int available = counter.get();
+                int next = Math.max(0, available + delta);
+                if (counter.compareAndSet(available, next)) {
+                    return next;
+                }
+            }
+        }
+        lock.lock();
+        try {
+            if (requestedStock == null && counters.containsKey(productId)) {
+                IntObjectIndex<AtomicInteger> next = counters.copy();
+                next.remove(productId);
+                counters = next;
+            } else if (requestedStock != null && !counters.containsKey(productId)) {
+                IntObjectIndex<AtomicInteger> next = counters.copy();
+                next.put(productId, new AtomicInteger(requestedStock));
+                counters = next;
+            }
+            return requestedStock;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Resultado de reserveAll: quantidades reservadas por produto, ou os erros (nada reservado).
+     */
+    public static final class Reservation {
+        private final Map<Integer, Integer> quantities;
+        private final List<String> errors;
+
+        private Reservation(Map<Integer, Integer> quantities, List<String> errors) {
+            this.quantities = Collections.unmodifiableMap(quantities);
+            this.errors = Collections.unmodifiableList(errors);
+        }
+
+        public boolean isSuccessful() {
+            return errors.isEmpty();
+        }
+
+        public Map<Integer, Integer> getQuantities() {
+            return quantities;
+        }
+
+        public List<String> getErrors() {
+            return errors;
+        }
+    }
+}
@@ -33,14 +33,13 @@ public class UserService {
      * Returns Optional.empty() if email already exists.
      */
     public Optional<User> registerUser(User user) { 
-        // Verificar se o email já existe usando o repositório
-        if (userRepository.findUserByEmail(user.getEmail()).isPresent()) {
+        // Verificação de email e inserção são atômicas no repositório (índice de emails)
+        // O ID será gerado e atribuído pelo UserRepository
+        if (!userRepository.register(user)) {
             System.out.println("DEBUG: UserService.registerUser - Registration failed: Email already exists.");
             return Optional.empty(); // Email já existe
         }
 
-        // O ID será gerado e atribuído pelo UserRepository.save()
-        userRepository.save(user); // Delega ao UserRepository
         System.out.println("DEBUG: UserService.registerUser - Registered new user: " + user.getEmail() + " with ID: " + user.getId());
         return Optional.of(user); // Retorna o usuário salvo (com ID atribuído pelo repo)
     }
@@ -100,17 +99,24 @@ public class UserService {
     }
 
     public Optional<User> updateUser(User userDetails) {
-        User existingUser = getUserById(userDetails.getId());
-        if (existingUser != null) {
-            if (!existingUser.getEmail().equalsIgnoreCase(userDetails.getEmail())) {
-                if (findByEmail(userDetails.getEmail()) != null) {
-                    System.out.println("DEBUG: UserService - Update failed: Email already in use by another user.");
-                    return Optional.empty();
-                }
+        return updateUser(userDetails, null);
+    }
+
+    /**
+     * Atualiza o usuário somente se a versão atual ainda for expectedVersion (null = sem verificação).
+     * Verificação, alteração e gravação acontecem juntas no repositório (compare-and-set); as
+     * alterações são aplicadas a uma cópia, publicada como nova versão do usuário.
+     * @throws com.meli.repository.VersionConflictException se o usuário mudou desde a versão esperada.
+     */
+    public Optional<User> updateUser(User userDetails, Long expectedVersion) {
+        boolean updated = userRepository.update(userDetails.getId(), expectedVersion, existingUser -> {
+            // Troca atômica no índice de emails: falha se outro usuário já usa o email
+            if (!userRepository.changeEmail(existingUser, userDetails.getEmail())) {
+                System.out.println("DEBUG: UserService - Update failed: Email already in use by another user.");
+                return false;
             }
 
             existingUser.setName(userDetails.getName());
-            existingUser.setEmail(userDetails.getEmail());
             existingUser.setCpf(userDetails.getCpf());
             existingUser.setAddress(userDetails.getAddress());
 
@@ -124,11 +130,12 @@ public class UserService {
                 existingConsumer.setPreferredPaymentMethod(updatedConsumerDetails.getPreferredPaymentMethod());
                 System.out.println("DEBUG: UserService - Updated preferredPaymentMethod for Consumer ID " + existingConsumer.getId() + " to: " + existingConsumer.getPreferredPaymentMethod());
             }
-            
-            userRepository.save(existingUser); // Delega ao UserRepository para salvar a atualização
-            return Optional.of(existingUser);
+            return true;
+        });
+        if (updated) {
+            return Optional.of(getUserById(userDetails.getId()));
         }
-        System.out.println("DEBUG: UserService - Update failed: User with ID " + userDetails.getId() + " not found.");
+        System.out.println("DEBUG: UserService - Update failed for user with ID " + userDetails.getId() + ".");
         return Optional.empty();
     }
 }
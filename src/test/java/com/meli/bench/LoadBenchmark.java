@@ -0,0 +1,190 @@
+package com.meli.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Benchmark de carga em laço fechado: cada conexão simulada envia uma requisição, espera a resposta
+ * e envia a próxima. Mede vazão e latência (p50/p99/máx) para cada nível de concorrência.
+ * Não é um teste (não roda no mvn test); é executado por bench/run-benchmark.sh contra uma
+ * instância já iniciada, uma vez com threads de plataforma e outra com threads virtuais.
+ *
+ * Uso: LoadBenchmark <baseUrl> <rótulo> <conexões,...> <segundos por nível> <fração de escritas>
+ * Mistura: GET /products/{id}, GET /products/search?term=... e, na fração de escritas,
+ * PUT /cart/set-quantity (grava no log de usuários, o caminho que bloqueia em I/O).
+ */
+public class LoadBenchmark {
+
+    private static final int[] CONSUMER_IDS = {4, 7, 12};
+    private static final String[] SEARCH_TERMS = {"samsung", "fone", "notebook", "camisa", "tv", "apple"};
+    // Histograma em passos de 100 µs até 60 s
+    private static final int BUCKETS = 600_000;
+    private static final long BUCKET_NANOS = 100_000L;
+
+    private final HttpClient client;
+    private final String baseUrl;
+    private final int[] productIds;
+    private final double writeFraction;
+
+    private LoadBenchmark(String baseUrl, int[] productIds, double writeFraction) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        this.baseUrl = baseUrl;
+        this.productIds = productIds;
+        this.writeFraction = writeFraction;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 5) {
+            System.err.println("Uso: LoadBenchmark <baseUrl> <rótulo> <conexões,...> <segundos por nível> <fração de escritas>");
+            System.exit(2);
+        }
+        String baseUrl = args[0];
+        String label = args[1];
+        int seconds = Integer.parseInt(args[3]);
+        double writeFraction = Double.parseDouble(args[4]);
+
+        LoadBenchmark benchmark = new LoadBenchmark(baseUrl, fetchProductIds(baseUrl), writeFraction);
+        System.out.println(String.format(Locale.ROOT, "%-10s %8s %10s %8s %10s %9s %9s %9s",
+                "mode", "conns", "requests", "errors", "req/s", "p50 ms", "p99 ms", "max ms"));
+        for (String level : args[2].split(",")) {
+            int connections = Integer.parseInt(level.trim());
+            // Aquecimento curto em cada nível (abre as conexões), fora da medição
+            benchmark.run(connections, Math.max(2, seconds / 5));
+            Result result = benchmark.run(connections, seconds);
+            System.out.println(String.format(Locale.ROOT, "%-10s %8d %10d %8d %10.1f %9.2f %9.2f %9.2f",
+                    label, connections, result.requests, result.errors, result.requests / (double) seconds,
+                    result.percentileMs(0.50), result.percentileMs(0.99), result.maxMs()));
+        }
+    }
+
+    private static int[] fetchProductIds(String baseUrl) throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/products")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        JsonNode products = new ObjectMapper().readTree(response.body());
+        List<Integer> ids = new ArrayList<>();
+        products.forEach(p -> ids.add(p.get("id").asInt()));
+        if (ids.isEmpty()) {
+            throw new IllegalStateException("GET /products não retornou produtos em estoque.");
+        }
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private Result run(int connections, int seconds) {
+        Result result = new Result();
+        long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+        List<CompletableFuture<Void>> loops = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            loops.add(loop(deadline, result));
+        }
+        CompletableFuture.allOf(loops.toArray(new CompletableFuture<?>[0])).join();
+        result.finish();
+        return result;
+    }
+
+    /*
+     * Uma conexão simulada: encadeia a próxima requisição na conclusão da anterior até o prazo.
+     */
+    private CompletableFuture<Void> loop(long deadline, Result result) {
+        if (System.nanoTime() >= deadline) {
+            return CompletableFuture.completedFuture(null);
+        }
+        long start = System.nanoTime();
+        return client.sendAsync(nextRequest(), HttpResponse.BodyHandlers.discarding())
+                .handle((response, error) -> {
+                    result.record(System.nanoTime() - start, error != null || isFailure(response));
+                    return null;
+                })
+                .thenCompose(ignored -> loop(deadline, result));
+    }
+
+    /*
+     * Leituras só contam como sucesso com 200: um 4xx em GET indica requisição malformada no próprio
+     * benchmark (ex.: parâmetro de busca errado) e não pode entrar na vazão medida. Escritas no carrinho
+     * podem ser recusadas por estoque (4xx) e só contam como erro em 5xx.
+     */
+    private static boolean isFailure(HttpResponse<?> response) {
+        if ("GET".equals(response.request().method())) {
+            return response.statusCode() != 200;
+        }
+        return response.statusCode() >= 500;
+    }
+
+    private HttpRequest nextRequest() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int productId = productIds[random.nextInt(productIds.length)];
+        if (random.nextDouble() < writeFraction) {
+            int consumerId = CONSUMER_IDS[random.nextInt(CONSUMER_IDS.length)];
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/cart/set-quantity"))
+                    .timeout(Duration.ofSeconds(60))
+                    .header("Content-Type", "application/json")
+                    .header("X-User-Id", String.valueOf(consumerId))
+                    .PUT(HttpRequest.BodyPublishers.ofString("{\"id\":" + productId + ",\"quantity\":1}"))
+                    .build();
+        }
+        String path = random.nextBoolean()
+                ? "/products/" + productId
+                : "/products/search?term=" + URLEncoder.encode(SEARCH_TERMS[random.nextInt(SEARCH_TERMS.length)], StandardCharsets.UTF_8);
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(60)).GET().build();
+    }
+
+    private static final class Result {
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+        private final LongAdder errorCount = new LongAdder();
+        private long requests;
+        private long errors;
+
+        private void record(long nanos, boolean failed) {
+            histogram.incrementAndGet((int) Math.min(BUCKETS - 1, nanos / BUCKET_NANOS));
+            if (failed) {
+                errorCount.increment();
+            }
+        }
+
+        private void finish() {
+            for (int i = 0; i < BUCKETS; i++) {
+                requests += histogram.get(i);
+            }
+            errors = errorCount.sum();
+        }
+
+        private double percentileMs(double percentile) {
+            long target = (long) Math.ceil(requests * percentile);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += histogram.get(i);
+                if (seen >= target && seen > 0) {
+                    return (i + 1) * BUCKET_NANOS / 1_000_000.0;
+                }
+            }
+            return 0;
+        }
+
+        private double maxMs() {
+            for (int i = BUCKETS - 1; i >= 0; i--) {
+                if (histogram.get(i) > 0) {
+                    return (i + 1) * BUCKET_NANOS / 1_000_000.0;
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.meli.controller;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ETagsTest {
+
+    @Test
+    public void ifMatchComparesStrongTagsAndAcceptsWildcard() {
+        assertEquals("\"v3\"", ETags.of(3));
+        assertTrue(ETags.ifMatch(null, 3));
+        assertTrue(ETags.ifMatch(" ", 3));
+        assertTrue(ETags.ifMatch("\"v3\"", 3));
+        assertTrue(ETags.ifMatch("\"v1\", \"v3\"", 3));
+        assertTrue(ETags.ifMatch("*", 3));
+        assertFalse(ETags.ifMatch("\"v2\"", 3));
+        // Comparação forte: a tag fraca não casa
+        assertFalse(ETags.ifMatch("W/\"v3\"", 3));
+    }
+
+    @Test
+    public void onlySpecificTagsBecomeAnExpectedVersion() {
+        assertNull(ETags.expectedVersion(null, 3));
+        assertNull(ETags.expectedVersion("", 3));
+        assertNull(ETags.expectedVersion(" * ", 3));
+        assertEquals(Long.valueOf(3), ETags.expectedVersion("\"v3\"", 3));
+    }
+
+    @Test
+    public void catalogTagChangesWithTheVersionAndTheProcessEpoch() {
+        assertEquals(ETags.catalog(1000, 7), ETags.catalog(1000, 7));
+        assertNotEquals(ETags.catalog(1000, 7), ETags.catalog(1000, 8));
+        // Depois de um reinício a versão recomeça: a mesma versão com outro epoch é outra tag
+        assertNotEquals(ETags.catalog(1000, 7), ETags.catalog(1001, 7));
+        assertTrue(ETags.catalog(1000, 7).startsWith("\"c"));
+    }
+}
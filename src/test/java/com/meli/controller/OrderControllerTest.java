@@ -0,0 +1,59 @@
+package com.meli.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.meli.dto.SellerSalesSummaryDTO;
+import com.meli.model.Consumer;
+import com.meli.model.Seller;
+import com.meli.service.IdempotencyCache;
+import com.meli.service.OrderService;
+import com.meli.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Collections;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class OrderControllerTest {
+
+    private OrderService orderService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setUp() {
+        orderService = mock(OrderService.class);
+        when(orderService.getSellerSalesSummary(2)).thenReturn(new SellerSalesSummaryDTO(2, 1, 3, Collections.singletonMap(10, 3L),
+                30.0, Collections.singletonMap("PLACED", 30.0), Collections.singletonMap("PLACED", 1L)));
+        UserService userService = mock(UserService.class);
+        when(userService.getUserById(2)).thenReturn(new Seller("Loja", "loja@email.com", "1", "senha", "Rua A"));
+        when(userService.getUserById(4)).thenReturn(new Consumer("Ana", "ana@email.com", "2", "senha", "Rua B"));
+        OrderController controller = new OrderController(orderService, userService, mock(IdempotencyCache.class), new ObjectMapper());
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    public void salesSummaryIsOnlyServedToSellers() throws Exception {
+        mockMvc.perform(get("/orders/seller/summary").header("X-User-Id", 2))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.unitsSold").value(3));
+
+        // Consumidor não vê vendas; usuário inexistente é 404
+        mockMvc.perform(get("/orders/seller/summary").header("X-User-Id", 4))
+               .andExpect(status().isForbidden());
+        mockMvc.perform(get("/orders/seller/summary").header("X-User-Id", 99))
+               .andExpect(status().isNotFound());
+        mockMvc.perform(get("/orders/seller").header("X-User-Id", 4))
+               .andExpect(status().isForbidden());
+        verify(orderService, never()).getSellerSalesSummary(4);
+        verify(orderService, never()).getOrdersBySellerId(anyInt());
+    }
+}
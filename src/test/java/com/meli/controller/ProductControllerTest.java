@@ -0,0 +1,100 @@
+package com.meli.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.meli.dto.ProductFilterDTO;
+import com.meli.model.Product;
+import com.meli.repository.ProductRepository;
+import com.meli.service.IdempotencyCache;
+import com.meli.service.OrderService;
+import com.meli.service.ProductJsonCache;
+import com.meli.service.ProductService;
+import com.meli.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Collections;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class ProductControllerTest {
+
+    private static final long EPOCH = 1_700_000_000_000L;
+    private static final long LAST_MODIFIED = 1_700_000_060_000L;
+
+    private final Product keyboard = new Product(1, "Teclado", 100.0, "Mecânico", null, "Acme", 5, "Periféricos", 2);
+    private ProductService productService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setUp() {
+        keyboard.setVersion(3);
+        keyboard.setLastModified(LAST_MODIFIED);
+        productService = mock(ProductService.class);
+        when(productService.getCatalogEpoch()).thenReturn(EPOCH);
+        when(productService.getCatalogVersion()).thenReturn(7L);
+        when(productService.getCatalogLastModified()).thenReturn(LAST_MODIFIED);
+        when(productService.getListedProducts(any(ProductFilterDTO.class))).thenReturn(Collections.singletonList(keyboard));
+        when(productService.getProductById(anyInt())).thenAnswer(invocation -> (int) invocation.getArgument(0) == 1 ? keyboard : null);
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        ProductRepository productRepository = mock(ProductRepository.class);
+        when(productRepository.findById(1)).thenReturn(keyboard);
+        ProductJsonCache productJson = new ProductJsonCache(productRepository, objectMapper);
+        ProductController controller = new ProductController(productService, mock(OrderService.class), mock(UserService.class),
+                mock(IdempotencyCache.class), objectMapper, productJson, 0, 10);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                                 .setMessageConverters(new PreSerializedJsonConverter(), new MappingJackson2HttpMessageConverter(objectMapper))
+                                 .build();
+    }
+
+    @Test
+    public void catalogAnswersNotModifiedUntilTheVersionChanges() throws Exception {
+        String eTag = ETags.catalog(EPOCH, 7);
+        mockMvc.perform(get("/products"))
+               .andExpect(status().isOk())
+               .andExpect(header().string("ETag", eTag))
+               .andExpect(header().dateValue("Last-Modified", LAST_MODIFIED))
+               .andExpect(header().string("Cache-Control", "max-age=0, public, s-maxage=10"))
+               .andExpect(jsonPath("$[0].title").value("Teclado"));
+
+        // Tag ainda válida: 304 sem corpo e sem montar a lista de novo
+        mockMvc.perform(get("/products").header("If-None-Match", eTag))
+               .andExpect(status().isNotModified())
+               .andExpect(header().string("Cache-Control", "max-age=0, public, s-maxage=10"))
+               .andExpect(content().string(""));
+        verify(productService, times(1)).getListedProducts(any(ProductFilterDTO.class));
+
+        when(productService.getCatalogVersion()).thenReturn(8L);
+        mockMvc.perform(get("/products").header("If-None-Match", eTag))
+               .andExpect(status().isOk())
+               .andExpect(header().string("ETag", ETags.catalog(EPOCH, 8)));
+    }
+
+    @Test
+    public void productUsesItsOwnVersionTag() throws Exception {
+        mockMvc.perform(get("/products/1"))
+               .andExpect(status().isOk())
+               .andExpect(header().string("ETag", ETags.of(3)))
+               .andExpect(jsonPath("$.title").value("Teclado"));
+
+        mockMvc.perform(get("/products/1").header("If-None-Match", ETags.of(2) + ", " + ETags.of(3)))
+               .andExpect(status().isNotModified());
+        mockMvc.perform(get("/products/1").header("If-None-Match", ETags.of(2)))
+               .andExpect(status().isOk());
+        mockMvc.perform(get("/products/2"))
+               .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,61 @@
+package com.meli.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdSequenceTest {
+
+    @TempDir
+    File dir;
+
+    @Test
+    public void startsAtOneAndSkipsObservedIds() {
+        IdSequence sequence = new IdSequence(new File(dir, "products.seq"), 10);
+        assertEquals(1, sequence.next());
+        sequence.observe(41);
+        assertEquals(42, sequence.next());
+    }
+
+    @Test
+    public void restartNeverReissuesIds() {
+        File file = new File(dir, "users.seq");
+        IdSequence first = new IdSequence(file, 10);
+        int last = 0;
+        for (int i = 0; i < 15; i++) {
+            last = first.next();
+        }
+        assertEquals(15, last);
+
+        // Sem observe: só o limite gravado em disco protege os ids já entregues
+        IdSequence restarted = new IdSequence(file, 10);
+        assertTrue(restarted.next() > last);
+    }
+
+    @Test
+    public void concurrentAllocationsAreUnique() throws Exception {
+        IdSequence sequence = new IdSequence(new File(dir, "orders.seq"), 7);
+        Set<Integer> seen = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    assertTrue(seen.add(sequence.next()));
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(8000, seen.size());
+        assertTrue(new IdSequence(new File(dir, "orders.seq"), 7).next() > 8000);
+    }
+}
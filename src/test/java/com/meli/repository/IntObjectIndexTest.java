@@ -0,0 +1,45 @@
+package com.meli.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IntObjectIndexTest {
+
+    @Test
+    public void behavesLikeHashMapUnderRandomPutsAndRemoves() {
+        IntObjectIndex<String> index = new IntObjectIndex<>();
+        Map<Integer, String> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 50_000; i++) {
+            int key = random.nextInt(2_000) - 100; // inclui 0 e negativos
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), index.remove(key));
+            } else {
+                String value = "v" + i;
+                assertEquals(expected.put(key, value), index.put(key, value));
+            }
+        }
+        assertEquals(expected.size(), index.size());
+        for (int key = -100; key < 1_900; key++) {
+            assertEquals(expected.get(key), index.get(key));
+        }
+    }
+
+    @Test
+    public void copyIsIndependent() {
+        IntObjectIndex<String> index = new IntObjectIndex<>();
+        index.put(1, "a");
+        IntObjectIndex<String> copy = index.copy();
+        copy.put(2, "b");
+        copy.remove(1);
+        assertEquals("a", index.get(1));
+        assertNull(index.get(2));
+        assertNull(copy.get(1));
+        assertEquals("b", copy.get(2));
+    }
+}
@@ -0,0 +1,141 @@
+package com.meli.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.meli.model.Order;
+import com.meli.model.OrderStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JsonWriteAheadLogTest {
+
+    @TempDir
+    File dir;
+
+    private final ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private Order order(int id, OrderStatus status) {
+        Order order = new Order();
+        order.setId(id);
+        order.setConsumerId(1);
+        order.setSellerId(2);
+        order.setTotal(10.0 * id);
+        order.setStatus(status);
+        order.setTimestamp(ZonedDateTime.parse("2025-07-16T10:15:30.123456789Z"));
+        return order;
+    }
+
+    @Test
+    public void replaysLogTailOverSnapshot() throws Exception {
+        File snapshot = new File(dir, "orders.json");
+        File log = new File(dir, "orders.log");
+        JsonWriteAheadLog wal = new JsonWriteAheadLog(snapshot, log, mapper, 100);
+        wal.append(Arrays.asList(
+                wal.encodePut(1, order(1, OrderStatus.PLACED)),
+                wal.encodePut(2, order(2, OrderStatus.PLACED)),
+                wal.encodePut(1, order(1, OrderStatus.SHIPPED)),
+                wal.encodeDelete(2)));
+        wal.close();
+
+        List<JsonNode> state = new JsonWriteAheadLog(snapshot, log, mapper, 100).load();
+        assertEquals(1, state.size());
+        Order restored = mapper.treeToValue(state.get(0), Order.class);
+        assertEquals(OrderStatus.SHIPPED, restored.getStatus());
+        assertEquals(123456789, restored.getTimestamp().getNano());
+    }
+
+    @Test
+    public void checkpointCompactsLogIntoSnapshot() throws Exception {
+        File snapshot = new File(dir, "orders.json");
+        File log = new File(dir, "orders.log");
+        JsonWriteAheadLog wal = new JsonWriteAheadLog(snapshot, log, mapper, 2);
+        wal.append(Arrays.asList(wal.encodePut(1, order(1, OrderStatus.PLACED)), wal.encodePut(2, order(2, OrderStatus.PLACED))));
+        wal.append(Arrays.asList(wal.encodePut(2, order(2, OrderStatus.SHIPPED))));
+        assertTrue(wal.isCheckpointDue());
+        // O snapshot é o que foi anexado ao log (guardado pelo próprio log), sem reler os arquivos
+        wal.checkpoint();
+        assertFalse(wal.isCheckpointDue());
+        assertEquals(0, Files.size(log.toPath()));
+
+        wal.append(Arrays.asList(wal.encodePut(3, order(3, OrderStatus.PLACED))));
+        wal.close();
+
+        List<JsonNode> state = new JsonWriteAheadLog(snapshot, log, mapper, 2).load();
+        assertEquals(3, state.size());
+        assertEquals(2, mapper.readTree(snapshot).size());
+        Order shipped = mapper.treeToValue(state.get(1), Order.class);
+        assertEquals(OrderStatus.SHIPPED, shipped.getStatus());
+        assertEquals(123456789, shipped.getTimestamp().getNano());
+    }
+
+    @Test
+    public void failedAppendNeverReachesTheCheckpoint() throws Exception {
+        File snapshot = new File(dir, "orders.json");
+        File log = new File(dir, "orders.log");
+        JsonWriteAheadLog wal = new JsonWriteAheadLog(snapshot, log, mapper, 100);
+        wal.append(Arrays.asList(wal.encodePut(1, order(1, OrderStatus.PLACED))));
+        // Registro inválido no lote: nada do lote é gravado nem entra no estado do checkpoint
+        assertThrows(IllegalArgumentException.class, () -> wal.append(Arrays.asList(
+                wal.encodePut(1, order(1, OrderStatus.SHIPPED)), "lixo\n".getBytes(StandardCharsets.UTF_8))));
+        wal.checkpoint();
+        wal.close();
+
+        List<JsonNode> state = new JsonWriteAheadLog(snapshot, log, mapper, 100).load();
+        assertEquals(1, state.size());
+        assertEquals(OrderStatus.PLACED, mapper.treeToValue(state.get(0), Order.class).getStatus());
+    }
+
+    @Test
+    public void checkpointKeepsTheStateLoadedFromDisk() throws Exception {
+        File snapshot = new File(dir, "orders.json");
+        File log = new File(dir, "orders.log");
+        JsonWriteAheadLog wal = new JsonWriteAheadLog(snapshot, log, mapper, 100);
+        wal.append(Arrays.asList(wal.encodePut(1, order(1, OrderStatus.PLACED)), wal.encodePut(2, order(2, OrderStatus.PLACED))));
+        wal.close();
+
+        JsonWriteAheadLog reopened = new JsonWriteAheadLog(snapshot, log, mapper, 100);
+        reopened.load();
+        reopened.append(Arrays.asList(reopened.encodeDelete(1)));
+        reopened.checkpoint();
+        reopened.close();
+
+        List<JsonNode> state = new JsonWriteAheadLog(snapshot, log, mapper, 100).load();
+        assertEquals(1, state.size());
+        Order remaining = mapper.treeToValue(state.get(0), Order.class);
+        assertEquals(2, remaining.getId());
+        assertEquals(123456789, remaining.getTimestamp().getNano());
+    }
+
+    @Test
+    public void tornLastLineIsRemovedBeforeNextAppend() throws Exception {
+        File snapshot = new File(dir, "orders.json");
+        File log = new File(dir, "orders.log");
+        JsonWriteAheadLog wal = new JsonWriteAheadLog(snapshot, log, mapper, 100);
+        wal.append(Arrays.asList(wal.encodePut(1, order(1, OrderStatus.PLACED))));
+        wal.close();
+        // Queda no meio da escrita: registro sem o '\n' final
+        Files.write(log.toPath(), "{\"op\":\"PUT\",\"id\":2,\"da".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        JsonWriteAheadLog reopened = new JsonWriteAheadLog(snapshot, log, mapper, 100);
+        assertEquals(1, reopened.load().size());
+        reopened.append(Arrays.asList(reopened.encodePut(3, order(3, OrderStatus.PLACED))));
+        reopened.force();
+        reopened.close();
+
+        List<JsonNode> state = new JsonWriteAheadLog(snapshot, log, mapper, 100).load();
+        assertEquals(2, state.size());
+        assertEquals(3, state.get(1).path("id").asInt());
+        assertEquals(2, Files.readAllLines(log.toPath()).size());
+    }
+}
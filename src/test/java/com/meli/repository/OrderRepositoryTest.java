@@ -0,0 +1,201 @@
+package com.meli.repository;
+
+import com.meli.model.Order;
+import com.meli.model.OrderStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OrderRepositoryTest {
+
+    @TempDir
+    File dir;
+
+    private final PersistenceWriter writer = new PersistenceWriter(100, 100, Durability.FLUSH, 10000);
+
+    @AfterEach
+    public void stopWriter() {
+        writer.shutdown();
+    }
+
+    private OrderRepository repository() {
+        return new OrderRepository(writer, new IdSequences(10, dir.getPath()), 100, dir.getPath());
+    }
+
+    private static Order order(int consumerId, int sellerId) {
+        Order order = new Order();
+        order.setConsumerId(consumerId);
+        order.setSellerId(sellerId);
+        order.setProducts(Collections.singletonMap(1, 1));
+        order.setTotal(10.0);
+        order.setStatus(OrderStatus.PLACED);
+        order.setTimestamp(ZonedDateTime.now());
+        return order;
+    }
+
+    private static List<Integer> ids(List<Order> orders) {
+        return orders.stream().map(Order::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void postingsFollowCreationOwnerChangesAndDeletion() {
+        OrderRepository repository = repository();
+        Order a = repository.save(order(4, 2));
+        Order b = repository.save(order(7, 2));
+        Order c = repository.save(order(4, 3));
+
+        assertEquals(Arrays.asList(a.getId(), c.getId()), ids(repository.getByConsumerId(4)));
+        assertEquals(Arrays.asList(a.getId(), b.getId()), ids(repository.getBySellerId(2)));
+        assertTrue(repository.getByConsumerId(99).isEmpty());
+
+        List<Order> sellerTwoBefore = repository.getBySellerId(2);
+        Order moved = order(4, 3);
+        moved.setId(a.getId());
+        repository.save(moved);
+        assertEquals(Arrays.asList(b.getId()), ids(repository.getBySellerId(2)));
+        assertEquals(Arrays.asList(c.getId(), a.getId()), ids(repository.getBySellerId(3)));
+        // Uma versão já lida não muda
+        assertEquals(Arrays.asList(a.getId(), b.getId()), ids(sellerTwoBefore));
+
+        assertTrue(repository.deleteById(b.getId()));
+        assertTrue(repository.getByConsumerId(7).isEmpty());
+        assertTrue(repository.getBySellerId(2).isEmpty());
+        assertFalse(repository.deleteById(b.getId()));
+    }
+
+    @Test
+    public void updatePublishesANewVersionAndLeavesTheReadOneIntact() {
+        OrderRepository repository = repository();
+        Order a = repository.save(order(4, 2));
+        Order b = repository.save(order(4, 2));
+        Order published = repository.getById(a.getId()).get();
+
+        Order shipped = order(4, 2);
+        shipped.setId(a.getId());
+        shipped.setStatus(OrderStatus.SHIPPED);
+        repository.save(shipped);
+
+        assertEquals(OrderStatus.PLACED, published.getStatus());
+        Order current = repository.getById(a.getId()).get();
+        assertNotSame(published, current);
+        assertEquals(OrderStatus.SHIPPED, current.getStatus());
+        // Mesma posição nas listas de postagem, já com a nova versão
+        assertEquals(Arrays.asList(a.getId(), b.getId()), ids(repository.getByConsumerId(4)));
+        assertSame(current, repository.getBySellerId(2).get(0));
+        assertSame(current, repository.getAll().get(0));
+    }
+
+    @Test
+    public void newOrdersArePublishedAsCopies() {
+        OrderRepository repository = repository();
+        Order a = repository.save(order(4, 2));
+        List<Order> batch = Arrays.asList(order(4, 3), order(12, 2));
+        assertTrue(repository.enqueueNewOrders(batch).await());
+
+        Order published = repository.getById(a.getId()).get();
+        assertNotSame(a, published);
+        assertNotSame(batch.get(0), repository.getById(batch.get(0).getId()).get());
+        // O chamador recebe os ids, mas alterar os próprios objetos não muda o que foi publicado
+        a.setStatus(OrderStatus.SHIPPED);
+        batch.get(1).setSellerId(99);
+        assertEquals(OrderStatus.PLACED, repository.getById(a.getId()).get().getStatus());
+        assertEquals(2, repository.getById(batch.get(1).getId()).get().getSellerId());
+        assertEquals(Arrays.asList(a.getId(), batch.get(1).getId()), ids(repository.getBySellerId(2)));
+    }
+
+    @Test
+    public void postingsAreRebuiltFromTheLogOnRestart() {
+        OrderRepository repository = repository();
+        Order a = repository.save(order(4, 2));
+        List<Order> batch = Arrays.asList(order(4, 3), order(12, 2));
+        assertTrue(repository.enqueueNewOrders(batch).await());
+        Order b = batch.get(1);
+        Order shipped = order(4, 2);
+        shipped.setId(a.getId());
+        shipped.setStatus(OrderStatus.SHIPPED);
+        repository.save(shipped);
+
+        OrderRepository reopened = repository();
+        assertEquals(3, reopened.getAll().size());
+        assertEquals(2, reopened.getByConsumerId(4).size());
+        assertEquals(Arrays.asList(a.getId(), b.getId()), ids(reopened.getBySellerId(2)));
+        assertEquals(OrderStatus.SHIPPED, reopened.getById(a.getId()).get().getStatus());
+    }
+
+    @Test
+    public void checkpointFailureDoesNotFailAWriteAlreadyInTheLog() throws Exception {
+        OrderRepository repository = new OrderRepository(writer, new IdSequences(10, dir.getPath()), 1, dir.getPath());
+        // O snapshot não pode ser substituído: todo checkpoint falha depois de o registro entrar no log
+        File snapshot = new File(dir, "orders.json");
+        assertTrue(snapshot.delete());
+        assertTrue(new File(snapshot, "ocupado").mkdirs());
+
+        Order a = repository.save(order(4, 2));
+        assertEquals(1, repository.getAll().size());
+        repository.close();
+
+        assertTrue(new File(snapshot, "ocupado").delete());
+        assertTrue(snapshot.delete());
+        // Fechar o repositório não encerra o writer compartilhado
+        OrderRepository reopened = new OrderRepository(writer, new IdSequences(10, dir.getPath()), 100, dir.getPath());
+        assertEquals(Arrays.asList(a.getId()), ids(reopened.getAll()));
+        assertNotNull(reopened.save(order(5, 2)));
+    }
+
+    @Test
+    public void readsDoNotWaitForAWriterStuckOnBackpressure() throws Exception {
+        // Fila de uma posição com o writer preso em outro destino: o próximo enqueue espera por espaço
+        PersistenceWriter full = new PersistenceWriter(1, 1, Durability.FLUSH, 10000);
+        CountDownLatch writerBusy = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            OrderRepository repository = new OrderRepository(full, new IdSequences(10, dir.getPath()), 100, dir.getPath());
+            Order a = repository.save(order(4, 2));
+            full.enqueue((payloads, fsync) -> {
+                writerBusy.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, null, Durability.FIRE_AND_FORGET);
+            assertTrue(writerBusy.await(10, TimeUnit.SECONDS));
+            full.enqueue((payloads, fsync) -> { }, null, Durability.FIRE_AND_FORGET);
+
+            Order shipped = order(4, 2);
+            shipped.setId(a.getId());
+            shipped.setStatus(OrderStatus.SHIPPED);
+            Future<Order> update = pool.submit(() -> repository.save(shipped));
+            // A nova versão é publicada antes de esperar espaço na fila, e getById não espera o writer
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (repository.getById(a.getId()).get().getStatus() != OrderStatus.SHIPPED && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(OrderStatus.SHIPPED, repository.getById(a.getId()).get().getStatus());
+            assertFalse(update.isDone());
+
+            release.countDown();
+            assertNotNull(update.get(10, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            pool.shutdownNow();
+            full.shutdown();
+        }
+        assertEquals(OrderStatus.SHIPPED, repository().getAll().get(0).getStatus());
+    }
+}
@@ -0,0 +1,103 @@
+package com.meli.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PersistenceWriterTest {
+
+    @TempDir
+    File dir;
+
+    @Test
+    public void groupsMutationsPerTargetInEnqueueOrder() {
+        PersistenceWriter writer = new PersistenceWriter(100, 100, Durability.FLUSH, 10000);
+        List<Object> written = Collections.synchronizedList(new ArrayList<>());
+        PersistenceTarget target = (payloads, fsync) -> written.addAll(payloads);
+        try {
+            PersistenceWriter.PendingWrite first = writer.enqueue(target, "a", null);
+            PersistenceWriter.PendingWrite second = writer.enqueue(target, "b", Durability.FSYNC);
+            assertTrue(first.await());
+            assertTrue(second.await());
+            assertEquals(List.of("a", "b"), written);
+        } finally {
+            writer.shutdown();
+        }
+    }
+
+    @Test
+    public void failedWriteIsReportedToTheCaller() {
+        PersistenceWriter writer = new PersistenceWriter(100, 100, Durability.FLUSH, 10000);
+        PersistenceTarget broken = (payloads, fsync) -> {
+            throw new IOException("disco cheio");
+        };
+        try {
+            assertFalse(writer.enqueue(broken, "a", Durability.FLUSH).await());
+            assertFalse(writer.enqueue(broken, "b", Durability.FSYNC).await());
+            assertTrue(((Number) writer.stats().get("failedBatches")).longValue() >= 1);
+        } finally {
+            writer.shutdown();
+        }
+    }
+
+    @Test
+    public void writesAfterShutdownFailInsteadOfBlocking() {
+        PersistenceWriter writer = new PersistenceWriter(100, 100, Durability.FLUSH, 10000);
+        List<Object> written = Collections.synchronizedList(new ArrayList<>());
+        writer.shutdown();
+
+        long start = System.nanoTime();
+        assertFalse(writer.enqueue((payloads, fsync) -> written.addAll(payloads), "a", Durability.FSYNC).await());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertTrue(written.isEmpty());
+    }
+
+    @Test
+    public void awaitGivesUpAfterTheTimeout() throws Exception {
+        PersistenceWriter writer = new PersistenceWriter(100, 100, Durability.FLUSH, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        PersistenceTarget stuck = (payloads, fsync) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        try {
+            assertFalse(writer.enqueue(stuck, "a", Durability.FLUSH).await());
+            // FIRE_AND_FORGET não espera a gravação
+            assertTrue(writer.enqueue(stuck, "b", Durability.FIRE_AND_FORGET).await());
+        } finally {
+            release.countDown();
+            writer.shutdown();
+        }
+    }
+
+    @Test
+    public void jsonFileIsReplacedThroughATemporaryFile() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        File file = new File(dir, "products.json");
+        PersistenceWriter.writeJsonFile(mapper.writer(), file, List.of(1, 2, 3), false);
+        PersistenceWriter.writeJsonFile(mapper.writer(), file, List.of(4), true);
+
+        assertEquals("[4]", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        assertFalse(new File(dir, "products.json.tmp").exists());
+
+        // Falha ao serializar: o arquivo atual continua inteiro
+        Object unserializable = new Object();
+        assertThrows(IOException.class, () -> PersistenceWriter.writeJsonFile(mapper.writer(), file, unserializable, true));
+        assertEquals("[4]", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+    }
+}
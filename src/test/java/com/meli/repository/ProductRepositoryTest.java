@@ -0,0 +1,133 @@
+package com.meli.repository;
+
+import com.meli.model.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductRepositoryTest {
+
+    @TempDir
+    File dir;
+
+    private final PersistenceWriter writer = new PersistenceWriter(100, 100, Durability.FLUSH, 10000);
+
+    @AfterEach
+    public void stopWriter() {
+        writer.shutdown();
+    }
+
+    private ProductRepository repository() {
+        return new ProductRepository(writer, new IdSequences(10, dir.getPath()), dir.getPath());
+    }
+
+    private static Product product(int id, String title, Integer stock) {
+        return new Product(id, title, 10.0, "Descrição", null, "Acme", stock, "Geral", 2);
+    }
+
+    @Test
+    public void publishedSnapshotsNeverChange() {
+        ProductRepository repository = repository();
+        List<String> changes = new ArrayList<>();
+        repository.addListener(new ProductChangeListener() {
+            @Override
+            public void onProductSaved(Product previous, Product current) {
+                changes.add((previous == null ? "-" : previous.getTitle()) + ">" + current.getTitle());
+            }
+
+            @Override
+            public void onProductDeleted(Product previous) {
+                changes.add(previous.getTitle() + ">-");
+            }
+        });
+        Product fone = repository.save(product(0, "Fone", 3));
+        Product camisa = repository.save(product(0, "Camisa", null));
+        List<Product> before = repository.snapshot();
+        long version = repository.version();
+
+        assertTrue(repository.update(product(fone.getId(), "Fone Bluetooth", 3)));
+
+        // A versão lida antes continua igual; a nova substitui só o produto alterado
+        assertEquals("Fone", before.get(0).getTitle());
+        assertSame(fone, before.get(0));
+        assertEquals("Fone Bluetooth", repository.findById(fone.getId()).getTitle());
+        assertSame(camisa, repository.snapshot().get(1));
+        assertEquals(version + 1, repository.version());
+        assertEquals(2L, repository.findById(fone.getId()).getVersion());
+        assertThrows(UnsupportedOperationException.class, () -> repository.snapshot().add(product(9, "X", 1)));
+
+        repository.updateStock(Arrays.asList(fone.getId()), id -> 0);
+        assertEquals(Arrays.asList(camisa), repository.listed());
+        assertEquals(2, repository.snapshot().size());
+
+        assertTrue(repository.deleteById(camisa.getId()));
+        assertNull(repository.findById(camisa.getId()));
+        assertEquals(Arrays.asList("->Fone", "->Camisa", "Fone>Fone Bluetooth", "Fone Bluetooth>Fone Bluetooth", "Camisa>-"), changes);
+    }
+
+    @Test
+    public void positionAndSellerIndexesFollowEachVersion() {
+        ProductRepository repository = repository();
+        Product fone = repository.save(product(0, "Fone", 3));
+        Product camisa = repository.save(product(0, "Camisa", 1));
+        Product caneca = repository.save(new Product(0, "Caneca", 10.0, "Descrição", null, "Acme", 1, "Geral", 7));
+        List<Product> sellerBefore = repository.findBySellerId(2);
+
+        // Depois da remoção, os produtos seguintes mudam de posição
+        assertTrue(repository.deleteById(fone.getId()));
+        assertTrue(repository.update(product(caneca.getId(), "Caneca Grande", 1)));
+        repository.updateStock(Arrays.asList(camisa.getId()), id -> 5);
+
+        assertEquals(Arrays.asList("Camisa", "Caneca Grande"),
+                Arrays.asList(repository.snapshot().get(0).getTitle(), repository.snapshot().get(1).getTitle()));
+        assertEquals(5, repository.snapshot().get(0).getStock());
+        // O vendedor original é preservado na substituição, e o índice por vendedor acompanha a versão
+        assertEquals(Arrays.asList(repository.findById(caneca.getId())), repository.findBySellerId(7));
+        assertEquals(Arrays.asList(repository.findById(camisa.getId())), repository.findBySellerId(2));
+        assertEquals(Arrays.asList(fone, camisa), sellerBefore);
+        assertTrue(repository.findBySellerId(99).isEmpty());
+    }
+
+    @Test
+    public void savedProductsAreLoadedByTheNextInstance() {
+        ProductRepository repository = repository();
+        Product fone = repository.save(product(0, "Fone", 3));
+        repository.save(product(0, "Camisa", 1));
+
+        ProductRepository reopened = repository();
+        assertEquals(2, reopened.snapshot().size());
+        assertEquals("Fone", reopened.findById(fone.getId()).getTitle());
+        // Novos ids continuam depois dos já usados
+        Product livro = reopened.save(product(0, "Livro", 1));
+        assertTrue(livro.getId() > fone.getId());
+        assertEquals(3, repository().snapshot().size());
+    }
+
+    @Test
+    public void staleVersionIsRejectedWithoutPublishing() {
+        ProductRepository repository = repository();
+        Product fone = repository.save(product(0, "Fone", 3));
+        long read = fone.getVersion();
+        assertTrue(repository.update(product(fone.getId(), "Fone Bluetooth", 3), read));
+
+        // Uma compra também muda a versão: quem leu antes dela recebe conflito
+        repository.updateStock(Arrays.asList(fone.getId()), id -> 2);
+        Product published = repository.findById(fone.getId());
+        assertEquals(read + 2, published.getVersion());
+        VersionConflictException conflict = assertThrows(VersionConflictException.class,
+                () -> repository.update(product(fone.getId(), "Fone Antigo", 3), read + 1));
+        assertEquals(read + 1, conflict.getExpectedVersion());
+        assertEquals(read + 2, conflict.getCurrentVersion());
+        assertSame(published, repository.findById(fone.getId()));
+
+        assertTrue(repository.update(product(fone.getId(), "Fone Novo", 2), published.getVersion()));
+        assertEquals("Fone Novo", repository().findById(fone.getId()).getTitle());
+    }
+}
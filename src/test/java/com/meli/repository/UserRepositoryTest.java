@@ -0,0 +1,250 @@
+package com.meli.repository;
+
+import com.meli.model.Consumer;
+import com.meli.model.Seller;
+import com.meli.model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserRepositoryTest {
+
+    @TempDir
+    File dir;
+
+    private final PersistenceWriter writer = new PersistenceWriter(100, 100, Durability.FLUSH, 10000);
+
+    @AfterEach
+    public void stopWriter() {
+        writer.shutdown();
+    }
+
+    private UserRepository repository() {
+        return new UserRepository(writer, new IdSequences(10, dir.getPath()), 100, dir.getPath());
+    }
+
+    @Test
+    public void emailIsUniqueIgnoringCase() {
+        UserRepository repository = repository();
+        Consumer ana = new Consumer("Ana", "Ana@Email.com", "1", "senha", "Rua A");
+        assertTrue(repository.register(ana));
+        assertFalse(repository.register(new Seller("Outra Ana", "ana@email.COM", "2", "senha", "Rua B")));
+
+        assertEquals(ana.getId(), repository.findUserByEmail("ANA@email.com").get().getId());
+        assertTrue(repository.findUserByEmail("bia@email.com").isEmpty());
+        assertTrue(repository.findUserByEmail(null).isEmpty());
+
+        assertTrue(repository.deleteById(ana.getId()));
+        assertTrue(repository.findUserByEmail("ana@email.com").isEmpty());
+        assertTrue(repository.register(new Seller("Outra Ana", "ana@email.COM", "2", "senha", "Rua B")));
+    }
+
+    @Test
+    public void concurrentRegistrationsWithTheSameEmailAdmitOne() throws Exception {
+        UserRepository repository = repository();
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                String email = i % 2 == 0 ? "bia@email.com" : "BIA@email.com";
+                Callable<Boolean> register = () -> {
+                    start.await();
+                    return repository.register(new Consumer("Bia", email, "3", "senha", "Rua C"));
+                };
+                results.add(pool.submit(register));
+            }
+            start.countDown();
+            int registered = 0;
+            for (Future<Boolean> result : results) {
+                registered += result.get() ? 1 : 0;
+            }
+            assertEquals(1, registered);
+            assertEquals(1, repository.getAll().size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void emailChangeMovesTheIndexWithTheNewVersion() {
+        UserRepository repository = repository();
+        Consumer ana = new Consumer("Ana", "ana@email.com", "1", "senha", "Rua A");
+        Consumer bia = new Consumer("Bia", "bia@email.com", "2", "senha", "Rua B");
+        repository.register(ana);
+        repository.register(bia);
+        User published = repository.getById(ana.getId());
+
+        // Email de outro usuário: a alteração desiste e a versão publicada continua a mesma
+        assertFalse(repository.update(ana.getId(), null, user -> {
+            user.setName("Ana Maria");
+            return repository.changeEmail(user, "BIA@email.com");
+        }));
+        assertSame(published, repository.getById(ana.getId()));
+        assertEquals("Ana", published.getName());
+
+        assertTrue(repository.update(ana.getId(), ana.getVersion(), user -> {
+            user.setName("Ana Maria");
+            return repository.changeEmail(user, "ana.maria@email.com");
+        }));
+        User updated = repository.getById(ana.getId());
+        assertNotSame(published, updated);
+        assertEquals("Ana", published.getName());
+        assertEquals("ana@email.com", published.getEmail());
+        assertEquals("Ana Maria", updated.getName());
+        assertEquals(published.getVersion() + 1, updated.getVersion());
+        assertSame(updated, repository.findUserByEmail("ANA.MARIA@email.com").get());
+        assertTrue(repository.findUserByEmail("ana@email.com").isEmpty());
+        assertSame(updated, repository.getAll().get(0));
+
+        UserRepository reopened = repository();
+        assertEquals("Ana Maria", reopened.findUserByEmail("ana.maria@email.com").get().getName());
+        assertEquals(bia.getId(), reopened.findUserByEmail("bia@email.com").get().getId());
+    }
+
+    @Test
+    public void saveAndRegisterPublishACopy() {
+        UserRepository repository = repository();
+        Consumer ana = new Consumer("Ana", "ana@email.com", "1", "senha", "Rua A");
+        assertTrue(repository.register(ana));
+        User registered = repository.getById(ana.getId());
+        assertNotSame(ana, registered);
+        assertEquals(1, ana.getVersion());
+
+        // Alterar o objeto do chamador depois do cadastro não muda a versão publicada
+        ana.setName("Outra");
+        assertEquals("Ana", repository.getById(ana.getId()).getName());
+
+        // save de uma versão já publicada: ela continua intacta para quem a leu
+        Consumer edited = (Consumer) registered.copy();
+        edited.setAddress("Rua B");
+        repository.save(edited);
+        User saved = repository.getById(ana.getId());
+        assertNotSame(edited, saved);
+        assertEquals("Rua B", saved.getAddress());
+        assertEquals(2, saved.getVersion());
+        assertEquals(1, registered.getVersion());
+        repository.save(registered);
+        assertEquals(1, registered.getVersion());
+        assertEquals(3, repository.getById(ana.getId()).getVersion());
+        assertEquals("Rua A", repository.getById(ana.getId()).getAddress());
+
+        Consumer bia = new Consumer("Bia", "bia@email.com", "2", "senha", "Rua C");
+        repository.save(bia);
+        assertNotEquals(0, bia.getId());
+        assertNotSame(bia, repository.getById(bia.getId()));
+    }
+
+    @Test
+    public void staleVersionIsRejectedWithoutChangingTheUser() {
+        UserRepository repository = repository();
+        Consumer ana = new Consumer("Ana", "ana@email.com", "1", "senha", "Rua A");
+        repository.register(ana);
+        long read = ana.getVersion();
+        assertTrue(repository.update(ana.getId(), read, user -> {
+            user.setAddress("Rua B");
+            return true;
+        }));
+
+        List<Boolean> applied = new ArrayList<>();
+        VersionConflictException conflict = assertThrows(VersionConflictException.class,
+                () -> repository.update(ana.getId(), read, user -> applied.add(true)));
+        assertEquals(read, conflict.getExpectedVersion());
+        assertEquals(read + 1, conflict.getCurrentVersion());
+        // A alteração nem chega a ser chamada
+        assertTrue(applied.isEmpty());
+        assertEquals("Rua B", repository.getById(ana.getId()).getAddress());
+
+        // Sem versão esperada a atualização é incondicional
+        assertTrue(repository.update(ana.getId(), null, user -> {
+            user.setAddress("Rua C");
+            return true;
+        }));
+        assertEquals(read + 2, repository().getById(ana.getId()).getVersion());
+    }
+
+    @Test
+    public void checkpointKeepsTheUserTypes() throws Exception {
+        UserRepository repository = new UserRepository(writer, new IdSequences(10, dir.getPath()), 2, dir.getPath());
+        Consumer ana = new Consumer("Ana", "ana@email.com", "1", "senha", "Rua A");
+        Seller acme = new Seller("Acme", "acme@email.com", "2", "senha", "Rua B");
+        repository.register(ana);
+        repository.register(acme);
+        repository.register(new Consumer("Bia", "bia@email.com", "3", "senha", "Rua C"));
+
+        UserRepository reopened = repository();
+        assertEquals(3, reopened.getAll().size());
+        assertTrue(reopened.getById(ana.getId()) instanceof Consumer);
+        assertTrue(reopened.getById(acme.getId()) instanceof Seller);
+        assertTrue(new File(dir, "users.json").length() > 0);
+    }
+
+    @Test
+    public void writerBackpressureDoesNotHoldTheRepositoryLock() throws Exception {
+        // Fila de uma posição com o writer preso em outro destino: o próximo enqueue espera por espaço
+        PersistenceWriter full = new PersistenceWriter(1, 1, Durability.FLUSH, 10000);
+        CountDownLatch writerBusy = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            UserRepository repository = new UserRepository(full, new IdSequences(10, dir.getPath()), 100, dir.getPath());
+            Consumer ana = new Consumer("Ana", "ana@email.com", "1", "senha", "Rua A");
+            Consumer bia = new Consumer("Bia", "bia@email.com", "2", "senha", "Rua B");
+            repository.register(ana);
+            repository.register(bia);
+            full.enqueue((payloads, fsync) -> {
+                writerBusy.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, null, Durability.FIRE_AND_FORGET);
+            assertTrue(writerBusy.await(10, TimeUnit.SECONDS));
+            full.enqueue((payloads, fsync) -> { }, null, Durability.FIRE_AND_FORGET);
+
+            Future<Boolean> anaUpdate = pool.submit(() -> repository.update(ana.getId(), null, user -> {
+                user.setAddress("Rua C");
+                return true;
+            }));
+            Future<Boolean> biaUpdate = pool.submit(() -> repository.update(bia.getId(), null, user -> {
+                user.setAddress("Rua D");
+                return true;
+            }));
+            // As duas alterações publicam a nova versão e só então esperam espaço na fila
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while ((!"Rua C".equals(repository.getById(ana.getId()).getAddress())
+                    || !"Rua D".equals(repository.getById(bia.getId()).getAddress())) && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals("Rua C", repository.getById(ana.getId()).getAddress());
+            assertEquals("Rua D", repository.getById(bia.getId()).getAddress());
+            assertTrue(repository.findUserByEmail("bia@email.com").isPresent());
+            assertFalse(anaUpdate.isDone());
+            assertFalse(biaUpdate.isDone());
+
+            release.countDown();
+            assertTrue(anaUpdate.get(10, TimeUnit.SECONDS));
+            assertTrue(biaUpdate.get(10, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            pool.shutdownNow();
+            full.shutdown();
+        }
+        UserRepository reopened = repository();
+        assertEquals("Rua D", reopened.findUserByEmail("bia@email.com").get().getAddress());
+    }
+}
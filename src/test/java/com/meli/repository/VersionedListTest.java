@@ -0,0 +1,38 @@
+package com.meli.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VersionedListTest {
+
+    @Test
+    public void snapshotsAreNotAffectedByLaterWrites() {
+        VersionedList<String> list = new VersionedList<>();
+        for (int i = 0; i < 10; i++) {
+            list.add("s" + i);
+        }
+        List<String> before = list.snapshot();
+        long version = list.version();
+
+        String removed = before.get(3);
+        list.add("s10");
+        assertTrue(list.remove(removed));
+        assertTrue(list.replace(before.get(0), "first"));
+
+        assertEquals(10, before.size());
+        assertEquals("s0", before.get(0));
+        assertEquals("s3", before.get(3));
+        assertThrows(IndexOutOfBoundsException.class, () -> before.get(10));
+        assertThrows(UnsupportedOperationException.class, () -> before.add("x"));
+
+        List<String> after = list.snapshot();
+        assertEquals(10, after.size());
+        assertEquals(Arrays.asList("first", "s1", "s2", "s4", "s5", "s6", "s7", "s8", "s9", "s10"), after);
+        assertEquals(version + 3, list.version());
+        assertSame(after, list.snapshot());
+    }
+}
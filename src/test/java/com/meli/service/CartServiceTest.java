@@ -0,0 +1,133 @@
+package com.meli.service;
+
+import com.meli.model.Consumer;
+import com.meli.model.Product;
+import com.meli.repository.Durability;
+import com.meli.repository.IdSequences;
+import com.meli.repository.PersistenceWriter;
+import com.meli.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CartServiceTest {
+
+    @TempDir
+    File dir;
+
+    private final PersistenceWriter writer = new PersistenceWriter(100, 100, Durability.FLUSH, 10000);
+    private final ConsumerLocks consumerLocks = new ConsumerLocks();
+    // Produto 9 prende a operação dentro do lock do consumidor até o teste liberar
+    private final CountDownLatch slowEntered = new CountDownLatch(1);
+    private final CountDownLatch slowRelease = new CountDownLatch(1);
+    private UserRepository userRepository;
+    private CartService cartService;
+
+    @BeforeEach
+    public void setUp() {
+        userRepository = new UserRepository(writer, new IdSequences(10, dir.getPath()), 100, dir.getPath());
+        ProductService productService = mock(ProductService.class);
+        when(productService.getProductById(anyInt())).thenAnswer(invocation -> {
+            int id = invocation.getArgument(0);
+            if (id == 9) {
+                slowEntered.countDown();
+                slowRelease.await(10, TimeUnit.SECONDS);
+            }
+            return new Product(id, "Produto " + id, 10.0, "Descrição", null, "Acme", 1000, "Geral", 2);
+        });
+        cartService = new CartService(userRepository, productService, consumerLocks);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        slowRelease.countDown();
+        writer.shutdown();
+    }
+
+    private int consumer(String name) {
+        Consumer consumer = new Consumer(name, name + "@email.com", "1", "senha", "Rua A");
+        assertTrue(userRepository.register(consumer));
+        return consumer.getId();
+    }
+
+    @Test
+    public void concurrentAddsToTheSameCartAreSerialized() throws Exception {
+        int ana = consumer("ana");
+        int threads = 8;
+        int addsPerThread = 5;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    for (int n = 0; n < addsPerThread; n++) {
+                        assertTrue(cartService.addProductToCart(ana, 1, 1).isPresent());
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        // Nenhuma adição perdida: cada leitura-alteração-gravação viu a anterior
+        Consumer saved = (Consumer) userRepository.getById(ana);
+        assertEquals(threads * addsPerThread, saved.getCart().get(1));
+    }
+
+    @Test
+    public void differentCartsDoNotContend() throws Exception {
+        int ana = consumer("ana");
+        int bia = consumer("bia");
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<Optional<Consumer>> held = pool.submit(() -> cartService.addProductToCart(ana, 9, 1));
+            assertTrue(slowEntered.await(10, TimeUnit.SECONDS));
+
+            // O lock de ana está preso; o carrinho de bia é alterado sem esperar por ele
+            assertTrue(cartService.addProductToCart(bia, 1, 2).isPresent());
+            assertTrue(cartService.clearCart(bia).isPresent());
+            assertFalse(held.isDone());
+
+            slowRelease.countDown();
+            assertTrue(held.get(10, TimeUnit.SECONDS).isPresent());
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(0L, consumerLocks.stats().get("contended"));
+        assertEquals(2, consumerLocks.stats().get("consumers"));
+    }
+
+    @Test
+    public void unknownConsumersDoNotCreateLocks() {
+        int ana = consumer("ana");
+        assertTrue(cartService.addProductToCart(ana, 1, 1).isPresent());
+
+        assertTrue(cartService.addProductToCart(ana + 1000, 1, 1).isEmpty());
+        assertTrue(cartService.setProductQuantityInCart(ana + 1001, 1, 1).isEmpty());
+        assertTrue(cartService.removeProductFromCart(ana + 1002, 1).isEmpty());
+        assertTrue(cartService.clearCart(ana + 1003).isEmpty());
+        assertEquals(1, consumerLocks.stats().get("consumers"));
+    }
+}
@@ -0,0 +1,132 @@
+package com.meli.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CommandSequencerTest {
+
+    @Test
+    public void appliesEveryCommandOnceInBoundedBatches() throws Exception {
+        int producers = 8;
+        int perProducer = 2000;
+        List<Integer> applied = new ArrayList<>();
+        AtomicInteger largestBatch = new AtomicInteger();
+        CommandSequencer<Integer> sequencer = new CommandSequencer<>("test-sequencer", 64, 16, batch -> {
+            largestBatch.accumulateAndGet(batch.size(), Math::max);
+            applied.addAll(batch);
+        }, (batch, error) -> fail(error));
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    sequencer.publish(base + i);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        sequencer.shutdown();
+
+        assertEquals(producers * perProducer, applied.size());
+        assertTrue(largestBatch.get() <= 16);
+        // Cada produtor publica em ordem, então a sequência preserva a ordem por produtor
+        int[] last = new int[producers];
+        Arrays.fill(last, -1);
+        for (int value : applied) {
+            int producer = value / perProducer;
+            assertTrue(value > last[producer]);
+            last[producer] = value;
+        }
+        assertThrows(IllegalStateException.class, () -> sequencer.publish(0));
+    }
+
+    @Test
+    public void producersBlockedOnAFullRingAllGetApplied() throws Exception {
+        // Anel de 4 posições com um handler lento: os produtores esperam por espaço (backpressure)
+        int producers = 6;
+        int perProducer = 50;
+        Set<Integer> applied = ConcurrentHashMap.newKeySet();
+        CommandSequencer<Integer> sequencer = new CommandSequencer<>("test-sequencer", 4, 2, batch -> {
+            applied.addAll(batch);
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, (batch, error) -> fail(error));
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    sequencer.publish(base + i);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+            assertFalse(thread.isAlive());
+        }
+        sequencer.shutdown();
+
+        assertEquals(producers * perProducer, applied.size());
+        assertTrue(((Number) sequencer.stats().get("ringFullWaits")).longValue() > 0);
+    }
+
+    @Test
+    public void failingHandlerDoesNotStopTheWriter() throws Exception {
+        List<Integer> applied = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> failed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(3);
+        CommandSequencer<Integer> sequencer = new CommandSequencer<>("test-sequencer", 8, 1, batch -> {
+            int value = batch.get(0);
+            if (value == 1) {
+                throw new StackOverflowError("lote 1");
+            }
+            if (value == 2) {
+                throw new IllegalStateException("lote 2");
+            }
+            applied.add(value);
+            done.countDown();
+        }, (batch, error) -> {
+            failed.addAll(batch);
+            done.countDown();
+        });
+
+        sequencer.publish(1);
+        sequencer.publish(2);
+        sequencer.publish(3);
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        sequencer.shutdown();
+
+        assertEquals(Arrays.asList(1, 2), failed);
+        assertEquals(Collections.singletonList(3), applied);
+        assertEquals(2L, sequencer.stats().get("failedBatches"));
+    }
+}
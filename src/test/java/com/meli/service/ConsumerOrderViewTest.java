@@ -0,0 +1,96 @@
+package com.meli.service;
+
+import com.meli.dto.OrderSummaryDTO;
+import com.meli.model.Order;
+import com.meli.model.OrderStatus;
+import com.meli.model.Product;
+import com.meli.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.meli.service.Fixtures.order;
+import static com.meli.service.Fixtures.orderRepository;
+import static com.meli.service.Fixtures.product;
+import static com.meli.service.Fixtures.productRepository;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConsumerOrderViewTest {
+
+    // Catálogo lido pela visão; o teste troca e remove produtos nesta lista
+    private final List<Product> products = new ArrayList<>(Arrays.asList(
+            product(1).title("Teclado").price(100.0).build(),
+            product(2).title("Mouse").price(50.0).build()));
+    private final ProductRepository productRepository = productRepository(products);
+
+    private ConsumerOrderView view(Order... orders) {
+        return new ConsumerOrderView(orderRepository(Arrays.asList(orders)), productRepository);
+    }
+
+    private static List<Integer> ids(List<OrderSummaryDTO> summaries) {
+        return summaries.stream().map(OrderSummaryDTO::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void statusChangeReplacesTheSummaryInPlace() {
+        ConsumerOrderView view = view(
+                order(1, 4, 2, Collections.singletonMap(1, 2), 10.0, OrderStatus.PLACED),
+                order(2, 4, 2, Collections.singletonMap(2, 1), 10.0, OrderStatus.PLACED),
+                order(3, 7, 2, Collections.singletonMap(1, 1), 10.0, OrderStatus.PLACED));
+        OrderSummaryDTO placed = view.getByConsumerId(4).get(0);
+        assertEquals(2, placed.getItemCount());
+
+        view.onOrderSaved(order(1, 4, 2, Collections.singletonMap(1, 2), 10.0, OrderStatus.SHIPPED));
+        List<OrderSummaryDTO> summaries = view.getByConsumerId(4);
+        // Mesma posição na ordem de criação; o resumo publicado antes não muda
+        assertEquals(Arrays.asList(1, 2), ids(summaries));
+        assertEquals(OrderStatus.SHIPPED, summaries.get(0).getStatus());
+        assertEquals(OrderStatus.PLACED, placed.getStatus());
+
+        // Pedido que troca de consumidor sai de uma lista e entra no fim da outra
+        view.onOrderSaved(order(1, 7, 2, Collections.singletonMap(1, 2), 10.0, OrderStatus.SHIPPED));
+        assertEquals(Arrays.asList(2), ids(view.getByConsumerId(4)));
+        assertEquals(Arrays.asList(3, 1), ids(view.getByConsumerId(7)));
+
+        view.onOrderDeleted(order(2, 4, 2, Collections.singletonMap(2, 1), 10.0, OrderStatus.PLACED));
+        assertTrue(view.getByConsumerId(4).isEmpty());
+        assertEquals(2, view.stats().get("orders"));
+    }
+
+    @Test
+    public void titleChangeRefreshesOnlyTheOrdersCitingTheProduct() {
+        ConsumerOrderView view = view(
+                order(1, 4, 2, Collections.singletonMap(1, 2), 10.0, OrderStatus.PLACED),
+                order(2, 4, 2, Collections.singletonMap(2, 1), 10.0, OrderStatus.PLACED));
+        OrderSummaryDTO mouseOrder = view.getByConsumerId(4).get(1);
+
+        Product teclado = products.get(0);
+        Product renamed = product(1).title("Teclado Mecânico").price(100.0).build();
+        products.set(0, renamed);
+        view.onProductSaved(teclado, renamed);
+        List<OrderSummaryDTO> summaries = view.getByConsumerId(4);
+        assertEquals("Teclado Mecânico", summaries.get(0).getProductsDetails().get(0).getTitle());
+        assertEquals(2, summaries.get(0).getProductsDetails().get(0).getQuantity());
+        assertSame(mouseOrder, summaries.get(1));
+
+        // Preço e estoque não aparecem no resumo: nada é refeito
+        OrderSummaryDTO keyboardOrder = summaries.get(0);
+        Product cheaper = product(1).title("Teclado Mecânico").price(80.0).build();
+        products.set(0, cheaper);
+        view.onProductSaved(renamed, cheaper);
+        assertSame(keyboardOrder, view.getByConsumerId(4).get(0));
+
+        // Depois de mudar de status, o pedido continua ligado ao produto
+        view.onOrderSaved(order(2, 4, 2, Collections.singletonMap(2, 1), 10.0, OrderStatus.SHIPPED));
+        Product mouse = products.remove(1);
+        view.onProductDeleted(mouse);
+        OrderSummaryDTO refreshed = view.getByConsumerId(4).get(1);
+        assertEquals("Produto Desconhecido (ID: 2)", refreshed.getProductsDetails().get(0).getTitle());
+        assertEquals(OrderStatus.SHIPPED, refreshed.getStatus());
+        assertEquals(2L, view.stats().get("productRefreshes"));
+    }
+}
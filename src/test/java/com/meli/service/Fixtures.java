@@ -0,0 +1,118 @@
+package com.meli.service;
+
+import com.meli.model.Order;
+import com.meli.model.OrderStatus;
+import com.meli.model.Product;
+import com.meli.repository.OrderRepository;
+import com.meli.repository.ProductRepository;
+
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/*
+ * Dados e dublês compartilhados pelos testes dos índices, caches e visões derivados
+ * do catálogo e dos pedidos.
+ */
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    /**
+     * Produto com valores neutros (título "Produto <id>", preço 10.0, estoque 1, categoria "Geral",
+     * vendedor 2); cada teste muda só os campos que importam para ele.
+     */
+    static ProductBuilder product(int id) {
+        return new ProductBuilder(id);
+    }
+
+    /**
+     * ProductRepository simulado: addListener devolve a lista como carga inicial, e snapshot/findById
+     * leem a própria lista (alterações feitas nela pelo teste aparecem nas leituras seguintes).
+     */
+    static ProductRepository productRepository(List<Product> products) {
+        ProductRepository repository = mock(ProductRepository.class);
+        when(repository.addListener(any())).thenReturn(products);
+        when(repository.snapshot()).thenReturn(products);
+        when(repository.findById(anyInt())).thenAnswer(invocation -> products.stream()
+                .filter(p -> p.getId() == (int) invocation.getArgument(0)).findFirst().orElse(null));
+        return repository;
+    }
+
+    static ProductRepository productRepository(Product... products) {
+        return productRepository(Arrays.asList(products));
+    }
+
+    /**
+     * Pedido com endereços fixos, sem frete e sem forma de pagamento; os itens são copiados.
+     */
+    static Order order(int id, int consumerId, int sellerId, Map<Integer, Integer> items, double total, OrderStatus status) {
+        return new Order(id, consumerId, sellerId, new HashMap<>(items), "Rua A", "Rua B", total, 0.0, null, status, ZonedDateTime.now());
+    }
+
+    /**
+     * OrderRepository simulado cujo addListener devolve os pedidos como carga inicial.
+     */
+    static OrderRepository orderRepository(List<Order> orders) {
+        OrderRepository repository = mock(OrderRepository.class);
+        when(repository.addListener(any())).thenReturn(orders);
+        return repository;
+    }
+
+    static final class ProductBuilder {
+        private final int id;
+        private String title;
+        private Double price = 10.0;
+        private String description = "";
+        private String imageUrl;
+        private Integer stock = 1;
+        private String category = "Geral";
+
+        private ProductBuilder(int id) {
+            this.id = id;
+            this.title = "Produto " + id;
+        }
+
+        ProductBuilder title(String title) {
+            this.title = title;
+            return this;
+        }
+
+        ProductBuilder price(Double price) {
+            this.price = price;
+            return this;
+        }
+
+        ProductBuilder description(String description) {
+            this.description = description;
+            return this;
+        }
+
+        ProductBuilder imageUrl(String imageUrl) {
+            this.imageUrl = imageUrl;
+            return this;
+        }
+
+        ProductBuilder stock(Integer stock) {
+            this.stock = stock;
+            return this;
+        }
+
+        ProductBuilder category(String category) {
+            this.category = category;
+            return this;
+        }
+
+        Product build() {
+            return new Product(id, title, price, description, imageUrl, "Acme", stock, category, 2);
+        }
+    }
+}
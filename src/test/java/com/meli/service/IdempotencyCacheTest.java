@@ -0,0 +1,115 @@
+package com.meli.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdempotencyCacheTest {
+
+    @Test
+    public void concurrentDuplicatesRunTheActionOnce() throws Exception {
+        IdempotencyCache cache = new IdempotencyCache(60, 10);
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<IdempotencyCache.Outcome<Integer>>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(pool.submit(() -> cache.execute("k", "body", () -> {
+                    runs.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return 42;
+                }, value -> true)));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            int replayed = 0;
+            for (Future<IdempotencyCache.Outcome<Integer>> result : results) {
+                assertEquals(42, result.get().getValue());
+                replayed += result.get().isReplayed() ? 1 : 0;
+            }
+            assertEquals(1, runs.get());
+            assertEquals(7, replayed);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThrows(IdempotencyCache.KeyReusedException.class,
+                     () -> cache.execute("k", "other body", () -> 0, value -> true));
+    }
+
+    @Test
+    public void failuresAndUncacheableResultsReleaseTheKey() {
+        IdempotencyCache cache = new IdempotencyCache(60, 10);
+        assertThrows(IllegalStateException.class, () -> cache.execute("k", "", () -> {
+            throw new IllegalStateException("falhou");
+        }, value -> true));
+        assertFalse(cache.execute("k", "", () -> 500, value -> value < 500).isReplayed());
+        assertFalse(cache.execute("k", "", () -> 200, value -> value < 500).isReplayed());
+        assertEquals(200, cache.execute("k", "", () -> 201, value -> true).getValue());
+    }
+
+    @Test
+    public void anErrorInTheActionReleasesTheKey() throws Exception {
+        IdempotencyCache cache = new IdempotencyCache(60, 10);
+        assertThrows(StackOverflowError.class, () -> cache.execute("k", "", () -> {
+            throw new StackOverflowError("falhou");
+        }, value -> true));
+
+        // A repetição não fica presa esperando a execução que falhou
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<IdempotencyCache.Outcome<Integer>> retry = pool.submit(() -> cache.execute("k", "", () -> 201, value -> true));
+            IdempotencyCache.Outcome<Integer> outcome = retry.get(5, TimeUnit.SECONDS);
+            assertEquals(201, outcome.getValue());
+            assertFalse(outcome.isReplayed());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void maxEntriesIsEnforcedBehindAnEntryInProgress() throws Exception {
+        IdempotencyCache cache = new IdempotencyCache(60, 2);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<IdempotencyCache.Outcome<Integer>> slow = pool.submit(() -> cache.execute("lenta", "", () -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return 1;
+            }, value -> true));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            for (int i = 0; i < 10; i++) {
+                int value = i;
+                cache.execute("k" + i, "", () -> value, v -> true);
+            }
+            // A mais antiga está em andamento, mas as concluídas depois dela são removidas
+            assertTrue((int) cache.stats().get("entries") <= 3);
+
+            release.countDown();
+            assertEquals(1, slow.get(5, TimeUnit.SECONDS).getValue());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.meli.service;
+
+import com.meli.dto.BuyRequestDTO;
+import com.meli.model.Consumer;
+import com.meli.model.Product;
+import com.meli.model.Seller;
+import com.meli.model.User;
+import com.meli.repository.Durability;
+import com.meli.repository.IdSequences;
+import com.meli.repository.OrderRepository;
+import com.meli.repository.PersistenceWriter;
+import com.meli.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OrderServiceTest {
+
+    @TempDir
+    File dir;
+
+    private final PersistenceWriter writer = new PersistenceWriter(100, 100, Durability.FLUSH, 10000);
+    private final Product keyboard = new Product(1, "Teclado", 100.0, "Mecânico", null, "Acme", 5, "Periféricos", 2);
+    private final Product mouse = new Product(2, "Mouse", 50.0, "Sem fio", null, "Acme", 2, "Periféricos", 3);
+    private final Consumer consumer = user(new Consumer("Ana", "ana@email.com", "1", "senha", "Rua A"), 4);
+    private ProductRepository productRepository;
+    private ProductService productService;
+    private UserService userService;
+    private StockService stockService;
+    private OrderService orderService;
+
+    private static <T extends User> T user(T user, int id) {
+        user.setId(id);
+        return user;
+    }
+
+    @BeforeEach
+    public void setUp() {
+        productRepository = mock(ProductRepository.class);
+        when(productRepository.addListener(any())).thenReturn(Arrays.asList(keyboard, mouse));
+        when(productRepository.findById(anyInt())).thenAnswer(invocation -> product(invocation.getArgument(0)));
+        stockService = new StockService(productRepository);
+
+        productService = mock(ProductService.class);
+        when(productService.getProductById(anyInt())).thenAnswer(invocation -> product(invocation.getArgument(0)));
+        userService = mock(UserService.class);
+        Seller acme = user(new Seller("Acme", "acme@email.com", "2", "senha", "Rua B"), 2);
+        Seller loja = user(new Seller("Loja", "loja@email.com", "3", "senha", "Rua C"), 3);
+        when(userService.getUserById(anyInt())).thenAnswer(invocation -> {
+            int id = invocation.getArgument(0);
+            return id == 4 ? consumer : id == 2 ? acme : id == 3 ? loja : null;
+        });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (orderService != null) {
+            orderService.shutdown();
+        }
+        writer.shutdown();
+    }
+
+    private Product product(int id) {
+        return id == 1 ? keyboard : id == 2 ? mouse : null;
+    }
+
+    private OrderService orderService(OrderRepository orderRepository) {
+        return orderService(orderRepository, 5000);
+    }
+
+    private OrderService orderService(OrderRepository orderRepository, long applyTimeoutMillis) {
+        orderService = new OrderService(orderRepository, userService, productService, stockService,
+                mock(ConsumerOrderView.class), mock(SellerSalesAggregates.class), 8, 4, applyTimeoutMillis);
+        return orderService;
+    }
+
+    private OrderRepository orderRepository() {
+        return new OrderRepository(writer, new IdSequences(10, dir.getPath()), 100, dir.getPath());
+    }
+
+    private static List<BuyRequestDTO> cart() {
+        return Arrays.asList(new BuyRequestDTO(1, 2), new BuyRequestDTO(2, 1));
+    }
+
+    @Test
+    public void checkoutCreatesOneOrderPerSellerAndKeepsTheReservation() {
+        OrderRepository orderRepository = orderRepository();
+        OrderService.CheckoutResult result = orderService(orderRepository).checkout(cart(), 4);
+
+        assertEquals(OrderService.CheckoutResult.Status.COMPLETED, result.getStatus());
+        assertEquals(2, result.getOrders().size());
+        assertEquals(200.0, result.getOrders().get(0).getTotal());
+        assertEquals(2, orderRepository.getByConsumerId(4).size());
+        assertEquals(3, stockService.getStock(1));
+        assertEquals(1, stockService.getStock(2));
+    }
+
+    @Test
+    public void failedOrderWriteReleasesTheStockAndDeletesTheOrders() {
+        PersistenceWriter failingWriter = new PersistenceWriter(100, 100, Durability.FLUSH, 10000);
+        try {
+            OrderRepository orderRepository = spy(orderRepository());
+            // Os pedidos entram na memória normalmente, mas a gravação do lote falha
+            doAnswer(invocation -> {
+                invocation.callRealMethod();
+                return failingWriter.enqueue((payloads, fsync) -> {
+                    throw new IOException("disco cheio");
+                }, invocation.getArgument(0), Durability.FLUSH);
+            }).when(orderRepository).enqueueNewOrders(anyList());
+
+            OrderService.CheckoutResult result = orderService(orderRepository).checkout(cart(), 4);
+
+            assertEquals(OrderService.CheckoutResult.Status.FAILED, result.getStatus());
+            assertTrue(result.getOrders().isEmpty());
+            assertTrue(orderRepository.getAll().isEmpty());
+            assertTrue(orderRepository.getByConsumerId(4).isEmpty());
+            assertTrue(orderRepository.getBySellerId(2).isEmpty());
+            assertEquals(5, stockService.getStock(1));
+            assertEquals(2, stockService.getStock(2));
+            // O estoque devolvido é publicado de novo no catálogo
+            verify(productRepository).updateStock(any(), any());
+        } finally {
+            failingWriter.shutdown();
+        }
+    }
+
+    @Test
+    public void checkoutAbandonedWhileBeingAppliedIsUndoneAfterwards() throws Exception {
+        OrderRepository orderRepository = orderRepository();
+        // O sequenciador pega o comando, reserva o estoque e fica preso montando os pedidos
+        CountDownLatch building = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(productService.getProductById(anyInt())).thenAnswer(invocation -> {
+            building.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return product(invocation.getArgument(0));
+        });
+        // Prazo folgado para o sequenciador pegar o comando antes de a compra desistir
+        OrderService service = orderService(orderRepository, 500);
+
+        OrderService.CheckoutResult result = service.checkout(cart(), 4);
+        assertTrue(building.await(0, TimeUnit.SECONDS));
+        assertEquals(OrderService.CheckoutResult.Status.FAILED, result.getStatus());
+
+        release.countDown();
+        // A resposta foi de falha: o que o sequenciador aplicou depois é desfeito
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while ((stockService.getStock(1) != 5 || !orderRepository.getAll().isEmpty()) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(orderRepository.getAll().isEmpty());
+        assertTrue(orderRepository.getByConsumerId(4).isEmpty());
+        assertEquals(5, stockService.getStock(1));
+        assertEquals(2, stockService.getStock(2));
+    }
+
+    @Test
+    public void createProductOrderSeparatesInvalidInputFromWriteFailures() {
+        PersistenceWriter failingWriter = new PersistenceWriter(100, 100, Durability.FLUSH, 10000);
+        try {
+            OrderRepository orderRepository = spy(orderRepository());
+            doAnswer(invocation -> {
+                invocation.callRealMethod();
+                return failingWriter.enqueue((payloads, fsync) -> {
+                    throw new IOException("disco cheio");
+                }, invocation.getArgument(0), Durability.FLUSH);
+            }).when(orderRepository).enqueueNewOrders(anyList());
+            OrderService service = orderService(orderRepository);
+
+            assertEquals(OrderService.CheckoutResult.Status.REJECTED, service.createProductOrder(cart(), 99).getStatus());
+            // Falha de gravação é erro do servidor, não dos dados enviados
+            OrderService.CheckoutResult result = service.createProductOrder(cart(), 4);
+            assertEquals(OrderService.CheckoutResult.Status.FAILED, result.getStatus());
+            assertTrue(orderRepository.getAll().isEmpty());
+        } finally {
+            failingWriter.shutdown();
+        }
+    }
+
+    @Test
+    public void rejectedReservationCreatesNoOrders() {
+        OrderRepository orderRepository = orderRepository();
+        OrderService.CheckoutResult result = orderService(orderRepository).checkout(
+                Arrays.asList(new BuyRequestDTO(1, 2), new BuyRequestDTO(2, 3)), 4);
+
+        assertEquals(OrderService.CheckoutResult.Status.REJECTED, result.getStatus());
+        assertEquals(1, result.getErrors().size());
+        assertTrue(orderRepository.getAll().isEmpty());
+        assertEquals(5, stockService.getStock(1));
+        assertEquals(2, stockService.getStock(2));
+        verify(productRepository, never()).enqueueStockUpdate(any(), any());
+    }
+}
@@ -0,0 +1,40 @@
+package com.meli.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.meli.model.Product;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PreSerializedJsonTest {
+
+    @Test
+    public void arraysMatchJacksonOutput() throws Exception {
+        List<Product> products = Arrays.asList(
+                new Product(1, "Livro", 10.5, "Capa dura", "/images/a.jpg", "Editora", 3, "Livros", 2),
+                new Product(2, "Caneca \"ação\"", null, null, null, null, null, "Casa", 5));
+        for (boolean pretty : new boolean[]{true, false}) {
+            ObjectMapper mapper = new ObjectMapper().configure(SerializationFeature.INDENT_OUTPUT, pretty);
+            for (List<Product> list : Arrays.asList(products, products.subList(0, 1), Collections.<Product>emptyList())) {
+                List<byte[]> elements = new ArrayList<>();
+                for (Product product : list) {
+                    elements.add(mapper.writeValueAsBytes(product));
+                }
+                PreSerializedJson json = PreSerializedJson.array(elements, pretty);
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                json.writeTo(out);
+
+                byte[] expected = mapper.writeValueAsBytes(list);
+                assertArrayEquals(expected, out.toByteArray());
+                assertEquals(expected.length, json.length());
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.meli.service;
+
+import com.meli.dto.ProductFilterDTO;
+import com.meli.model.Product;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static com.meli.service.Fixtures.product;
+import static com.meli.service.Fixtures.productRepository;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductFacetIndexTest {
+
+    @Test
+    public void countsMatchTheListingForTheSameFilter() {
+        Product inStock = product(1).category("Eletrônicos").stock(5).build();
+        Product soldOut = product(2).category("Eletrônicos").stock(0).build();
+        Product untracked = product(3).category("Eletrônicos").stock(null).build();
+        ProductFacetIndex index = new ProductFacetIndex(productRepository(inStock, soldOut, untracked));
+
+        ProductFilterDTO filter = new ProductFilterDTO();
+        filter.setCategory(Collections.singletonList("Eletrônicos"));
+        // Vitrine: estoque nulo é listado, estoque zerado não
+        assertArrayEquals(new int[] {1, 3}, index.filter(filter));
+        Map<String, Object> counts = index.counts(filter, null);
+        assertEquals(2, counts.get("total"));
+        assertEquals(Map.of("Eletrônicos", 2), counts.get("category"));
+        assertEquals(2, ((Map<?, ?>) counts.get("inStock")).get("true"));
+        assertEquals(0, ((Map<?, ?>) counts.get("inStock")).get("false"));
+
+        filter.setInStock(false);
+        assertEquals(0, index.filter(filter).length);
+        assertEquals(0, index.counts(filter, null).get("total"));
+    }
+
+    @Test
+    public void stockChangesMoveProductsInAndOutOfTheListing() {
+        Product product = product(1).category("Livros").build();
+        ProductFacetIndex index = new ProductFacetIndex(productRepository(product));
+        ProductFilterDTO filter = new ProductFilterDTO();
+        filter.setCategory(Collections.singletonList("Livros"));
+
+        Product soldOut = product(1).category("Livros").stock(0).build();
+        index.onProductSaved(product, soldOut);
+        assertEquals(0, index.filter(filter).length);
+        assertEquals(Collections.emptyMap(), index.counts(filter, null).get("category"));
+
+        Product restocked = product(1).category("Livros").stock(3).build();
+        index.onProductSaved(soldOut, restocked);
+        assertArrayEquals(new int[] {1}, index.filter(filter));
+
+        index.onProductDeleted(restocked);
+        assertEquals(0, index.filter(filter).length);
+    }
+}
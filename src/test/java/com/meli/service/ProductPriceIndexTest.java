@@ -0,0 +1,46 @@
+package com.meli.service;
+
+import com.meli.model.Product;
+import org.junit.jupiter.api.Test;
+
+import static com.meli.service.Fixtures.product;
+import static com.meli.service.Fixtures.productRepository;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductPriceIndexTest {
+
+    @Test
+    public void rangesAreInclusiveAndSortedWithTiesInCatalogOrder() {
+        ProductPriceIndex index = new ProductPriceIndex(productRepository(
+                product(1).price(50.0).build(), product(2).price(10.0).build(), product(3).price(null).build(),
+                product(4).price(50.0).build(), product(5).price(99.9).build()));
+
+        assertArrayEquals(new int[] {2, 1, 4, 5, 3}, index.query(null, null, false));
+        assertArrayEquals(new int[] {5, 1, 4, 2, 3}, index.query(null, null, true));
+        assertArrayEquals(new int[] {2, 1, 4}, index.query(10.0, 50.0, false));
+        assertArrayEquals(new int[] {5, 1, 4}, index.query(50.0, null, true));
+        assertArrayEquals(new int[] {2}, index.query(null, 49.99, false));
+        assertArrayEquals(new int[0], index.query(60.0, 10.0, false));
+    }
+
+    @Test
+    public void priceChangesMoveTheProductAndDeletionsRemoveIt() {
+        Product first = product(1).price(50.0).build();
+        Product second = product(2).price(10.0).build();
+        ProductPriceIndex index = new ProductPriceIndex(productRepository(first, second));
+
+        Product cheaper = product(1).price(5.0).build();
+        index.onProductSaved(first, cheaper);
+        assertArrayEquals(new int[] {1, 2}, index.query(null, null, false));
+        assertArrayEquals(new int[0], index.query(40.0, 60.0, false));
+
+        Product unpriced = product(1).price(null).build();
+        index.onProductSaved(cheaper, unpriced);
+        assertArrayEquals(new int[] {2, 1}, index.query(null, null, false));
+        assertArrayEquals(new int[] {2}, index.query(0.0, null, false));
+
+        index.onProductDeleted(second);
+        assertArrayEquals(new int[] {1}, index.query(null, null, false));
+        assertArrayEquals(new int[0], index.query(0.0, 100.0, false));
+    }
+}
@@ -0,0 +1,128 @@
+package com.meli.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static com.meli.service.Fixtures.product;
+import static com.meli.service.Fixtures.productRepository;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class ProductSearchCacheTest {
+
+    private static ProductSearchCache cache(String mode, int maxEntries) {
+        return new ProductSearchCache(productRepository(), mock(ProductSearchIndex.class), mock(ProductSubstringIndex.class),
+                                      mode, maxEntries, 60);
+    }
+
+    @Test
+    public void textChangeInvalidatesOnlyMatchingTerms() {
+        ProductSearchCache cache = cache("substring", 10);
+        AtomicInteger searches = new AtomicInteger();
+        Function<String, int[]> search = term -> {
+            searches.incrementAndGet();
+            return new int[] {1};
+        };
+        cache.get("Fone", search);
+        cache.get("note", search);
+        cache.get("fo", search);
+        assertEquals(3, searches.get());
+
+        cache.onProductSaved(product(1).title("Fone Bluetooth").build(), product(1).title("Headset Bluetooth").build());
+        // "fone" e "fo" casavam com o título anterior; "note" não casa com nenhuma versão
+        cache.get("fone", search);
+        cache.get("fo", search);
+        cache.get("note", search);
+        assertEquals(5, searches.get());
+        assertEquals(2L, cache.stats().get("invalidations"));
+
+        cache.onProductDeleted(product(2).title("Notebook").build());
+        cache.get("note", search);
+        assertEquals(6, searches.get());
+    }
+
+    @Test
+    public void tokenModeInvalidatesTermsThatArePrefixesOfTheProductTerms() {
+        ProductSearchCache cache = cache("token", 10);
+        AtomicInteger searches = new AtomicInteger();
+        Function<String, int[]> search = term -> {
+            searches.incrementAndGet();
+            return new int[0];
+        };
+        cache.get("blue fon", search);
+        cache.get("camisa", search);
+
+        cache.onProductSaved(null, product(3).title("Fone Bluetooth").build());
+        cache.get("fon blue", search);
+        cache.get("camisa", search);
+        assertEquals(3, searches.get());
+    }
+
+    @Test
+    public void limitHoldsWhileSearchesAreStillRunning() throws Exception {
+        ProductSearchCache cache = cache("substring", 2);
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<int[]>> running = new ArrayList<>();
+            for (String term : new String[] {"aaa", "bbb"}) {
+                running.add(pool.submit(() -> cache.get(term, t -> {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return new int[] {1};
+                })));
+            }
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+
+            // As duas vagas estão reservadas por cálculos em andamento: a terceira busca não é guardada
+            assertArrayEquals(new int[] {2}, cache.get("ccc", t -> new int[] {2}));
+            assertEquals(2, cache.stats().get("entries"));
+            assertEquals(1L, cache.stats().get("bypassed"));
+
+            release.countDown();
+            for (Future<int[]> result : running) {
+                assertArrayEquals(new int[] {1}, result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // Com os cálculos concluídos, a mais antiga dá lugar à nova
+        cache.get("ddd", t -> new int[] {3});
+        assertEquals(2, cache.stats().get("entries"));
+        assertEquals(1L, cache.stats().get("evictions"));
+    }
+
+    @Test
+    public void invalidatedEntriesFreeTheirSlotImmediately() {
+        ProductSearchCache cache = cache("substring", 2);
+        AtomicInteger searches = new AtomicInteger();
+        Function<String, int[]> search = term -> {
+            searches.incrementAndGet();
+            return new int[0];
+        };
+        cache.get("fone", search);
+        cache.get("camisa", search);
+        cache.onProductDeleted(product(1).title("Fone").build());
+        cache.get("livro", search);
+
+        // A vaga de "fone" foi liberada na invalidação: "camisa" continua guardada
+        cache.get("camisa", search);
+        assertEquals(3, searches.get());
+        assertEquals(0L, cache.stats().get("evictions"));
+    }
+}
@@ -0,0 +1,46 @@
+package com.meli.service;
+
+import com.meli.model.Product;
+import org.junit.jupiter.api.Test;
+
+import static com.meli.service.Fixtures.product;
+import static com.meli.service.Fixtures.productRepository;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductSearchIndexTest {
+
+    @Test
+    public void foldsAccentsAndMatchesEveryTermAsPrefix() {
+        ProductSearchIndex index = new ProductSearchIndex(productRepository(
+                product(1).title("Fone de Ouvido Sem Fio").category("Eletrônicos").build(),
+                product(2).title("Camisa Polo").category("Vestuário").build(),
+                product(3).title("Caixa de Som").category("Eletrônicos").build()), "token");
+
+        assertEquals("eletronicos", ProductSearchIndex.fold("Eletrônicos"));
+        assertArrayEquals(new int[] {1, 3}, index.search("eletronico"));
+        assertArrayEquals(new int[] {2}, index.search("VESTUÁRIO"));
+        // Todos os termos precisam casar (prefixo), em qualquer ordem
+        assertArrayEquals(new int[] {3}, index.search("som ca"));
+        assertArrayEquals(new int[0], index.search("som polo"));
+        assertArrayEquals(new int[0], index.search(" -- "));
+    }
+
+    @Test
+    public void updatesKeepCatalogOrderAndDropOldTerms() {
+        Product fone = product(1).title("Fone").category("Eletrônicos").build();
+        Product caixa = product(2).title("Caixa de Som").category("Eletrônicos").build();
+        ProductSearchIndex index = new ProductSearchIndex(productRepository(fone, caixa), "token");
+
+        Product renamed = product(1).title("Headset").category("Eletrônicos").build();
+        index.onProductSaved(fone, renamed);
+        assertArrayEquals(new int[0], index.search("fone"));
+        // Reindexado, o produto 1 mantém a posição antes do 2
+        assertArrayEquals(new int[] {1, 2}, index.search("eletr"));
+
+        index.onProductSaved(null, product(3).title("Fone Bluetooth").category("Eletrônicos").build());
+        assertArrayEquals(new int[] {3}, index.search("fone"));
+
+        index.onProductDeleted(caixa);
+        assertArrayEquals(new int[] {1, 3}, index.search("eletronicos"));
+    }
+}
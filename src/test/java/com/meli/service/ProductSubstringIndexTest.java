@@ -0,0 +1,63 @@
+package com.meli.service;
+
+import com.meli.model.Product;
+import com.meli.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.meli.service.Fixtures.product;
+import static com.meli.service.Fixtures.productRepository;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+public class ProductSubstringIndexTest {
+
+    private static List<Integer> ids(List<Product> products) {
+        return products.stream().map(Product::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void indexedAndScannedFieldsGiveTheSameResultAsAFullScan() {
+        List<Product> products = Arrays.asList(
+                product(1).title("Fone Bluetooth").description("Som estéreo").build(),
+                product(2).title("Notebook").description("Tela de 15 polegadas com fone").build(),
+                product(3).title("Camisa").description("Algodão").build());
+        ProductSubstringIndex index = new ProductSubstringIndex(productRepository(products), "substring", "title");
+
+        // "fone" está no título de 1 (indexado) e na descrição de 2 (varrida)
+        assertEquals(Arrays.asList(1, 2), ids(index.search("FONE")));
+        assertEquals(Arrays.asList(3), ids(index.search("  algod ")));
+        // Termo curto (sem trigramas) cai na varredura completa
+        assertEquals(Arrays.asList(1, 2, 3), ids(index.search("o")));
+        assertTrue(index.search("inexistente").isEmpty());
+
+        Product renamed = product(1).title("Headset").description("Som estéreo").build();
+        index.onProductSaved(products.get(0), renamed);
+        products.set(0, renamed);
+        assertEquals(Arrays.asList(2), ids(index.search("fone")));
+    }
+
+    @Test
+    public void estimateForScannedFieldsIsReusedUntilTheCatalogChanges() {
+        List<Product> products = Arrays.asList(product(1).title("Fone").description("Som estéreo").build(),
+                                               product(2).title("Notebook").description("Tela").build());
+        ProductRepository repository = productRepository(products);
+        when(repository.version()).thenReturn(1L);
+        ProductSubstringIndex index = new ProductSubstringIndex(repository, "substring", "title");
+
+        Map<?, ?> first = (Map<?, ?>) index.stats().get("fields");
+        Map<?, ?> second = (Map<?, ?>) index.stats().get("fields");
+        assertEquals(true, ((Map<?, ?>) first.get("title")).get("indexed"));
+        assertEquals(false, ((Map<?, ?>) first.get("description")).get("indexed"));
+        assertSame(first.get("description"), second.get("description"));
+
+        when(repository.version()).thenReturn(2L);
+        Map<?, ?> third = (Map<?, ?>) index.stats().get("fields");
+        assertNotSame(first.get("description"), third.get("description"));
+        assertEquals(first.get("description"), third.get("description"));
+    }
+}
@@ -0,0 +1,68 @@
+package com.meli.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RankBitmapTest {
+
+    @Test
+    public void behavesLikeBitSetAcrossArrayAndBitmapContainers() {
+        Random random = new Random(7);
+        // Faixa densa (vira contêiner de bitmap) e faixa esparsa em outro grupo de 16 bits
+        RankBitmap a = new RankBitmap();
+        RankBitmap b = new RankBitmap();
+        BitSet expectedA = new BitSet();
+        BitSet expectedB = new BitSet();
+        for (int i = 0; i < 60_000; i++) {
+            int rank = random.nextBoolean() ? random.nextInt(10_000) : 70_000 + random.nextInt(200_000);
+            if (random.nextInt(4) == 0) {
+                a.remove(rank);
+                expectedA.clear(rank);
+            } else {
+                a.add(rank);
+                expectedA.set(rank);
+            }
+            int other = random.nextInt(20_000);
+            b.add(other);
+            expectedB.set(other);
+        }
+        assertMatches(expectedA, a);
+        assertMatches(expectedB, b);
+
+        BitSet and = (BitSet) expectedA.clone();
+        and.and(expectedB);
+        assertMatches(and, a.and(b));
+        assertEquals(and.cardinality(), a.andCardinality(b));
+
+        BitSet or = (BitSet) expectedA.clone();
+        or.or(expectedB);
+        assertMatches(or, a.or(b));
+
+        BitSet andNot = (BitSet) expectedA.clone();
+        andNot.andNot(expectedB);
+        assertMatches(andNot, a.andNot(b));
+    }
+
+    @Test
+    public void shrinksBackToArrayAndDropsEmptyContainers() {
+        RankBitmap bitmap = new RankBitmap();
+        for (int rank = 0; rank < 5_000; rank++) {
+            bitmap.add(rank);
+        }
+        for (int rank = 0; rank < 5_000; rank++) {
+            bitmap.remove(rank);
+        }
+        assertTrue(bitmap.isEmpty());
+        assertEquals(0, bitmap.cardinality());
+        assertEquals(0, bitmap.toArray().length);
+    }
+
+    private static void assertMatches(BitSet expected, RankBitmap actual) {
+        assertArrayEquals(expected.stream().toArray(), actual.toArray());
+        assertEquals(expected.cardinality(), actual.cardinality());
+    }
+}
@@ -0,0 +1,108 @@
+package com.meli.service;
+
+import com.meli.dto.SellerSalesSummaryDTO;
+import com.meli.model.Order;
+import com.meli.model.OrderStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static com.meli.service.Fixtures.orderRepository;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SellerSalesAggregatesTest {
+
+    private static Order order(int id, int sellerId, Map<Integer, Integer> items, double total, OrderStatus status) {
+        return Fixtures.order(id, 4, sellerId, items, total, status);
+    }
+
+    private static SellerSalesAggregates aggregates(List<Order> orders) {
+        return new SellerSalesAggregates(orderRepository(orders));
+    }
+
+    private static void assertSameSummary(SellerSalesSummaryDTO expected, SellerSalesSummaryDTO actual) {
+        assertEquals(expected.getOrderCount(), actual.getOrderCount());
+        assertEquals(expected.getUnitsSold(), actual.getUnitsSold());
+        assertEquals(expected.getUnitsByProduct(), actual.getUnitsByProduct());
+        assertEquals(expected.getRevenue(), actual.getRevenue());
+        assertEquals(expected.getRevenueByStatus(), actual.getRevenueByStatus());
+        assertEquals(expected.getOrdersByStatus(), actual.getOrdersByStatus());
+    }
+
+    @Test
+    public void statusChangeMovesTheContributionWithoutCountingItTwice() {
+        Order first = order(1, 2, Collections.singletonMap(10, 2), 0.1, OrderStatus.PLACED);
+        Order second = order(2, 2, Collections.singletonMap(11, 1), 0.2, OrderStatus.PLACED);
+        SellerSalesAggregates aggregates = aggregates(Arrays.asList(first, second));
+
+        SellerSalesSummaryDTO summary = aggregates.getSummary(2);
+        assertEquals(2, summary.getOrderCount());
+        assertEquals(3, summary.getUnitsSold());
+        // Somas em BigDecimal: 0.1 + 0.2 dá exatamente 0.3
+        assertEquals(0.3, summary.getRevenue());
+        assertEquals(Collections.singletonMap("PLACED", 2L), summary.getOrdersByStatus());
+
+        // Cada gravação publica uma nova versão do pedido: o agregado desfaz o que tinha guardado
+        // para o id, então gravar a mesma versão de novo não conta duas vezes
+        Order firstShipped = order(1, 2, Collections.singletonMap(10, 2), 0.1, OrderStatus.SHIPPED);
+        aggregates.onOrderSaved(firstShipped);
+        aggregates.onOrderSaved(firstShipped);
+        summary = aggregates.getSummary(2);
+        assertEquals(2, summary.getOrderCount());
+        assertEquals(3, summary.getUnitsSold());
+        assertEquals(0.3, summary.getRevenue());
+        assertEquals(Map.of("PLACED", 1L, "SHIPPED", 1L), summary.getOrdersByStatus());
+        assertEquals(Map.of("PLACED", 0.2, "SHIPPED", 0.1), summary.getRevenueByStatus());
+
+        // Status que volta a zero sai do resumo
+        Order secondShipped = order(2, 2, Collections.singletonMap(11, 1), 0.2, OrderStatus.SHIPPED);
+        aggregates.onOrderSaved(secondShipped);
+        summary = aggregates.getSummary(2);
+        assertEquals(Collections.singletonMap("SHIPPED", 2L), summary.getOrdersByStatus());
+        assertEquals(Collections.singleton("SHIPPED"), summary.getRevenueByStatus().keySet());
+
+        aggregates.onOrderDeleted(firstShipped);
+        aggregates.onOrderDeleted(secondShipped);
+        assertSameSummary(aggregates(Collections.emptyList()).getSummary(2), aggregates.getSummary(2));
+        assertTrue(aggregates.getSummary(2).getUnitsByProduct().isEmpty());
+    }
+
+    @Test
+    public void incrementalUpdatesMatchARebuildFromTheCurrentOrders() {
+        Random random = new Random(42);
+        OrderStatus[] statuses = OrderStatus.values();
+        List<Order> orders = new ArrayList<>();
+        for (int id = 1; id <= 20; id++) {
+            orders.add(order(id, 2 + id % 3, Collections.singletonMap(id % 5, 1 + id % 4), id * 1.15, OrderStatus.PLACED));
+        }
+        SellerSalesAggregates aggregates = aggregates(new ArrayList<>(orders));
+
+        for (int i = 0; i < 200; i++) {
+            // Como o repositório: cada gravação publica uma cópia, e a versão anterior não muda
+            int index = random.nextInt(orders.size());
+            Order order = orders.get(index).copy();
+            orders.set(index, order);
+            if (i % 2 == 0) {
+                order.setStatus(statuses[random.nextInt(statuses.length)]);
+            } else {
+                // Vendedor, itens e total também podem mudar na mesma gravação
+                order.setSellerId(2 + random.nextInt(3));
+                order.setProducts(new HashMap<>(Collections.singletonMap(random.nextInt(5), 1 + random.nextInt(3))));
+                order.setTotal(random.nextInt(10_000) / 100.0);
+            }
+            aggregates.onOrderSaved(order);
+        }
+        aggregates.onOrderDeleted(orders.remove(0));
+
+        SellerSalesAggregates rebuilt = aggregates(orders);
+        for (int sellerId = 2; sellerId <= 4; sellerId++) {
+            assertSameSummary(rebuilt.getSummary(sellerId), aggregates.getSummary(sellerId));
+        }
+    }
+}
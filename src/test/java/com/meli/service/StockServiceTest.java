@@ -0,0 +1,94 @@
+package com.meli.service;
+
+import com.meli.dto.BuyRequestDTO;
+import com.meli.model.Product;
+import com.meli.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class StockServiceTest {
+
+    private final Product keyboard = new Product(1, "Teclado", 100.0, "Mecânico", null, "Acme", 5, "Periféricos", 2);
+    private final Product mouse = new Product(2, "Mouse", 50.0, "Sem fio", null, "Acme", 1, "Periféricos", 2);
+    private StockService stockService;
+
+    @BeforeEach
+    public void setUp() {
+        ProductRepository repository = mock(ProductRepository.class);
+        when(repository.addListener(any())).thenReturn(Arrays.asList(keyboard, mouse));
+        when(repository.findById(anyInt())).thenAnswer(invocation -> {
+            int id = invocation.getArgument(0);
+            return id == 1 ? keyboard : id == 2 ? mouse : null;
+        });
+        stockService = new StockService(repository);
+    }
+
+    @Test
+    public void partialFailureReleasesWhatWasAlreadyReserved() {
+        StockService.Reservation reservation = stockService.reserveAll(Arrays.asList(
+                new BuyRequestDTO(1, 3), new BuyRequestDTO(2, 2)));
+
+        assertFalse(reservation.isSuccessful());
+        assertTrue(reservation.getQuantities().isEmpty());
+        assertEquals(5, stockService.getStock(1));
+        assertEquals(1, stockService.getStock(2));
+    }
+
+    @Test
+    public void quantitiesOfTheSameProductAreSummed() {
+        StockService.Reservation rejected = stockService.reserveAll(Arrays.asList(
+                new BuyRequestDTO(1, 3), new BuyRequestDTO(1, 3)));
+        assertFalse(rejected.isSuccessful());
+        assertEquals(5, stockService.getStock(1));
+
+        StockService.Reservation reservation = stockService.reserveAll(Arrays.asList(
+                new BuyRequestDTO(1, 2), new BuyRequestDTO(1, 3), new BuyRequestDTO(2, 1)));
+        assertTrue(reservation.isSuccessful());
+        assertEquals(Integer.valueOf(5), reservation.getQuantities().get(1));
+        assertEquals(0, stockService.getStock(1));
+        assertEquals(0, stockService.getStock(2));
+
+        stockService.cancel(reservation);
+        assertEquals(5, stockService.getStock(1));
+        assertEquals(1, stockService.getStock(2));
+    }
+
+    @Test
+    public void unknownProductRejectsWithoutReserving() {
+        StockService.Reservation reservation = stockService.reserveAll(Arrays.asList(
+                new BuyRequestDTO(1, 1), new BuyRequestDTO(99, 1)));
+
+        assertFalse(reservation.isSuccessful());
+        assertEquals(5, stockService.getStock(1));
+    }
+
+    @Test
+    public void sellerEditKeepsReservationsMadeSinceTheRead() {
+        // O vendedor leu estoque 5 e quer 8 (+3); enquanto isso foram vendidas 2 unidades
+        assertTrue(stockService.reserveAll(Collections.singletonList(new BuyRequestDTO(1, 2))).isSuccessful());
+
+        assertEquals(6, stockService.applyEdit(1, 5, 8));
+        assertEquals(6, stockService.getStock(1));
+    }
+
+    @Test
+    public void sellerEditNeverGoesNegativeAndCanStopTrackingStock() {
+        assertTrue(stockService.reserveAll(Collections.singletonList(new BuyRequestDTO(1, 4))).isSuccessful());
+
+        assertEquals(0, stockService.applyEdit(1, 5, 2));
+        assertNull(stockService.applyEdit(1, 2, null));
+        assertNull(stockService.getStock(1));
+        assertFalse(stockService.tryReserve(1, 1));
+        assertEquals(7, stockService.applyEdit(1, null, 7));
+        assertTrue(stockService.tryReserve(1, 7));
+    }
+}